@@ -0,0 +1,50 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Post-processing of a finished diagram: Offset.offset() and MedialAxisFilter.
+ *
+ * The diagram (a random polygon) is built once per fork from a fixed seed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class OffsetBenchmark {
+
+    @Param({ "4096" })
+    public int num_points;
+
+    @Param({ "0.001", "0.01", "0.05" })
+    public double t;
+
+    @Param({ "42" })
+    public long seed;
+
+    VoronoiDiagram vd;
+    Offset offset;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        vd = PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(num_points, new Random(seed)))
+            .buildVoronoiDiagram();
+        offset = new Offset(vd.get_graph_reference());
+    }
+
+    @Benchmark
+    public List<OffsetLoop> offset() {
+        return offset.offset(t);
+    }
+
+    @Benchmark
+    public VoronoiDiagram medial_axis_filter() {
+        vd.filter_reset();
+        vd.filter(new MedialAxisFilter());
+        return vd;
+    }
+}
@@ -0,0 +1,58 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Many offset levels on one diagram, as used for pocketing:
+ * Offset.offset() once per level versus a single Offset.offsets() sweep.
+ *
+ * The diagram (a random polygon) is built once per fork from a fixed seed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class OffsetSweepBenchmark {
+
+    @Param({ "4096" })
+    public int num_points;
+
+    @Param({ "50", "200" })
+    public int levels;
+
+    @Param({ "42" })
+    public long seed;
+
+    Offset offset;
+    double[] ts;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        VoronoiDiagram vd = PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(num_points, new Random(seed)))
+            .buildVoronoiDiagram();
+        vd.filter(new PolygonInteriorFilter(true));
+        offset = new Offset(vd.get_graph_reference());
+        ts = new double[levels];
+        for (int i = 0; i < levels; i++) {
+            ts[i] = 0.0005 * (i + 1);
+        }
+    }
+
+    @Benchmark
+    public List<List<OffsetLoop>> offset_per_level() {
+        List<List<OffsetLoop>> out = new ArrayList<>(levels);
+        for (double t : ts) {
+            out.add(offset.offset(t));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<List<OffsetLoop>> offsets_sweep() {
+        return offset.offsets(ts);
+    }
+}
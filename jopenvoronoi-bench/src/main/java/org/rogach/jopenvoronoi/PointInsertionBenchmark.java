@@ -0,0 +1,62 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Construction of a diagram from uniformly distributed random point sites,
+ * i.e. the insert_point_site() hot path.
+ *
+ * Input is generated once per fork from a fixed seed, so every fork (and every run)
+ * measures exactly the same point set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 3, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class PointInsertionBenchmark {
+
+    @Param({ "1024", "4096", "16384" })
+    public int num_points;
+
+    @Param({ "42" })
+    public long seed;
+
+    List<Point> points;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        Random rnd = new Random(seed);
+        points = new ArrayList<>(num_points);
+        for (int i = 0; i < num_points; i++) {
+            points.add(new Point(rnd.nextDouble() * 1.4 - 0.7, rnd.nextDouble() * 1.4 - 0.7));
+        }
+    }
+
+    @Benchmark
+    public VoronoiDiagram insert_point_sites() {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        for (Point p : points) {
+            vd.insert_point_site(p);
+        }
+        return vd;
+    }
+
+    @Benchmark
+    public VoronoiDiagram insert_point_sites_presorted() {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        vd.insert_point_sites(points);
+        return vd;
+    }
+
+    @Benchmark
+    public VoronoiDiagram insert_point_sites_presorted_walking() {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        vd.set_point_locator(new WalkingLocator());
+        vd.insert_point_sites(points);
+        return vd;
+    }
+}
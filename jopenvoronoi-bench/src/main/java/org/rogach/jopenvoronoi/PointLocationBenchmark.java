@@ -0,0 +1,50 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Point-location queries (VoronoiDiagram.find_face) against a diagram
+ * built once per fork from uniformly distributed random point sites.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 3, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class PointLocationBenchmark {
+
+    @Param({ "1024", "16384" })
+    public int num_points;
+
+    @Param({ "42" })
+    public long seed;
+
+    VoronoiDiagram vd;
+    Point[] queries;
+    int next;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        Random rnd = new Random(seed);
+        List<Point> points = new ArrayList<>(num_points);
+        for (int i = 0; i < num_points; i++) {
+            points.add(new Point(rnd.nextDouble() * 1.4 - 0.7, rnd.nextDouble() * 1.4 - 0.7));
+        }
+        vd = new VoronoiDiagram();
+        vd.insert_point_sites(points);
+        queries = new Point[4096];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new Point(rnd.nextDouble() * 1.4 - 0.7, rnd.nextDouble() * 1.4 - 0.7);
+        }
+        vd.find_face(queries[0]); // build the index outside of the measurement
+    }
+
+    @Benchmark
+    public Face find_face() {
+        next = (next + 1) & (queries.length - 1);
+        return vd.find_face(queries[next]);
+    }
+}
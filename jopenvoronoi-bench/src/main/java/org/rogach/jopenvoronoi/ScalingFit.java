@@ -0,0 +1,75 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.*;
+import org.apache.commons.math3.analysis.ParametricUnivariateFunction;
+import org.apache.commons.math3.fitting.*;
+import org.openjdk.jmh.results.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs PointInsertionBenchmark over a range of input sizes (with the usual JMH
+ * warmup, forking and fixed-size heap) and fits a*x^b+c through the results,
+ * as the old hand-rolled BenchmarkRandomPoints did.
+ *
+ * Usage: java -cp jopenvoronoi-bench/target/benchmarks.jar org.rogach.jopenvoronoi.ScalingFit [num_points...]
+ */
+public class ScalingFit {
+
+    static final String[] DEFAULT_SIZES = {
+        "256", "512", "1024", "2048", "4096", "8192", "16384", "32768"
+    };
+
+    public static void main(String[] args) throws RunnerException {
+        String[] sizes = args.length > 0 ? args : DEFAULT_SIZES;
+        Options opt = new OptionsBuilder()
+            .include(PointInsertionBenchmark.class.getSimpleName() + ".insert_point_sites")
+            .param("num_points", sizes)
+            .build();
+        Collection<RunResult> results = new Runner(opt).run();
+
+        System.out.println("| Number of points | Time per diagram, ms | Error (99.9%), ms |");
+        WeightedObservedPoints obs = new WeightedObservedPoints();
+        for (RunResult r : results) {
+            int num_points = Integer.parseInt(r.getParams().getParam("num_points"));
+            Result<?> res = r.getPrimaryResult();
+            double score = res.getScore();
+            double error = res.getScoreError();
+            // points with tighter confidence intervals get more weight in the fit
+            double weight = (error > 0 && !Double.isNaN(error)) ? 1 / (error * error) : 1;
+            obs.add(weight, num_points, score);
+            System.out.printf("| %16s | %20.3f | %17.3f |\n", num_points, score, error);
+        }
+
+        DisplayableFunction f = new ExponentialFunction();
+        SimpleCurveFitter fitter = SimpleCurveFitter.create(f, new double[] { 1, 2, 0 });
+        double[] c = fitter.fit(obs.toList());
+        System.out.println(f.toString(c));
+    }
+
+    interface DisplayableFunction extends ParametricUnivariateFunction {
+        public abstract String toString(double... parameters);
+    }
+
+    static class ExponentialFunction implements DisplayableFunction {
+        public double value(double x, double... parameters) {
+            double a = parameters[0];
+            double b = parameters[1];
+            double c = parameters[2];
+            return a * Math.pow(x, b) + c;
+        }
+        public double[] gradient(double x, double... parameters) {
+            double a = parameters[0];
+            double b = parameters[1];
+            double[] g = new double[3];
+            g[0] = Math.pow(x, b);
+            g[1] = a * Math.pow(x, b) * Math.log(x);
+            g[2] = 1.0;
+            return g;
+        }
+        public String toString(double... parameters) {
+            return String.format("%.6f * x^%.6f + %.6f", parameters[0], parameters[1], parameters[2]);
+        }
+    }
+}
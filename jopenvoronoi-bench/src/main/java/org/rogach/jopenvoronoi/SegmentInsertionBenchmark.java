@@ -0,0 +1,123 @@
+package org.rogach.jopenvoronoi;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Construction of segment diagrams (PSLG inputs) from the generators
+ * that BugHunter and the test-suite use.
+ *
+ * "build" measures the whole construction, "insert_line_sites" only measures
+ * the insert_line_site() phase - point sites are inserted in a per-invocation setup
+ * of the PointSites state, which "build" does not use.
+ *
+ * "build_tiled" measures ParallelBuilder.build_tiled() with tiles x tiles tiles on a pool
+ * of the given number of threads. tiles=1 is the serial ParallelBuilder.build() of the same input,
+ * so the speed-up on segment input is the ratio of the tiles=1 and tiles>1 scores at the same
+ * number of threads (on a machine with at least that many cores).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 3, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SegmentInsertionBenchmark {
+
+    /** the input graph, generated once per trial */
+    @State(Scope.Thread)
+    public static class Input {
+        @Param({ "RandomPolygon", "RandomLabyrinth", "MooreCurve", "GosperCurve" })
+        public String input;
+
+        @Param({ "42" })
+        public long seed;
+
+        PlanarGraph graph;
+
+        @Setup(Level.Trial)
+        public void prepare() {
+            graph = generate(input, new Random(seed));
+        }
+    }
+
+    /** a diagram with all point sites of the input already inserted, rebuilt before every invocation */
+    @State(Scope.Thread)
+    public static class PointSites {
+        VoronoiDiagram vd;
+        Map<Point2D, Vertex> vertices;
+
+        @Setup(Level.Invocation)
+        public void insert_point_sites(Input in) {
+            vd = new VoronoiDiagram();
+            vertices = new HashMap<>();
+            for (Point2D p : in.graph.points) {
+                vertices.put(p, vd.insert_point_site(new Point(p.getX(), p.getY())));
+            }
+        }
+    }
+
+    /** the input as a ParallelBuilder.Input, and a pool to build it on */
+    @State(Scope.Thread)
+    public static class Tiled {
+        @Param({ "1", "4", "8" })
+        public int tiles;
+
+        @Param({ "4" })
+        public int threads;
+
+        ParallelBuilder.Input input;
+        ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void prepare(Input in) {
+            List<Point> points = new ArrayList<>();
+            Map<Point2D, Integer> index = new HashMap<>();
+            for (Point2D p : in.graph.points) {
+                index.put(p, points.size());
+                points.add(new Point(p.getX(), p.getY()));
+            }
+            List<int[]> segments = new ArrayList<>();
+            for (PlanarGraph.Segment s : in.graph.segments) {
+                segments.add(new int[] { index.get(s.stt), index.get(s.end) });
+            }
+            input = new ParallelBuilder.Input(points, segments);
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown(Level.Trial)
+        public void shutdown() {
+            pool.shutdown();
+        }
+    }
+
+    static PlanarGraph generate(String input, Random rnd) {
+        switch (input) {
+        case "RandomPolygon": return PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(4096, rnd));
+        case "RandomLabyrinth": return RandomLabyrinth.generateLabyrinth(32, 0.5, rnd);
+        case "MooreCurve": return LindenmayerCurve.generateMooreCurve(4);
+        case "GosperCurve": return LindenmayerCurve.generateGosperCurve(4);
+        default: throw new IllegalArgumentException("unknown input: " + input);
+        }
+    }
+
+    @Benchmark
+    public VoronoiDiagram build(Input in) {
+        return in.graph.buildVoronoiDiagram();
+    }
+
+    @Benchmark
+    public VoronoiDiagram insert_line_sites(Input in, PointSites ps) {
+        for (PlanarGraph.Segment s : in.graph.segments) {
+            ps.vd.insert_line_site(ps.vertices.get(s.stt), ps.vertices.get(s.end));
+        }
+        return ps.vd;
+    }
+
+    @Benchmark
+    public VoronoiDiagram build_tiled(Tiled t) {
+        return ParallelBuilder.build_tiled(t.input, t.tiles, t.pool);
+    }
+}
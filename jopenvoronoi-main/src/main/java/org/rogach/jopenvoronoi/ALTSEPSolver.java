@@ -1,8 +1,5 @@
 package org.rogach.jopenvoronoi;
 
-import java.util.List;
-import java.util.ArrayList;
-
 // this solver is called when we want to position a vertex on a SEPARATOR edge
 // a SEPARATOR edge exists between a LineSite and one of its PointSite end-points
 // the input sites are thus s1=LineSite and s2=PointSite  (if arcs are supported in the future then s1=ArcSite is possible)
@@ -23,22 +20,22 @@ import java.util.ArrayList;
 // sv = (a1,b1)   if k1=+1
 // thus points on the separator are located at:
 //
-//  x_sep = x2 + t*sv.x
-//  y_sep = y2 + t*sv.y
+//  x_sep = x2 + t*sv_x
+//  y_sep = y2 + t*sv_y
 //
 //  This can be inserted into (1) or (2) above, which leads to a linear equation in t.
 //
 //  Insert into (1):
-//    a3 (x2 + t*sv.x) + b3 (y2 + t*sv.y) + c3 + k3 t = 0
+//    a3 (x2 + t*sv_x) + b3 (y2 + t*sv_y) + c3 + k3 t = 0
 //      ==>
-//          t = -( a3*x2 + b3*y2 + c3 ) / (sv.x*a3 + sv.y*b3 + k3)
+//          t = -( a3*x2 + b3*y2 + c3 ) / (sv_x*a3 + sv_y*b3 + k3)
 //
 //  Insert into (2):
-//    (x2 + t*sv.x-x3)^2 + (y2 + t*sv.y-y3)^2 = t^2
+//    (x2 + t*sv_x-x3)^2 + (y2 + t*sv_y-y3)^2 = t^2
 //    ==> (using dx= x2-x3 and dy = x2-x3)
-//   t^2 (sv.x^2 + sv.y^1 - 1)  + t (2*dx*sv.x + 2*dy*sv.y) + dx^2 + dy^2 = 0
-//    ==>  (since sv is a unit-vector sv.x^2 + sv.y^1 - 1 = 0)
-//         t = - (dx^2+dy^2) / (2*(dx*sv.x + dy*sv.y))
+//   t^2 (sv_x^2 + sv_y^1 - 1)  + t (2*dx*sv_x + 2*dy*sv_y) + dx^2 + dy^2 = 0
+//    ==>  (since sv is a unit-vector sv_x^2 + sv_y^1 - 1 = 0)
+//         t = - (dx^2+dy^2) / (2*(dx*sv_x + dy*sv_y))
 //
 //  FIXME: what happens if we get a divide by zero situation ??
 //
@@ -47,7 +44,7 @@ public class ALTSEPSolver extends Solver {
 
     public int solve( Site s1, double k1,
                       Site s2, double k2,
-                      Site s3, double k3, List<Solution> slns ) {
+                      Site s3, double k3, SolutionBuffer slns ) {
         Site lsite;
         Site psite;
         Site third_site;
@@ -65,7 +62,8 @@ public class ALTSEPSolver extends Solver {
             throw new RuntimeException("ALTSEPSolver FATAL ERROR! type not known.");
         }
         // separator direction
-        Point sv = (k3 == - 1) ? new Point(lsite.a(),lsite.b()) : new Point(-lsite.a(),-lsite.b());
+        double sv_x = (k3 == - 1) ? lsite.a() : -lsite.a();
+        double sv_y = (k3 == - 1) ? lsite.b() : -lsite.b();
 
         // now we should have this:
         assert( lsite.isLine() && psite.isPoint() ) : " lsite.isLine() && psite.isPoint() ";
@@ -75,16 +73,16 @@ public class ALTSEPSolver extends Solver {
         if ( third_site.isPoint() ) {
             double dx = psite.x() - third_site.x();
             double dy = psite.y() - third_site.y();
-            if ( Math.abs(2*( dx*sv.x+dy*sv.y  )) > 0 ) {
-                tsln = -(dx*dx+dy*dy) / (2*( dx*sv.x+dy*sv.y  )); // check for divide-by-zero?
+            if ( Math.abs(2*( dx*sv_x+dy*sv_y  )) > 0 ) {
+                tsln = -(dx*dx+dy*dy) / (2*( dx*sv_x+dy*sv_y  )); // check for divide-by-zero?
             } else {
                 //std::cout << " no solutions. (isPoint)\n";
                 return 0;
             }
         } else if (third_site.isLine()) {
-            if ( Math.abs(( sv.x*third_site.a() + sv.y*third_site.b() + third_site_k )) > 0 ) {
+            if ( Math.abs(( sv_x*third_site.a() + sv_y*third_site.b() + third_site_k )) > 0 ) {
                 tsln = -(third_site.a()*psite.x()+third_site.b()*psite.y()+third_site.c()) /
-                    ( sv.x*third_site.a() + sv.y*third_site.b() + third_site_k );
+                    ( sv_x*third_site.a() + sv_y*third_site.b() + third_site_k );
             } else {
                 //std::cout << " no solutions. (isLine)\n";
                 return 0;
@@ -92,8 +90,7 @@ public class ALTSEPSolver extends Solver {
         } else {
             assert(false) : "false";
         }
-        Point psln = new Point(psite.x(), psite.y()).add(sv.mult(tsln));
-        slns.add( new Solution( psln, tsln, k3 ) );
+        slns.add( psite.x() + sv_x*tsln, psite.y() + sv_y*tsln, tsln, k3 );
         return 1;
     }
 
@@ -49,22 +49,18 @@ public class ArcSite extends Site {
     }
 
     public double in_region_t_raw(Point pt) {
-        // projection onto circle
-        Point cen_start = _start.sub(_center);
-        Point cen_end   = _end.sub(_center);
-        Point cen_pt = pt.sub(_center);
-        Point proj = _center.add(cen_pt.mult( _radius/cen_pt.norm()));
-
+        double diangle_start = Numeric.diangle( _start.x - _center.x, _start.y - _center.y );
+        double diangle_end = Numeric.diangle( _end.x - _center.x, _end.y - _center.y );
         double diangle_min;
         double diangle_max;
         if (!_dir) {
-            diangle_min = Numeric.diangle( cen_start.x, cen_start.y );
-            diangle_max = Numeric.diangle( cen_end.x, cen_end.y );
+            diangle_min = diangle_start;
+            diangle_max = diangle_end;
         } else {
-            diangle_max = Numeric.diangle( cen_start.x, cen_start.y );
-            diangle_min = Numeric.diangle( cen_end.x, cen_end.y );
+            diangle_max = diangle_start;
+            diangle_min = diangle_end;
         }
-        double diangle_pt = Numeric.diangle(cen_pt.x, cen_pt.y);
+        double diangle_pt = Numeric.diangle(pt.x - _center.x, pt.y - _center.y);
 
         double t = (diangle_pt - diangle_min) / (diangle_max-diangle_min);
         return t;
@@ -77,6 +73,14 @@ public class ArcSite extends Site {
             return closer_endpoint(p);
     }
 
+    public double apex_distance(Point p) {
+        if (!in_region(p))
+            return Math.min(p.distance(_start), p.distance(_end));
+        if (p == _center)
+            return p.distance(_start);
+        return Math.abs(p.distance(_center) - _radius);
+    }
+
     public double x() {return _center.x;}
     public double y() {return _center.y;}
     public double r() {return _radius;}
@@ -106,8 +110,8 @@ public class ArcSite extends Site {
     }
     /// return the end Point (either _start or _end) that is closest to the given Point
     private Point closer_endpoint(Point p) {
-        double d_start = _start.sub(p).norm();
-        double d_end = _end.sub(p).norm();
+        double d_start = _start.distance(p);
+        double d_end = _end.distance(p);
         if (d_start < d_end)
             return _start;
         else
@@ -0,0 +1,176 @@
+package org.rogach.jopenvoronoi;
+
+import org.apache.commons.math3.analysis.UnivariateFunction;
+
+/// \brief Brent's methods for a root or a minimum of a function on a bracketing interval
+///
+/// used for functions of the offset-distance t along an edge, where the interval [t_min, t_max]
+/// is given by the clearance-disk radii of the edge end-points, see VertexPositioner::desperate_solution()
+/// and VoronoiDiagram::add_split_vertex().
+///
+/// find_root() combines bisection, secant and inverse quadratic interpolation,
+/// minimize() combines golden-section search and parabolic interpolation.
+/// Neither allocates, and the number of function evaluations of the last call is kept in evaluations().
+/// See Brent, "Algorithms for Minimization without Derivatives", 1973, chapters 4 and 5.
+public class BracketSolver {
+    private static final double EPS = Math.ulp(1.0);
+    private static final double CGOLD = 0.3819660112501051; ///< (3 - sqrt(5)) / 2, the golden section ratio
+
+    private int evaluations; ///< number of function evaluations in the last call
+
+    /// return the number of function evaluations in the last find_root() or minimize() call
+    public int evaluations() {
+        return evaluations;
+    }
+
+    /// \brief find a root of \a f in [\a a, \a b]
+    ///
+    /// f(a) and f(b) must not have the same sign.
+    /// \param tol absolute tolerance on the root, in addition to machine precision
+    /// \param max_eval maximum number of function evaluations
+    public double find_root(UnivariateFunction f, double a, double b, double tol, int max_eval) {
+        double fa = f.value(a);
+        double fb = f.value(b);
+        evaluations = 2;
+        assert( !((fa > 0 && fb > 0) || (fa < 0 && fb < 0)) ) : " root is not bracketed ";
+        double c = b;
+        double fc = fb;
+        double d = b - a;
+        double e = d;
+        while (evaluations < max_eval) {
+            if ((fb > 0 && fc > 0) || (fb < 0 && fc < 0)) {
+                // keep the root between b and c
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                // b is the best estimate
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+            double tol1 = 2*EPS*Math.abs(b) + 0.5*tol;
+            double xm = 0.5*(c - b);
+            if (Math.abs(xm) <= tol1 || fb == 0) {
+                return b;
+            }
+            if (Math.abs(e) >= tol1 && Math.abs(fa) > Math.abs(fb)) {
+                // try interpolation
+                double p, q;
+                double s = fb/fa;
+                if (a == c) { // secant
+                    p = 2*xm*s;
+                    q = 1 - s;
+                } else { // inverse quadratic
+                    q = fa/fc;
+                    double r = fb/fc;
+                    p = s*(2*xm*q*(q - r) - (b - a)*(r - 1));
+                    q = (q - 1)*(r - 1)*(s - 1);
+                }
+                if (p > 0) {
+                    q = -q;
+                }
+                p = Math.abs(p);
+                if (2*p < Math.min(3*xm*q - Math.abs(tol1*q), Math.abs(e*q))) {
+                    e = d;
+                    d = p/q;
+                } else { // interpolation failed, bisect
+                    d = xm;
+                    e = d;
+                }
+            } else { // bounds decreasing too slowly, bisect
+                d = xm;
+                e = d;
+            }
+            a = b;
+            fa = fb;
+            b += (Math.abs(d) > tol1) ? d : Math.copySign(tol1, xm);
+            fb = f.value(b);
+            evaluations++;
+        }
+        return b;
+    }
+
+    /// \brief find a (local) minimum of \a f in [\a a, \a b]
+    ///
+    /// \param rel relative tolerance on the minimum point
+    /// \param abs absolute tolerance on the minimum point
+    /// \param max_eval maximum number of function evaluations
+    public double minimize(UnivariateFunction f, double a, double b, double rel, double abs, int max_eval) {
+        double x = a + CGOLD*(b - a); // best point so far
+        double w = x; // second best point
+        double v = x; // previous value of w
+        double fx = f.value(x);
+        double fw = fx;
+        double fv = fx;
+        evaluations = 1;
+        double d = 0;
+        double e = 0; // distance moved on the step before last
+        while (evaluations < max_eval) {
+            double xm = 0.5*(a + b);
+            double tol1 = rel*Math.abs(x) + abs;
+            double tol2 = 2*tol1;
+            if (Math.abs(x - xm) <= tol2 - 0.5*(b - a)) {
+                return x;
+            }
+            boolean golden = true;
+            if (Math.abs(e) > tol1) {
+                // try a parabola through x, v, w
+                double r = (x - w)*(fx - fv);
+                double q = (x - v)*(fx - fw);
+                double p = (x - v)*q - (x - w)*r;
+                q = 2*(q - r);
+                if (q > 0) {
+                    p = -p;
+                }
+                q = Math.abs(q);
+                double etemp = e;
+                e = d;
+                if (!(Math.abs(p) >= Math.abs(0.5*q*etemp) || p <= q*(a - x) || p >= q*(b - x))) {
+                    // parabolic step is acceptable
+                    d = p/q;
+                    double u = x + d;
+                    if (u - a < tol2 || b - u < tol2) {
+                        d = Math.copySign(tol1, xm - x);
+                    }
+                    golden = false;
+                }
+            }
+            if (golden) {
+                e = (x >= xm) ? a - x : b - x;
+                d = CGOLD*e;
+            }
+            double u = (Math.abs(d) >= tol1) ? x + d : x + Math.copySign(tol1, d);
+            double fu = f.value(u);
+            evaluations++;
+            if (fu <= fx) {
+                if (u >= x) {
+                    a = x;
+                } else {
+                    b = x;
+                }
+                v = w; fv = fw;
+                w = x; fw = fx;
+                x = u; fx = fu;
+            } else {
+                if (u < x) {
+                    a = u;
+                } else {
+                    b = u;
+                }
+                if (fu <= fw || w == x) {
+                    v = w; fv = fw;
+                    w = u; fw = fu;
+                } else if (fu <= fv || v == x || v == w) {
+                    v = u; fv = fu;
+                }
+            }
+        }
+        return x;
+    }
+}
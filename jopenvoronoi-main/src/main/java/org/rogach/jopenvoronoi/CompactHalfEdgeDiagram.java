@@ -0,0 +1,581 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static org.rogach.jopenvoronoi.Numeric.chop;
+import static org.rogach.jopenvoronoi.Numeric.sq;
+
+/// \brief half-edge diagram stored as a struct of primitive arrays
+///
+/// An alternative to HalfEdgeDiagram for holding large diagrams.
+/// Vertices, half-edges and faces are plain int indices into parallel arrays,
+/// so a diagram costs a few dozen bytes per element instead of
+/// one object (plus two ArrayLists, or two double[8]) per element and a HashMap node per set entry.
+///
+/// Deleted slots are kept on a free-list per element kind and reused by the next add_*() call.
+/// The free-list is threaded through the vertex-edge, edge-next and face-edge arrays,
+/// a deleted slot is recognized by its type being set to -1 (vertices, edges) or its edge to DELETED (faces).
+///
+/// The Site of a face is stored as its geometry (kind, end-points, center, radius, offset-direction),
+/// not as a reference, so the compact diagram keeps nothing of the source object graph reachable.
+/// face_site() creates a new Site from that geometry.
+///
+/// Only one out-edge is stored per vertex (the DCEL "leaving" pointer),
+/// the other out-edges are found by rotating around the vertex: next_out_edge(e) = next(twin(e)).
+///
+/// The incremental algorithm in VoronoiDiagram still works on the object graph;
+/// a finished diagram can be converted with from(HalfEdgeDiagram).
+public class CompactHalfEdgeDiagram {
+
+    public static final int NONE = -1; ///< null reference
+    static final int DELETED = -2; ///< marks a deleted face slot
+    static final int PARAMS = 16; ///< doubles per edge: 8 x-parameters followed by 8 y-parameters
+    static final int SITE_PARAMS = 9; ///< doubles per face site: start x/y, end x/y, center x/y, radius, k, cw
+
+    // face site kinds
+    static final byte NO_SITE = 0;
+    static final byte POINT_SITE = 1;
+    static final byte LINE_SITE = 2;
+    static final byte ARC_SITE = 3;
+
+    // edge flag bits
+    static final int SIGN = 1;
+    static final int VALID = 2;
+    static final int HAS_NULL_FACE = 4;
+    static final int INSERTED_DIRECTION = 8;
+
+    static final VertexType[] vertex_types = VertexType.values();
+    static final VertexStatus[] vertex_statuses = VertexStatus.values();
+    static final EdgeType[] edge_types = EdgeType.values();
+    static final FaceStatus[] face_statuses = FaceStatus.values();
+
+    // vertex properties
+    double[] vx = new double[0];
+    double[] vy = new double[0];
+    double[] vr = new double[0]; ///< clearance-disk radius
+    byte[] vtype = new byte[0]; ///< VertexType ordinal, -1 for deleted slots
+    byte[] vstatus = new byte[0];
+    int[] vedge = new int[0]; ///< one out-edge, or next free slot for deleted vertices
+    int[] vface = new int[0]; ///< the face of a ::POINTSITE vertex
+    int vertex_slots, vertex_count, vertex_free = NONE;
+
+    // edge properties
+    int[] esource = new int[0];
+    int[] etarget = new int[0];
+    int[] etwin = new int[0];
+    int[] enext = new int[0]; ///< next edge on face, or next free slot for deleted edges
+    int[] eface = new int[0];
+    int[] enull_face = new int[0];
+    byte[] etype = new byte[0]; ///< EdgeType ordinal, -1 for deleted slots
+    byte[] ek = new byte[0]; ///< offset-direction, +1 or -1
+    byte[] eflags = new byte[0];
+    double[] eparams = new double[0]; ///< PARAMS doubles per edge
+    int edge_slots, edge_count, edge_free = NONE;
+
+    // face properties
+    int[] fedge = new int[0]; ///< one edge on the face, or DELETED
+    int[] fnext_free = new int[0];
+    byte[] fsite_kind = new byte[0]; ///< NO_SITE, POINT_SITE, LINE_SITE or ARC_SITE
+    double[] fsite_params = new double[0]; ///< SITE_PARAMS doubles per face, the position of a PointSite is stored as start
+    byte[] fstatus = new byte[0];
+    boolean[] fnull = new boolean[0];
+    int face_slots, face_count, face_free = NONE;
+
+    public CompactHalfEdgeDiagram() {}
+
+    /// create an empty diagram with room for the given number of elements
+    public CompactHalfEdgeDiagram(int vertices, int edges, int faces) {
+        grow_vertices(vertices);
+        grow_edges(edges);
+        grow_faces(faces);
+    }
+
+    /// \brief copy a HalfEdgeDiagram into a new compact diagram
+    ///
+    /// vertices, edges and faces are numbered in iteration order of the source sets.
+    /// everything is copied, the geometry of the Sites included, so \a g can be dropped afterwards.
+    public static CompactHalfEdgeDiagram from(HalfEdgeDiagram g) {
+        CompactHalfEdgeDiagram c = new CompactHalfEdgeDiagram(g.num_vertices(), g.num_edges(), g.num_faces());
+        Map<Vertex,Integer> vidx = new IdentityHashMap<>(g.num_vertices());
+        Map<Edge,Integer> eidx = new IdentityHashMap<>(g.num_edges());
+        Map<Face,Integer> fidx = new IdentityHashMap<>(g.num_faces());
+        for (Vertex v : g.vertices) {
+            vidx.put(v, c.add_vertex(v.position.x, v.position.y, v.r, v.type, g.status(v)));
+        }
+        for (Face f : g.faces) {
+            int fi = c.add_face();
+            c.set_face_site(fi, f.site);
+            c.fstatus[fi] = f.status == null ? -1 : (byte) g.status(f).ordinal();
+            c.fnull[fi] = f.is_null_face;
+            fidx.put(f, fi);
+        }
+        for (Edge e : g.edges) {
+            eidx.put(e, c.add_edge(vidx.get(e.source), vidx.get(e.target)));
+        }
+        for (Edge e : g.edges) {
+            int ei = eidx.get(e);
+            c.etwin[ei] = index(eidx, e.twin);
+            c.enext[ei] = index(eidx, e.next);
+            c.eface[ei] = index(fidx, e.face);
+            c.enull_face[ei] = index(fidx, e.null_face);
+            c.etype[ei] = e.type == null ? -1 : (byte) e.type.ordinal();
+            c.ek[ei] = (byte) e.k;
+            c.eflags[ei] = (byte) ((e.sign ? SIGN : 0) | (e.valid ? VALID : 0)
+                                   | (e.has_null_face ? HAS_NULL_FACE : 0)
+                                   | (e.inserted_direction ? INSERTED_DIRECTION : 0));
+            System.arraycopy(e.x, 0, c.eparams, ei*PARAMS, 8);
+            System.arraycopy(e.y, 0, c.eparams, ei*PARAMS + 8, 8);
+        }
+        for (Face f : g.faces) {
+            c.fedge[fidx.get(f)] = index(eidx, f.edge);
+        }
+        for (Vertex v : g.vertices) {
+            int vi = vidx.get(v);
+            c.vface[vi] = index(fidx, v.face);
+            if (!v.out_edges.isEmpty()) {
+                c.vedge[vi] = eidx.get(v.out_edges.get(0));
+            }
+        }
+        return c;
+    }
+
+    private static <T> int index(Map<T,Integer> idx, T t) {
+        if (t == null) {
+            return NONE;
+        }
+        Integer i = idx.get(t);
+        return i == null ? NONE : i;
+    }
+
+    /// return number of vertices in graph
+    public int num_vertices() {
+        return vertex_count;
+    }
+
+    /// return number of edges in graph
+    public int num_edges() {
+        return edge_count;
+    }
+
+    /// return number of faces in graph
+    public int num_faces() {
+        return face_count;
+    }
+
+    /// return upper bound (exclusive) of vertex indices, for iterating with is_vertex()
+    public int vertex_slots() {
+        return vertex_slots;
+    }
+
+    /// return upper bound (exclusive) of edge indices, for iterating with is_edge()
+    public int edge_slots() {
+        return edge_slots;
+    }
+
+    /// return upper bound (exclusive) of face indices, for iterating with is_face()
+    public int face_slots() {
+        return face_slots;
+    }
+
+    /// true if \a v is a live vertex
+    public boolean is_vertex(int v) {
+        return v >= 0 && v < vertex_slots && vtype[v] >= 0;
+    }
+
+    /// true if \a e is a live edge
+    public boolean is_edge(int e) {
+        return e >= 0 && e < edge_slots && etype[e] >= 0;
+    }
+
+    /// true if \a f is a live face
+    public boolean is_face(int f) {
+        return f >= 0 && f < face_slots && fedge[f] != DELETED;
+    }
+
+    /// add a vertex with given properties, return its index
+    public int add_vertex(double x, double y, double r, VertexType type, VertexStatus status) {
+        int v;
+        if (vertex_free != NONE) {
+            v = vertex_free;
+            vertex_free = vedge[v];
+        } else {
+            if (vertex_slots == vx.length) {
+                grow_vertices(vertex_slots + 1);
+            }
+            v = vertex_slots++;
+        }
+        vx[v] = x;
+        vy[v] = y;
+        vr[v] = r;
+        vtype[v] = (byte) type.ordinal();
+        vstatus[v] = status == null ? -1 : (byte) status.ordinal();
+        vedge[v] = NONE;
+        vface[v] = NONE;
+        vertex_count++;
+        return v;
+    }
+
+    /// add an edge between vertices v1-v2, return its index
+    public int add_edge(int v1, int v2) {
+        int e;
+        if (edge_free != NONE) {
+            e = edge_free;
+            edge_free = enext[e];
+        } else {
+            if (edge_slots == esource.length) {
+                grow_edges(edge_slots + 1);
+            }
+            e = edge_slots++;
+        }
+        esource[e] = v1;
+        etarget[e] = v2;
+        etwin[e] = NONE;
+        enext[e] = NONE;
+        eface[e] = NONE;
+        enull_face[e] = NONE;
+        etype[e] = (byte) EdgeType.LINE.ordinal();
+        ek[e] = 1;
+        eflags[e] = VALID;
+        Arrays.fill(eparams, e*PARAMS, (e+1)*PARAMS, 0);
+        if (vedge[v1] == NONE) {
+            vedge[v1] = e;
+        }
+        edge_count++;
+        return e;
+    }
+
+    /// add two edges, one from \a v1 to \a v2 and one from \a v2 to \a v1. return the first one.
+    public int add_twin_edges(int v1, int v2) {
+        int e1 = add_edge(v1, v2);
+        int e2 = add_edge(v2, v1);
+        etwin[e1] = e2;
+        etwin[e2] = e1;
+        return e1;
+    }
+
+    /// add a face, return its index
+    public int add_face() {
+        int f;
+        if (face_free != NONE) {
+            f = face_free;
+            face_free = fnext_free[f];
+        } else {
+            if (face_slots == fedge.length) {
+                grow_faces(face_slots + 1);
+            }
+            f = face_slots++;
+        }
+        fedge[f] = NONE;
+        fnext_free[f] = NONE;
+        fsite_kind[f] = NO_SITE;
+        fstatus[f] = (byte) FaceStatus.NONINCIDENT.ordinal();
+        fnull[f] = false;
+        face_count++;
+        return f;
+    }
+
+    /// \brief remove given vertex
+    ///
+    /// edges connecting to the vertex are not touched, remove them first.
+    public void remove_vertex(int v) {
+        assert( is_vertex(v) ) : " is_vertex(v) ";
+        vtype[v] = -1;
+        vedge[v] = vertex_free;
+        vertex_free = v;
+        vertex_count--;
+    }
+
+    /// \brief remove given edge
+    ///
+    /// the twin of the edge is unlinked. if the edge was the stored out-edge of its source,
+    /// another out-edge is found by rotating around the source vertex.
+    public void remove_edge(int e) {
+        assert( is_edge(e) ) : " is_edge(e) ";
+        int src = esource[e];
+        if (vedge[src] == e) {
+            int other = next_out_edge(e);
+            vedge[src] = (other == e) ? NONE : other;
+        }
+        int tw = etwin[e];
+        if (tw != NONE) {
+            etwin[tw] = NONE;
+        }
+        etype[e] = -1;
+        enext[e] = edge_free;
+        edge_free = e;
+        edge_count--;
+    }
+
+    /// remove given face. edges on the face are not touched.
+    public void remove_face(int f) {
+        assert( is_face(f) ) : " is_face(f) ";
+        fedge[f] = DELETED;
+        fsite_kind[f] = NO_SITE;
+        fnext_free[f] = face_free;
+        face_free = f;
+        face_count--;
+    }
+
+    /// \brief return the out-edge of source(e) following e in rotation around the vertex
+    ///
+    /// returns \a e itself for a degree-one vertex, and NONE if the rotation is open
+    /// because \a e has no twin (edges on the outer boundary of the diagram).
+    public int next_out_edge(int e) {
+        int tw = etwin[e];
+        if (tw == NONE || enext[tw] == NONE || etype[enext[tw]] < 0) {
+            return NONE;
+        }
+        return enext[tw];
+    }
+
+    /// \brief return the out-edge of source(e) preceding e in rotation around the vertex
+    ///
+    /// the inverse of next_out_edge(). returns NONE if the edge arriving at source(e) on the
+    /// face of \a e has no twin.
+    public int previous_out_edge(int e) {
+        return etwin[previous_edge(e)];
+    }
+
+    /// \brief return number of out-edges of \a v
+    ///
+    /// for a vertex on the outer boundary the rotation is open at one side, then
+    /// the out-edges on both sides of vertex_edge(v) are counted.
+    public int out_degree(int v) {
+        int start = vedge[v];
+        if (start == NONE) {
+            return 0;
+        }
+        int n = 0;
+        int e = start;
+        do {
+            n++;
+            e = next_out_edge(e);
+        } while (e != NONE && e != start && n < edge_slots);
+        if (e == NONE) {
+            for (e = previous_out_edge(start); e != NONE && n < edge_slots; e = previous_out_edge(e)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /// return number of edges on face \a f, zero for a face without edges
+    public int num_edges(int f) {
+        int start = fedge[f];
+        if (start < 0) {
+            return 0;
+        }
+        int n = 0;
+        int e = start;
+        do {
+            n++;
+            e = enext[e];
+        } while (e != start);
+        return n;
+    }
+
+    /// return the previous edge. traverses all edges in face until previous found.
+    public int previous_edge(int e) {
+        int previous = enext[e];
+        while (enext[previous] != e) {
+            previous = enext[previous];
+        }
+        return previous;
+    }
+
+    /// set next-pointer of e1 to e2
+    public void set_next(int e1, int e2) {
+        assert( etarget[e1] == esource[e2] ) : " etarget[e1] == esource[e2] ";
+        enext[e1] = e2;
+    }
+
+    /// make e1 the twin of e2 (and vice versa)
+    public void twin_edges(int e1, int e2) {
+        assert( etarget[e1] == esource[e2] ) : " etarget[e1] == esource[e2] ";
+        assert( esource[e1] == etarget[e2] ) : " esource[e1] == etarget[e2] ";
+        etwin[e1] = e2;
+        etwin[e2] = e1;
+    }
+
+    // vertex accessors
+    public double vertex_x(int v) { return vx[v]; }
+    public double vertex_y(int v) { return vy[v]; }
+    public Point vertex_position(int v) { return new Point(vx[v], vy[v]); }
+    public double vertex_r(int v) { return vr[v]; }
+    public VertexType vertex_type(int v) { return vertex_types[vtype[v]]; }
+    public VertexStatus vertex_status(int v) { return vstatus[v] < 0 ? null : vertex_statuses[vstatus[v]]; }
+    public void set_vertex_status(int v, VertexStatus st) { vstatus[v] = (byte) st.ordinal(); }
+    public int vertex_edge(int v) { return vedge[v]; }
+    public int vertex_face(int v) { return vface[v]; }
+    public void set_vertex_face(int v, int f) { vface[v] = f; }
+
+    // edge accessors
+    public int source(int e) { return esource[e]; }
+    public int target(int e) { return etarget[e]; }
+    public int twin(int e) { return etwin[e]; }
+    public int next(int e) { return enext[e]; }
+    public int face(int e) { return eface[e]; }
+    public void set_face(int e, int f) { eface[e] = f; }
+    public int null_face(int e) { return enull_face[e]; }
+    public EdgeType edge_type(int e) { return edge_types[etype[e]]; }
+    public void set_edge_type(int e, EdgeType t) { etype[e] = (byte) t.ordinal(); }
+    public double k(int e) { return ek[e]; }
+    public void set_k(int e, double k) { ek[e] = (byte) k; }
+    public boolean sign(int e) { return (eflags[e] & SIGN) != 0; }
+    public boolean valid(int e) { return (eflags[e] & VALID) != 0; }
+    public boolean has_null_face(int e) { return (eflags[e] & HAS_NULL_FACE) != 0; }
+    public boolean inserted_direction(int e) { return (eflags[e] & INSERTED_DIRECTION) != 0; }
+    /// return x-parameter \a i (0..7) of edge \a e
+    public double edge_x(int e, int i) { return eparams[e*PARAMS + i]; }
+    /// return y-parameter \a i (0..7) of edge \a e
+    public double edge_y(int e, int i) { return eparams[e*PARAMS + 8 + i]; }
+
+    // face accessors
+    public int face_edge(int f) { return fedge[f]; }
+    public void set_face_edge(int f, int e) { fedge[f] = e; }
+    public boolean has_site(int f) { return fsite_kind[f] != NO_SITE; }
+    public FaceStatus face_status(int f) { return fstatus[f] < 0 ? null : face_statuses[fstatus[f]]; }
+    public boolean is_null_face(int f) { return fnull[f]; }
+
+    /// \brief return a new Site with the geometry of the Site of face \a f, or null if the face has no Site
+    ///
+    /// the returned Site is not connected to any diagram: its face, vertex and edge are null.
+    public Site face_site(int f) {
+        int o = f*SITE_PARAMS;
+        double[] sp = fsite_params;
+        switch (fsite_kind[f]) {
+        case POINT_SITE:
+            return new PointSite(new Point(sp[o], sp[o+1]));
+        case LINE_SITE:
+            return new LineSite(new Point(sp[o], sp[o+1]), new Point(sp[o+2], sp[o+3]), sp[o+7]);
+        case ARC_SITE:
+            ArcSite as = new ArcSite(new Point(sp[o], sp[o+1]), new Point(sp[o+2], sp[o+3]),
+                                     new Point(sp[o+4], sp[o+5]), sp[o+8] != 0);
+            as._radius = sp[o+6];
+            as._k = sp[o+7];
+            return as;
+        default:
+            return null;
+        }
+    }
+
+    /// store the geometry of Site \a s (null for none) as the Site of face \a f
+    public void set_face_site(int f, Site s) {
+        int o = f*SITE_PARAMS;
+        Arrays.fill(fsite_params, o, o + SITE_PARAMS, 0);
+        if (s == null) {
+            fsite_kind[f] = NO_SITE;
+        } else if (s.isPoint()) {
+            fsite_kind[f] = POINT_SITE;
+            fsite_params[o] = s.position().x;
+            fsite_params[o+1] = s.position().y;
+        } else if (s.isLine()) {
+            fsite_kind[f] = LINE_SITE;
+            set_site_points(o, s.start(), s.end());
+            fsite_params[o+7] = s.eqp().k;
+        } else if (s.isArc()) {
+            ArcSite as = (ArcSite) s;
+            fsite_kind[f] = ARC_SITE;
+            set_site_points(o, as.start(), as.end());
+            fsite_params[o+4] = as.center().x;
+            fsite_params[o+5] = as.center().y;
+            fsite_params[o+6] = as.radius();
+            fsite_params[o+7] = as.k();
+            fsite_params[o+8] = as.cw() ? 1 : 0;
+        } else {
+            throw new UnsupportedOperationException("unknown Site type " + s);
+        }
+    }
+
+    private void set_site_points(int o, Point start, Point end) {
+        fsite_params[o] = start.x;
+        fsite_params[o+1] = start.y;
+        fsite_params[o+2] = end.x;
+        fsite_params[o+3] = end.y;
+    }
+
+    /// \brief x coordinate of the point on edge \a e at offset-distance \a t
+    ///
+    /// same eight-parameter formula as Edge::point(), without allocating a Point.
+    public double edge_point_x(int e, double t) {
+        int o = e*PARAMS;
+        double discr = chop( sq(eparams[o+4]+eparams[o+5]*t) - sq(eparams[o+6]+eparams[o+7]*t), 1e-14 );
+        double discr2 = chop( sq(eparams[o+12]+eparams[o+13]*t) - sq(eparams[o+14]+eparams[o+15]*t), 1e-14 );
+        double xc = eparams[o] - eparams[o+1] - eparams[o+2]*t;
+        if (discr >= 0 && discr2 >= 0) {
+            xc += (sign(e) ? +1 : -1) * eparams[o+3] * Math.sqrt(discr);
+        }
+        return xc;
+    }
+
+    /// \brief y coordinate of the point on edge \a e at offset-distance \a t
+    ///
+    /// same eight-parameter formula as Edge::point(), without allocating a Point.
+    public double edge_point_y(int e, double t) {
+        int o = e*PARAMS;
+        double discr = chop( sq(eparams[o+4]+eparams[o+5]*t) - sq(eparams[o+6]+eparams[o+7]*t), 1e-14 );
+        double discr2 = chop( sq(eparams[o+12]+eparams[o+13]*t) - sq(eparams[o+14]+eparams[o+15]*t), 1e-14 );
+        double yc = eparams[o+8] - eparams[o+9] - eparams[o+10]*t;
+        if (discr >= 0 && discr2 >= 0) {
+            yc += (sign(e) ? -1 : +1) * eparams[o+11] * Math.sqrt(discr2);
+        }
+        return yc;
+    }
+
+    /// trim all arrays to the number of used slots
+    public void trim() {
+        resize_vertices(vertex_slots);
+        resize_edges(edge_slots);
+        resize_faces(face_slots);
+    }
+
+    private static int grown(int length, int min) {
+        return Math.max(min, length + (length >> 1) + 16);
+    }
+
+    private void grow_vertices(int min) {
+        resize_vertices(grown(vx.length, min));
+    }
+
+    private void grow_edges(int min) {
+        resize_edges(grown(esource.length, min));
+    }
+
+    private void grow_faces(int min) {
+        resize_faces(grown(fedge.length, min));
+    }
+
+    private void resize_vertices(int n) {
+        vx = Arrays.copyOf(vx, n);
+        vy = Arrays.copyOf(vy, n);
+        vr = Arrays.copyOf(vr, n);
+        vtype = Arrays.copyOf(vtype, n);
+        vstatus = Arrays.copyOf(vstatus, n);
+        vedge = Arrays.copyOf(vedge, n);
+        vface = Arrays.copyOf(vface, n);
+    }
+
+    private void resize_edges(int n) {
+        esource = Arrays.copyOf(esource, n);
+        etarget = Arrays.copyOf(etarget, n);
+        etwin = Arrays.copyOf(etwin, n);
+        enext = Arrays.copyOf(enext, n);
+        eface = Arrays.copyOf(eface, n);
+        enull_face = Arrays.copyOf(enull_face, n);
+        etype = Arrays.copyOf(etype, n);
+        ek = Arrays.copyOf(ek, n);
+        eflags = Arrays.copyOf(eflags, n);
+        eparams = Arrays.copyOf(eparams, n*PARAMS);
+    }
+
+    private void resize_faces(int n) {
+        fedge = Arrays.copyOf(fedge, n);
+        fnext_free = Arrays.copyOf(fnext_free, n);
+        fsite_kind = Arrays.copyOf(fsite_kind, n);
+        fsite_params = Arrays.copyOf(fsite_params, n*SITE_PARAMS);
+        fstatus = Arrays.copyOf(fstatus, n);
+        fnull = Arrays.copyOf(fnull, n);
+    }
+}
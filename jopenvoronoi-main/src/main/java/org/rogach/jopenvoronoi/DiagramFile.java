@@ -0,0 +1,412 @@
+package org.rogach.jopenvoronoi;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/// \brief binary save and load of a complete VoronoiDiagram
+///
+/// The file holds the counters of the VoronoiDiagram and its whole HalfEdgeDiagram:
+/// vertices (position, clearance-disk radius, type, status, out- and in-edge lists),
+/// edges (end-points, twin/next links, faces, type, flags and the 8-parameter x[]/y[] arrays),
+/// faces and the Sites of the faces. Vertices, edges, faces, sites and Point:s are numbered
+/// in iteration order and stored as tables, references between them are table indices (-1 for null).
+/// Point:s shared between vertices and sites stay shared after loading, and the order of the
+/// out- and in-edge lists is kept, so a loaded diagram behaves like the saved one,
+/// also when more sites are inserted.
+///
+/// HalfEdgeDiagram::vertex_count(), the number of vertices ever added, is kept as well.
+///
+/// Statuses are stored as they read at save time (see HalfEdgeDiagram::status()), and restored as persistent.
+/// Only PointSite, LineSite and ArcSite are supported.
+///
+/// Loading does no geometry at all, so it is much faster than building the diagram again.
+public class DiagramFile {
+    private static final int MAGIC = 0x56444731; ///< "VDG1"
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+
+    private static final byte POINT_SITE = 0;
+    private static final byte LINE_SITE = 1;
+    private static final byte ARC_SITE = 2;
+
+    // edge flag bits
+    private static final int SIGN = 1;
+    private static final int VALID = 2;
+    private static final int HAS_NULL_FACE = 4;
+    private static final int INSERTED_DIRECTION = 8;
+
+    private static final VertexType[] vertex_types = VertexType.values();
+    private static final VertexStatus[] vertex_statuses = VertexStatus.values();
+    private static final EdgeType[] edge_types = EdgeType.values();
+    private static final FaceStatus[] face_statuses = FaceStatus.values();
+
+    private DiagramFile() {}
+
+    /// write \a vd to the file \a fname
+    public static void save(VoronoiDiagram vd, String fname) throws IOException {
+        Output out = new Output();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeDouble(vd.far_radius);
+        out.writeInt(vd.num_psites);
+        out.writeInt(vd.num_lsites);
+        out.writeInt(vd.num_asites);
+        write(vd.g, out);
+        ByteBuffer buf = out.buf;
+        buf.flip();
+        try (FileOutputStream os = new FileOutputStream(fname);
+             FileChannel ch = os.getChannel()
+        ) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+
+    /// read a diagram written by save(). the file is memory-mapped and read in place.
+    public static VoronoiDiagram load(String fname) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fname, "r");
+             FileChannel ch = raf.getChannel()
+        ) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException(fname + ": too large for a voronoi diagram file");
+            }
+            ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            try {
+                if (in.getInt() != MAGIC) {
+                    throw new IOException(fname + ": not a voronoi diagram file");
+                }
+                int version = in.getInt();
+                if (version != VERSION) {
+                    throw new IOException(fname + ": unsupported voronoi diagram file version " + version);
+                }
+                double far_radius = in.getDouble();
+                int num_psites = in.getInt();
+                int num_lsites = in.getInt();
+                int num_asites = in.getInt();
+                HalfEdgeDiagram g = read(in);
+                return new VoronoiDiagram(g, far_radius, num_psites, num_lsites, num_asites);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+                throw new IOException(fname + ": truncated or corrupt voronoi diagram file", e);
+            }
+        }
+    }
+
+    private static void write(HalfEdgeDiagram g, Output out) throws IOException {
+        Map<Vertex,Integer> vidx = new IdentityHashMap<>(g.num_vertices());
+        Map<Edge,Integer> eidx = new IdentityHashMap<>(g.num_edges());
+        Map<Face,Integer> fidx = new IdentityHashMap<>(g.num_faces());
+        Map<Site,Integer> sidx = new IdentityHashMap<>();
+        List<Site> sites = new ArrayList<>();
+        Map<Point,Integer> pidx = new IdentityHashMap<>();
+        List<Point> points = new ArrayList<>();
+        for (Vertex v : g.vertices) {
+            vidx.put(v, vidx.size());
+            add(pidx, points, v.position);
+        }
+        for (Edge e : g.edges) {
+            eidx.put(e, eidx.size());
+        }
+        for (Face f : g.faces) {
+            fidx.put(f, fidx.size());
+            if (f.site != null && !sidx.containsKey(f.site)) {
+                sidx.put(f.site, sites.size());
+                sites.add(f.site);
+                if (f.site instanceof PointSite) {
+                    add(pidx, points, f.site.position());
+                } else if (f.site instanceof LineSite || f.site instanceof ArcSite) {
+                    add(pidx, points, f.site.start());
+                    add(pidx, points, f.site.end());
+                    if (f.site instanceof ArcSite) {
+                        add(pidx, points, ((ArcSite) f.site)._center);
+                    }
+                } else {
+                    throw new IOException("cannot write site " + f.site);
+                }
+            }
+        }
+
+        out.writeInt(points.size());
+        out.writeInt(g.num_vertices());
+        out.writeInt(g.num_edges());
+        out.writeInt(g.num_faces());
+        out.writeInt(sites.size());
+        out.writeInt(g.vertex_count());
+        for (Point p : points) {
+            out.writeDouble(p.x);
+            out.writeDouble(p.y);
+        }
+        for (Vertex v : g.vertices) {
+            out.writeInt(pidx.get(v.position));
+            out.writeDouble(v.r);
+            out.writeDouble(v.k3);
+            out.writeDouble(v.alfa);
+            out.writeDouble(v.max_error);
+            out.writeByte(ordinal(v.type));
+            out.writeByte(ordinal(g.status(v)));
+            out.writeInt(index(fidx, v.face));
+            out.writeInt(index(fidx, v.null_face));
+            out.writeInt(v.out_edges.size());
+            for (Edge e : v.out_edges) {
+                out.writeInt(eidx.get(e));
+            }
+            out.writeInt(v.in_edges.size());
+            for (Edge e : v.in_edges) {
+                out.writeInt(eidx.get(e));
+            }
+        }
+        for (Edge e : g.edges) {
+            out.writeInt(vidx.get(e.source));
+            out.writeInt(vidx.get(e.target));
+            out.writeInt(index(eidx, e.twin));
+            out.writeInt(index(eidx, e.next));
+            out.writeInt(index(fidx, e.face));
+            out.writeInt(index(fidx, e.null_face));
+            out.writeByte(ordinal(e.type));
+            out.writeByte((e.sign ? SIGN : 0) | (e.valid ? VALID : 0)
+                          | (e.has_null_face ? HAS_NULL_FACE : 0)
+                          | (e.inserted_direction ? INSERTED_DIRECTION : 0));
+            out.writeDouble(e.k);
+            for (int i = 0; i < 8; i++) {
+                out.writeDouble(e.x[i]);
+            }
+            for (int i = 0; i < 8; i++) {
+                out.writeDouble(e.y[i]);
+            }
+        }
+        for (Face f : g.faces) {
+            out.writeInt(index(eidx, f.edge));
+            out.writeInt(index(sidx, f.site));
+            out.writeByte(f.status == null ? NONE : ordinal(g.status(f)));
+            out.writeBoolean(f.is_null_face);
+        }
+        for (Site s : sites) {
+            if (s instanceof PointSite) {
+                out.writeByte(POINT_SITE);
+                out.writeInt(pidx.get(s.position()));
+                out.writeInt(index(vidx, s.vertex()));
+            } else if (s instanceof LineSite) {
+                out.writeByte(LINE_SITE);
+                out.writeInt(pidx.get(s.start()));
+                out.writeInt(pidx.get(s.end()));
+                out.writeInt(index(eidx, ((LineSite) s).e));
+            } else {
+                ArcSite a = (ArcSite) s;
+                out.writeByte(ARC_SITE);
+                out.writeInt(pidx.get(a._start));
+                out.writeInt(pidx.get(a._end));
+                out.writeInt(pidx.get(a._center));
+                out.writeBoolean(a._dir);
+                out.writeDouble(a._radius);
+                out.writeDouble(a._k);
+                out.writeInt(index(eidx, a.e));
+            }
+            out.writeInt(index(fidx, s.face));
+            out.writeBoolean(s.eq.q);
+            out.writeDouble(s.eq.a);
+            out.writeDouble(s.eq.b);
+            out.writeDouble(s.eq.c);
+            out.writeDouble(s.eq.k);
+        }
+    }
+
+    /// read a graph written by write()
+    private static HalfEdgeDiagram read(ByteBuffer in) throws IOException {
+        Point[] points = new Point[read_count(in)];
+        Vertex[] vertices = new Vertex[read_count(in)];
+        Edge[] edges = new Edge[read_count(in)];
+        Face[] faces = new Face[read_count(in)];
+        Site[] sites = new Site[read_count(in)];
+        int vertex_count = in.getInt();
+        if (vertex_count < vertices.length) {
+            throw new IOException("vertex count " + vertex_count + " is less than the number of vertices " + vertices.length);
+        }
+        HalfEdgeDiagram g = new HalfEdgeDiagram();
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(in.getDouble(), in.getDouble());
+        }
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vertex();
+        }
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = g.add_face();
+        }
+        int[][] out_edges = new int[vertices.length][];
+        int[][] in_edges = new int[vertices.length][];
+        for (int i = 0; i < vertices.length; i++) {
+            Vertex v = vertices[i];
+            v.position = points[in.getInt()];
+            v.r = in.getDouble();
+            v.k3 = in.getDouble();
+            v.alfa = in.getDouble();
+            v.max_error = in.getDouble();
+            v.type = get(vertex_types, in.get());
+            v.set_status(get(vertex_statuses, in.get()));
+            v.face = get(faces, in.getInt());
+            v.null_face = get(faces, in.getInt());
+            out_edges[i] = read_ints(in);
+            in_edges[i] = read_ints(in);
+            g.add_vertex(v);
+        }
+        int[] twin = new int[edges.length];
+        int[] next = new int[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            Edge e = new Edge(vertices[in.getInt()], vertices[in.getInt()]);
+            twin[i] = in.getInt();
+            next[i] = in.getInt();
+            e.face = get(faces, in.getInt());
+            e.null_face = get(faces, in.getInt());
+            e.type = get(edge_types, in.get());
+            int flags = in.get();
+            e.sign = (flags & SIGN) != 0;
+            e.valid = (flags & VALID) != 0;
+            e.has_null_face = (flags & HAS_NULL_FACE) != 0;
+            e.inserted_direction = (flags & INSERTED_DIRECTION) != 0;
+            e.k = in.getDouble();
+            for (int j = 0; j < 8; j++) {
+                e.x[j] = in.getDouble();
+            }
+            for (int j = 0; j < 8; j++) {
+                e.y[j] = in.getDouble();
+            }
+            edges[i] = e;
+            g.edges.add(e);
+        }
+        for (int i = 0; i < edges.length; i++) {
+            edges[i].twin = get(edges, twin[i]);
+            edges[i].next = get(edges, next[i]);
+        }
+        for (int i = 0; i < vertices.length; i++) {
+            for (int e : out_edges[i]) {
+                vertices[i].out_edges.add(edges[e]);
+            }
+            for (int e : in_edges[i]) {
+                vertices[i].in_edges.add(edges[e]);
+            }
+        }
+        int[] face_site = new int[faces.length];
+        for (int i = 0; i < faces.length; i++) {
+            Face f = faces[i];
+            f.edge = get(edges, in.getInt());
+            face_site[i] = in.getInt();
+            FaceStatus st = get(face_statuses, in.get());
+            if (st != null) {
+                g.set_status(f, st);
+            }
+            f.is_null_face = (in.get() != 0);
+        }
+        for (int i = 0; i < sites.length; i++) {
+            byte kind = in.get();
+            Site s;
+            if (kind == POINT_SITE) {
+                PointSite ps = new PointSite(points[in.getInt()]);
+                ps.v = get(vertices, in.getInt());
+                s = ps;
+            } else if (kind == LINE_SITE) {
+                LineSite ls = new LineSite(points[in.getInt()], points[in.getInt()], 0);
+                ls.e = get(edges, in.getInt());
+                s = ls;
+            } else if (kind == ARC_SITE) {
+                ArcSite as = new ArcSite(points[in.getInt()], points[in.getInt()], points[in.getInt()], (in.get() != 0));
+                as._radius = in.getDouble();
+                as._k = in.getDouble();
+                as.e = get(edges, in.getInt());
+                s = as;
+            } else {
+                throw new IOException("unknown site kind " + kind);
+            }
+            s.face = get(faces, in.getInt());
+            s.eq.q = (in.get() != 0);
+            s.eq.a = in.getDouble();
+            s.eq.b = in.getDouble();
+            s.eq.c = in.getDouble();
+            s.eq.k = in.getDouble();
+            sites[i] = s;
+        }
+        for (int i = 0; i < faces.length; i++) {
+            faces[i].site = get(sites, face_site[i]);
+        }
+        g.invalidate_interval_index(); // edges were added to g.edges directly
+        g.set_vertex_count(vertex_count);
+        return g;
+    }
+
+    /// \brief growable output buffer, with the DataOutput method names
+    private static final class Output {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+        private void ensure(int n) {
+            if (buf.remaining() < n) {
+                ByteBuffer b = ByteBuffer.allocate(Math.max(2*buf.capacity(), buf.position() + n));
+                buf.flip();
+                b.put(buf);
+                buf = b;
+            }
+        }
+
+        void writeInt(int i) {
+            ensure(4);
+            buf.putInt(i);
+        }
+
+        void writeDouble(double d) {
+            ensure(8);
+            buf.putDouble(d);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf.put((byte) b);
+        }
+
+        void writeBoolean(boolean b) {
+            writeByte(b ? 1 : 0);
+        }
+    }
+
+    private static void add(Map<Point,Integer> pidx, List<Point> points, Point p) {
+        if (!pidx.containsKey(p)) {
+            pidx.put(p, points.size());
+            points.add(p);
+        }
+    }
+
+    private static <T> int index(Map<T,Integer> idx, T t) {
+        if (t == null) {
+            return NONE;
+        }
+        Integer i = idx.get(t);
+        return i == null ? NONE : i;
+    }
+
+    private static int ordinal(Enum<?> e) {
+        return e == null ? NONE : e.ordinal();
+    }
+
+    private static <T> T get(T[] table, int i) {
+        return i == NONE ? null : table[i];
+    }
+
+    /// read a table size. every entry takes at least one byte, so a count beyond the end of the file is corrupt
+    private static int read_count(ByteBuffer in) throws IOException {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining()) {
+            throw new IOException("corrupt count " + n);
+        }
+        return n;
+    }
+
+    private static int[] read_ints(ByteBuffer in) throws IOException {
+        int[] a = new int[read_count(in)];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.getInt();
+        }
+        return a;
+    }
+}
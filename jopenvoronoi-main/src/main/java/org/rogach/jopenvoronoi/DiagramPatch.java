@@ -0,0 +1,867 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/// \brief rebuild a region of a diagram from a separate diagram of the sites around it
+///
+/// The region is a set of faces of the graph, and must contain every face whose boundary changes.
+/// Inside the region, the diagram of all sites equals the diagram of the sites that own the region:
+/// these are the sites of the region faces (without the removed ones, with the added ones),
+/// so build() inserts them, and the end-points of their LineSite:s, into a new diagram T.
+/// The region is then cut out of T and put in place of the old one:
+/// - the faces outside the region keep all their edges and vertices. A vertex where a region face
+///   meets an outside face is a boundary vertex, and stays.
+/// - edges between two region faces, and vertices with only region faces around them, are deleted.
+/// - at each boundary vertex, an edge between two region faces continues into the region.
+///   In T this edge has the same two sites on its sides, and either starts at a vertex of T with the same faces
+///   (when the outside face belongs to a site of T), or passes through the boundary vertex.
+///   From these edges T is walked into the region, and the vertices and edges it reaches are copied.
+///
+/// Sites and faces of the graph are kept where T has the same site, only added sites get the faces,
+/// sites and point vertices of T. The graph is only changed by apply(): build() checks that the
+/// copied part of T fits the region, and throws IllegalStateException if it does not,
+/// so a failed patch leaves the graph as it was.
+///
+/// \attention ArcSite:s are not supported. The caller updates the site counts and the PointLocator.
+class DiagramPatch {
+    private static final double TOLERANCE = 1e-6; ///< distance between a boundary vertex and its position in T
+
+    private final HalfEdgeDiagram g; ///< the graph to patch
+    private final Set<Face> region; ///< faces of g that are rebuilt
+    private final Set<Face> removed = new HashSet<>(); ///< region faces whose sites are removed
+    private final VoronoiDiagram t = new VoronoiDiagram(); ///< diagram of the sites of the region
+
+    // sites of T. point i is at t_points[i], and is the point vertex g_points[i] of g, or null for an added point
+    private final List<Point> t_points = new ArrayList<>();
+    private final List<Vertex> g_points = new ArrayList<>();
+    private final Map<Vertex, Integer> point_index = new HashMap<>(); ///< index of a point vertex of g
+    private final List<int[]> segments = new ArrayList<>(); ///< segments of T as pairs of point indices
+    private final List<Face> g_segments = new ArrayList<>(); ///< k==+1 face of each segment in g, or null for an added segment
+    private final Set<Face> segment_faces = new HashSet<>(); ///< k==+1 faces of the segments of g in T
+    private final Map<Vertex, Face> far_faces = new HashMap<>(); ///< point vertex -> face, for the initial sites of g and T
+    private Vertex[] t_vertices; ///< t_vertices[i] is the point vertex of point i in T
+    private Face[] null_faces; ///< new Vertex::null_face of the points whose faces are in the region
+
+    private final Map<Face, Face> g2t = new HashMap<>(); ///< face of g -> face of the same site in T
+    private final Map<Face, Face> t2g = new HashMap<>(); ///< face of T -> face of the same site in g
+    private final Set<Face> new_faces = new HashSet<>(); ///< faces of T added to g
+
+    // the plan made by build()
+    private final Set<Edge> dropped = new HashSet<>(); ///< edges of g between two region faces
+    private final List<Vertex> interior = new ArrayList<>(); ///< vertices of g with only region faces around them
+    private final Map<Vertex, Vertex> matched = new HashMap<>(); ///< vertex of T -> boundary vertex of g at the same place
+    private final Map<Vertex, Vertex> created = new LinkedHashMap<>(); ///< vertex of T -> new vertex of g
+    private final Map<Edge, List<Edge>> made = new HashMap<>(); ///< half-edge of T -> new edges of g along it
+    private final Map<Edge, List<Entry>> entries = new HashMap<>(); ///< half-edge of T -> boundary vertices on it
+    private final Deque<Piece> pieces = new ArrayDeque<>(); ///< parts of T still to be walked
+    private final List<Edge> new_edges = new ArrayList<>();
+    private final Map<Vertex, List<Edge>> new_out = new HashMap<>(); ///< new out-edges of a vertex
+    private final Map<Vertex, List<Edge>> new_in = new HashMap<>(); ///< new in-edges of a vertex
+    private final Map<Edge, Edge> next = new HashMap<>(); ///< new next-pointers
+    private final Map<Face, Edge> face_edge = new HashMap<>(); ///< new Face::edge of the faces of the region
+    private boolean built;
+    private final Set<Face> wanted = new HashSet<>(); ///< faces of g outside the region that a failed build() ran into
+
+    /// a boundary vertex of g on a half-edge of T, at parameter s along the half-edge
+    private static class Entry {
+        final double s;
+        final Vertex v;
+        final boolean start; ///< the region is after (true) or before (false) the vertex
+        Entry(double s, Vertex v, boolean start) {
+            this.s = s;
+            this.v = v;
+            this.start = start;
+        }
+    }
+
+    /// a part of a half-edge of T that lies in the region, from \a v at parameter \a s to the next boundary vertex or vertex
+    private static class Piece {
+        final Edge h;
+        final double s;
+        final Vertex v;
+        Piece(Edge h, double s, Vertex v) {
+            this.h = h;
+            this.s = s;
+            this.v = v;
+        }
+    }
+
+    /// patch the faces \a region of \a graph
+    DiagramPatch(HalfEdgeDiagram graph, Set<Face> region) {
+        this.g = graph;
+        this.region = closure(region);
+        t.set_silent(true);
+        for (Face f : t.get_graph_reference().faces) {
+            far_faces.put(f.site.vertex(), f);
+        }
+    }
+
+    /// \brief build a patch of \a region, and grow the region until the diagram of its sites fits
+    ///
+    /// \param g the graph to patch
+    /// \param region faces to rebuild, grown in place
+    /// \param removed faces of the sites that are removed, a subset of \a region
+    /// \param added position of a PointSite to add, or null. It becomes point 0, see point_vertex()
+    /// \param segments LineSite:s to add, as start and end point vertex. null stands for the added PointSite
+    /// \return the built patch, apply() it to change the graph
+    ///
+    /// \details
+    /// When the diagram of the region does not fit, the faces that build() ran into and one more ring of neighbours
+    /// are added, up to three times. Degenerate inputs (e.g. sites on a grid) may need this, as T can split a vertex
+    /// of many equidistant sites differently. The last attempt rebuilds all faces, and throws IllegalStateException
+    /// when that fails too.
+    static DiagramPatch plan(HalfEdgeDiagram g, Set<Face> region, Collection<Face> removed, Point added, List<Vertex[]> segments) {
+        for (int attempt = 0; ; attempt++) {
+            if (attempt == 3) {
+                region.addAll(g.faces);
+            }
+            DiagramPatch patch = new DiagramPatch(g, region);
+            for (Face f : removed) {
+                patch.remove(f);
+            }
+            int added_index = added == null ? -1 : patch.add_point(added);
+            for (Vertex[] s : segments) {
+                patch.add_segment(s[0] == null ? added_index : patch.point(s[0]),
+                                  s[1] == null ? added_index : patch.point(s[1]));
+            }
+            try {
+                patch.build();
+                return patch;
+            } catch (IllegalStateException e) {
+                if (attempt == 3) {
+                    throw e;
+                }
+                region.addAll(patch.wanted());
+                add_neighbours(region, patch.wanted().isEmpty() ? new ArrayList<>(region) : patch.wanted());
+            }
+        }
+    }
+
+    /// \brief add the faces that share an edge with one of \a faces to \a region
+    static void add_neighbours(Set<Face> region, Collection<Face> faces) {
+        for (Face f : faces) {
+            Edge current = f.edge;
+            do {
+                if (current.twin != null) {
+                    region.add(current.twin.face);
+                }
+                current = current.next;
+            } while (current != f.edge);
+        }
+    }
+
+    /// \brief \a region with all faces around its null-faces, and the other face of each of its LineSite:s
+    ///
+    /// the null-edges of a null-face have zero length, a boundary vertex can not be found on them in T.
+    /// A LineSite has its two faces in T, so both are needed in the region.
+    private static Set<Face> closure(Set<Face> region) {
+        Set<Face> out = new HashSet<>(region);
+        Deque<Face> queue = new ArrayDeque<>(region);
+        while (!queue.isEmpty()) {
+            Face f = queue.poll();
+            List<Face> add = new ArrayList<>();
+            if (f.is_null_face) {
+                Edge current = f.edge;
+                do {
+                    add.add(current.twin.face);
+                    current = current.next;
+                } while (current != f.edge);
+            } else if (f.site.isLine()) {
+                add.add(f.site.edge().twin.face);
+            }
+            for (Face a : add) {
+                if (out.add(a)) {
+                    queue.add(a);
+                }
+            }
+        }
+        return out;
+    }
+
+    /// \brief the site of region face \a f is removed
+    ///
+    /// this may also be one of the initial far-faces of a second diagram merged into the graph, see ParallelBuilder
+    void remove(Face f) {
+        assert( region.contains(f) ) : " region.contains(f) ";
+        removed.add(f);
+    }
+
+    /// add a PointSite at \a p, return its index for add_segment() and point_vertex()
+    int add_point(Point p) {
+        t_points.add(p);
+        g_points.add(null);
+        return t_points.size() - 1;
+    }
+
+    /// return the index of the existing PointSite with point vertex \a v, for add_segment()
+    int point(Vertex v) {
+        Integer i = point_index.get(v);
+        if (i == null) {
+            i = t_points.size();
+            t_points.add(v.position);
+            g_points.add(v);
+            point_index.put(v, i);
+        }
+        return i;
+    }
+
+    /// add a LineSite from point \a i to point \a j
+    void add_segment(int i, int j) {
+        segments.add(new int[] { i, j });
+        g_segments.add(null);
+    }
+
+    /// the positions of the points of T
+    List<Point> points() {
+        return t_points;
+    }
+
+    /// the segments of T, as pairs of indices into points()
+    List<int[]> segments() {
+        return segments;
+    }
+
+    /// the point vertex of point \a i after apply()
+    Vertex point_vertex(int i) {
+        return g_points.get(i) != null ? g_points.get(i) : t_vertices[i];
+    }
+
+    /// faces of g deleted by apply()
+    List<Face> deleted_faces() {
+        List<Face> out = new ArrayList<>();
+        for (Face f : region) {
+            if (!g2t.containsKey(f)) {
+                out.add(f);
+            }
+        }
+        return out;
+    }
+
+    /// faces of g outside the region that a failed build() ran into, to grow the region with
+    Set<Face> wanted() {
+        return wanted;
+    }
+
+    /// faces added to g by apply()
+    Set<Face> added_faces() {
+        return new_faces;
+    }
+
+    /// \brief build T and plan the patch, without changing the graph
+    ///
+    /// throws IllegalStateException if T does not fit the region, usually because the region is too small.
+    void build() {
+        collect_sites();
+        build_diagram();
+        map_faces();
+        find_boundary();
+        walk();
+        link();
+        built = true;
+    }
+
+    /// register the sites of the region faces that are not removed, and the end-points of their LineSite:s
+    private void collect_sites() {
+        for (Face f : region) {
+            if (removed.contains(f)) {
+                continue;
+            }
+            Site s = f.site;
+            if (s.isPoint()) {
+                point(s.vertex());
+                if (s.vertex().face == null) { // the initial sites have no Vertex::face
+                    far_faces.put(s.vertex(), f);
+                }
+            } else if (s.isLine()) {
+                Face pos = s.k() == 1 ? f : s.edge().twin.face;
+                if (segment_faces.add(pos)) {
+                    Edge pos_edge = pos.site.edge(); // from the end-point to the start-point of the segment
+                    segments.add(new int[] { point(endpoint_vertex(pos_edge.target)), point(endpoint_vertex(pos_edge.source)) });
+                    g_segments.add(pos);
+                }
+            } else {
+                throw new UnsupportedOperationException("DiagramPatch: ArcSite:s are not supported");
+            }
+        }
+    }
+
+    /// the point vertex of the PointSite at the ::ENDPOINT vertex \a endp
+    static Vertex endpoint_vertex(Vertex endp) {
+        for (Edge e : endp.out_edges) {
+            if (e.face.is_null_face) {
+                return e.face.site.vertex();
+            }
+        }
+        throw new IllegalStateException("no null-face at end-point " + endp.position);
+    }
+
+    /// insert the sites into T. the three initial sites of g are already in T
+    private void build_diagram() {
+        t_vertices = new Vertex[t_points.size()];
+        List<Point> inner = new ArrayList<>();
+        List<Integer> inner_index = new ArrayList<>();
+        for (int i = 0; i < t_points.size(); i++) {
+            Point p = t_points.get(i);
+            Vertex far = null;
+            for (Face f : t.get_graph_reference().faces) {
+                if (f.site.position().equals(p)) {
+                    far = f.site.vertex();
+                }
+            }
+            if (far != null) {
+                t_vertices[i] = far;
+            } else {
+                inner.add(p);
+                inner_index.add(i);
+            }
+        }
+        List<Vertex> inserted = t.insert_point_sites(inner);
+        for (int i = 0; i < inserted.size(); i++) {
+            t_vertices[inner_index.get(i)] = inserted.get(i);
+        }
+        // the same order as in a diagram of all sites, see HilbertSort::order_segments()
+        double far = t.get_far_radius();
+        for (int i : HilbertSort.order_segments(t_points, segments, -far, -far, 2*far)) {
+            t.insert_line_site(t_vertices[segments.get(i)[0]], t_vertices[segments.get(i)[1]]);
+        }
+    }
+
+    /// pair up the faces of g and T that belong to the same site
+    private void map_faces() {
+        for (int i = 0; i < t_points.size(); i++) {
+            Vertex gv = g_points.get(i);
+            Vertex tv = t_vertices[i];
+            if (gv != null) {
+                map(point_face(gv), point_face(tv));
+                if (gv.null_face != null && tv.null_face != null) {
+                    map(gv.null_face, tv.null_face);
+                }
+            }
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            Face pos = g_segments.get(i);
+            if (pos != null) {
+                Face tpos = segment_face(t_vertices[segments.get(i)[0]], t_points.get(segments.get(i)[1]));
+                map(pos, tpos);
+                map(pos.site.edge().twin.face, tpos.site.edge().twin.face);
+            }
+        }
+        for (Face f : region) {
+            if (!g2t.containsKey(f) && !removed.contains(f) && !f.is_null_face) {
+                throw new IllegalStateException("no site in T for region face " + f.site);
+            }
+        }
+    }
+
+    /// the face of the PointSite with point vertex \a v
+    private Face point_face(Vertex v) {
+        return v.face != null ? v.face : far_faces.get(v);
+    }
+
+    private void map(Face gf, Face tf) {
+        g2t.put(gf, tf);
+        t2g.put(tf, gf);
+    }
+
+    /// the k==+1 face of the segment in T from the point vertex \a start to \a end
+    private static Face segment_face(Vertex start, Point end) {
+        Edge current = start.null_face.edge;
+        do {
+            Face f = current.twin.face;
+            if (f.site.isLine() && f.site.k() == 1 && f.site.start().equals(end) && f.site.end().equals(start.position)) {
+                return f;
+            }
+            current = current.next;
+        } while (current != start.null_face.edge);
+        throw new IllegalStateException("segment not found in T at " + start.position);
+    }
+
+    /// the face of g for face \a tf of T, or the face of T itself if its site is added
+    private Face g_face(Face tf) {
+        Face gf = t2g.get(tf);
+        if (gf == null) {
+            new_faces.add(tf);
+            return tf;
+        }
+        if (!region.contains(gf) || removed.contains(gf)) {
+            wanted.add(gf);
+            throw new IllegalStateException("face of T outside the region: " + tf.site);
+        }
+        return gf;
+    }
+
+    /// \brief sort the vertices of the region faces into interior and boundary vertices,
+    /// and find the edge of T for each region-region edge at a boundary vertex
+    private void find_boundary() {
+        Set<Vertex> verts = new HashSet<>();
+        for (Face f : region) {
+            Edge current = f.edge;
+            do {
+                verts.add(current.source);
+                if (current.twin != null ? region.contains(current.twin.face) : removed.contains(f)) {
+                    dropped.add(current); // the outer edges of a removed far-face have no twin
+                }
+                current = current.next;
+            } while (current != f.edge);
+        }
+        IllegalStateException failure = null; // all boundary vertices are tried, so wanted() covers all of them
+        for (Vertex v : verts) {
+            boolean boundary = false;
+            for (Edge e : v.out_edges) {
+                boundary |= !dropped.contains(e);
+            }
+            for (Edge e : v.in_edges) {
+                boundary |= !dropped.contains(e);
+            }
+            if (!boundary) {
+                interior.add(v);
+                continue;
+            }
+            try {
+                enter(v);
+            } catch (IllegalStateException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /// find the edge of T for each region-region edge at the boundary vertex \a v
+    private void enter(Vertex v) {
+        boolean in_t = true;
+        for (Face f : faces_around(v)) {
+            in_t &= g2t.containsKey(f);
+        }
+        for (Edge e : v.out_edges) {
+            if (!dropped.contains(e)) {
+                continue;
+            }
+            if (e.twin == null) {
+                throw new IllegalStateException("outer edge of a removed face at boundary vertex " + v.position);
+            }
+            Face a = g2t.get(e.face);
+            Face b = g2t.get(e.twin.face);
+            if (a == null || b == null) {
+                throw new IllegalStateException("region face without site in T at boundary vertex " + v.position);
+            }
+            if (in_t) {
+                Vertex tv = find_vertex(v, a);
+                Vertex old = matched.put(tv, v);
+                if (old != null && old != v) {
+                    throw new IllegalStateException("two boundary vertices at " + tv.position);
+                }
+                pieces.add(new Piece(find_out_edge(tv, a, b), Double.NEGATIVE_INFINITY, v));
+            } else {
+                Edge h = find_edge(v, a, b);
+                double s = param(h, v);
+                add_entry(h, new Entry(s, v, true));
+                add_entry(h.twin, new Entry(param(h.twin, v), v, false));
+                pieces.add(new Piece(h, s, v));
+            }
+        }
+    }
+
+    private void add_entry(Edge h, Entry en) {
+        List<Entry> l = entries.get(h);
+        if (l == null) {
+            l = new ArrayList<>();
+            entries.put(h, l);
+        }
+        l.add(en);
+    }
+
+    /// the faces around vertex \a v
+    private static List<Face> faces_around(Vertex v) {
+        List<Face> out = new ArrayList<>();
+        for (Edge e : v.out_edges) {
+            if (!out.contains(e.face)) {
+                out.add(e.face);
+            }
+        }
+        for (Edge e : v.in_edges) {
+            if (!out.contains(e.face)) {
+                out.add(e.face);
+            }
+        }
+        return out;
+    }
+
+    /// the vertex of T on face \a tf with the same faces around it as the boundary vertex \a v
+    private Vertex find_vertex(Vertex v, Face tf) {
+        List<Face> faces = faces_around(v);
+        Vertex best = null;
+        double best_dist = TOLERANCE;
+        Edge current = tf.edge;
+        do {
+            Vertex c = current.source;
+            List<Face> around = faces_around(c);
+            if (around.size() == faces.size()) {
+                boolean same = true;
+                for (Face f : faces) {
+                    same &= around.contains(g2t.get(f));
+                }
+                double d = c.position.distance(v.position);
+                if (same && d <= best_dist) {
+                    best = c;
+                    best_dist = d;
+                }
+            }
+            current = current.next;
+        } while (current != tf.edge);
+        if (best == null) {
+            wanted.addAll(faces);
+            throw new IllegalStateException("no vertex in T for boundary vertex " + v.position);
+        }
+        return best;
+    }
+
+    /// the out-edge of \a tv with face \a a, and face \a b on the other side
+    private static Edge find_out_edge(Vertex tv, Face a, Face b) {
+        for (Edge e : tv.out_edges) {
+            if (e.face == a && e.twin != null && e.twin.face == b) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("no edge in T between the faces at " + tv.position);
+    }
+
+    /// the half-edge of T with face \a a and face \a b on the other side that passes through \a v
+    private Edge find_edge(Vertex v, Face a, Face b) {
+        Edge best = null;
+        double best_error = TOLERANCE;
+        Edge current = a.edge;
+        do {
+            if (current.twin != null && current.twin.face == b) {
+                double error = error(current, v);
+                if (error <= best_error) {
+                    best = current;
+                    best_error = error;
+                }
+            }
+            current = current.next;
+        } while (current != a.edge);
+        if (best == null) {
+            wanted.addAll(faces_around(v));
+            throw new IllegalStateException("no edge in T through boundary vertex " + v.position);
+        }
+        return best;
+    }
+
+    /// true if the clearance-disk radius does not change along \a h
+    private static boolean constant_r(Edge h) {
+        return Math.abs(h.target.r - h.source.r) <= TOLERANCE * Math.max(1, h.source.r);
+    }
+
+    /// \brief position of \a v along \a h, 0 at the source and 1 at the target
+    ///
+    /// the clearance-disk radius grows or shrinks monotonically along an edge (quadratic edges are split at their ::APEX),
+    /// edges with constant radius are straight.
+    private static double param(Edge h, Vertex v) {
+        if (constant_r(h)) {
+            Point d = h.target.position.sub(h.source.position);
+            return v.position.sub(h.source.position).dot(d) / d.norm_sq();
+        }
+        return (v.r - h.source.r) / (h.target.r - h.source.r);
+    }
+
+    /// distance of \a v from \a h
+    private static double error(Edge h, Vertex v) {
+        double s = param(h, v);
+        if (!(s >= -TOLERANCE && s <= 1 + TOLERANCE)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        s = Math.max(0, Math.min(1, s));
+        if (constant_r(h)) {
+            Point d = h.target.position.sub(h.source.position);
+            return h.source.position.add(d.mult(s)).distance(v.position);
+        }
+        return h.point(h.source.r + s*(h.target.r - h.source.r)).distance(v.position);
+    }
+
+    /// walk T from the boundary into the region, and copy the vertices and edges it reaches
+    private void walk() {
+        while (!pieces.isEmpty()) {
+            Piece p = pieces.poll();
+            if (made_from(p.h, p.v)) {
+                continue;
+            }
+            Entry exit = null;
+            List<Entry> on_edge = entries.get(p.h);
+            if (on_edge != null) {
+                for (Entry en : on_edge) {
+                    if (!en.start && en.s > p.s && (exit == null || en.s < exit.s)) {
+                        exit = en;
+                    }
+                }
+                for (Entry en : on_edge) {
+                    if (en.start && en.v != p.v && en.s > p.s && (exit == null || en.s < exit.s)) {
+                        throw new IllegalStateException("region entered twice along an edge of T at " + en.v.position);
+                    }
+                }
+            }
+            Vertex trg;
+            if (exit != null) {
+                trg = exit.v;
+            } else if (matched.containsKey(p.h.target)) {
+                trg = matched.get(p.h.target);
+            } else {
+                trg = copy_vertex(p.h.target);
+            }
+            Edge e = copy_edge(p.h, p.v, trg);
+            Edge e_twin = copy_edge(p.h.twin, trg, p.v);
+            e.twin = e_twin;
+            e_twin.twin = e;
+        }
+    }
+
+    /// true if a new edge along \a h starting at \a v has been made
+    private boolean made_from(Edge h, Vertex v) {
+        List<Edge> l = made.get(h);
+        if (l != null) {
+            for (Edge e : l) {
+                if (e.source == v) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /// the new vertex of g for the vertex \a tv of T inside the region
+    private Vertex copy_vertex(Vertex tv) {
+        Vertex v = created.get(tv);
+        if (v != null) {
+            return v;
+        }
+        if (tv.type == VertexType.POINTSITE || tv.type == VertexType.OUTER) {
+            throw new IllegalStateException("unexpected vertex of T in the region at " + tv.position);
+        }
+        for (Face f : faces_around(tv)) {
+            g_face(f); // check that the face is in the region
+        }
+        v = new Vertex(tv.position, t.get_graph_reference().status(tv), tv.type);
+        v.r = tv.r;
+        v.k3 = tv.k3;
+        v.alfa = tv.alfa;
+        v.max_error = tv.max_error;
+        created.put(tv, v);
+        for (Edge h : tv.out_edges) {
+            pieces.add(new Piece(h, Double.NEGATIVE_INFINITY, v));
+        }
+        return v;
+    }
+
+    /// a new edge of g from \a src to \a trg, along the half-edge \a h of T
+    private Edge copy_edge(Edge h, Vertex src, Vertex trg) {
+        Edge e = new Edge(src, trg);
+        e.copyFrom(h);
+        e.inserted_direction = h.inserted_direction;
+        e.face = g_face(h.face);
+        e.null_face = h.has_null_face ? g_face(h.null_face) : null; // null_face is only meaningful with has_null_face
+        List<Edge> l = made.get(h);
+        if (l == null) {
+            l = new ArrayList<>();
+            made.put(h, l);
+        }
+        l.add(e);
+        new_edges.add(e);
+        add_to(new_out, src, e);
+        add_to(new_in, trg, e);
+        return e;
+    }
+
+    private static void add_to(Map<Vertex, List<Edge>> map, Vertex v, Edge e) {
+        List<Edge> l = map.get(v);
+        if (l == null) {
+            l = new ArrayList<>();
+            map.put(v, l);
+        }
+        l.add(e);
+    }
+
+    /// \brief find the next-pointers at the new and the boundary vertices, and check the face cycles
+    private void link() {
+        for (Vertex v : new_out.keySet()) {
+            List<Edge> outs = new ArrayList<>(new_out.get(v));
+            List<Edge> ins = new ArrayList<>(new_in.get(v));
+            if (g.vertices.contains(v)) { // a boundary vertex, with its edges outside the region
+                for (Edge e : v.out_edges) {
+                    if (!dropped.contains(e)) {
+                        outs.add(e);
+                    }
+                }
+                for (Edge e : v.in_edges) {
+                    if (!dropped.contains(e)) {
+                        ins.add(e);
+                    }
+                }
+            }
+            for (Edge in : ins) {
+                Edge out = null;
+                for (Edge e : outs) {
+                    if (e.face == in.face) {
+                        if (out != null) {
+                            throw new IllegalStateException("face twice around vertex " + v.position);
+                        }
+                        out = e;
+                    }
+                }
+                if (out == null) {
+                    throw new IllegalStateException("no next edge at vertex " + v.position);
+                }
+                next.put(in, out);
+            }
+        }
+        int limit = g.num_edges() + new_edges.size();
+        Set<Face> faces = new HashSet<>(new_faces);
+        for (Face f : region) {
+            if (g2t.containsKey(f)) {
+                faces.add(f);
+            }
+        }
+        Map<Face, Integer> count = new HashMap<>();
+        for (Edge e : new_edges) {
+            face_edge.put(e.face, e);
+            Integer c = count.get(e.face);
+            count.put(e.face, c == null ? 1 : c + 1);
+        }
+        for (Face f : faces) {
+            Edge start = face_edge.get(f);
+            if (start == null) {
+                Edge current = f.edge;
+                do {
+                    if (!dropped.contains(current)) {
+                        start = current;
+                    }
+                    current = current.next;
+                } while (current != f.edge && start == null);
+                if (start == null) {
+                    throw new IllegalStateException("no edges left on face " + f.site);
+                }
+                face_edge.put(f, start);
+            }
+            int n = 0;
+            int n_new = 0;
+            Edge current = start;
+            do {
+                if (current.face != f || dropped.contains(current) || ++n > limit) {
+                    throw new IllegalStateException("broken face cycle for " + f.site);
+                }
+                if (next.containsKey(current) && created_edge(current)) {
+                    n_new++;
+                }
+                current = next.containsKey(current) ? next.get(current) : current.next;
+            } while (current != start);
+            Integer c = count.get(f);
+            if (n_new != (c == null ? 0 : c)) {
+                throw new IllegalStateException("new edges off the face cycle for " + f.site);
+            }
+        }
+        null_faces = new Face[t_points.size()];
+        for (int i = 0; i < t_points.size(); i++) {
+            Vertex tv = t_vertices[i];
+            Vertex gv = g_points.get(i);
+            if (gv != null && gv.null_face != null && !region.contains(gv.null_face)) {
+                null_faces[i] = gv.null_face; // LineSite:s outside the region still end here
+            } else if (tv.null_face != null) {
+                null_faces[i] = g_face(tv.null_face);
+            }
+        }
+        for (int i = 0; i < t_points.size(); i++) {
+            if (g_points.get(i) == null && !new_faces.contains(t_vertices[i].face)) {
+                throw new IllegalStateException("added site not reached from the boundary of the region: " + t_points.get(i));
+            }
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            if (g_segments.get(i) == null) {
+                Face pos = segment_face(t_vertices[segments.get(i)[0]], t_points.get(segments.get(i)[1]));
+                if (!new_faces.contains(pos) || !new_faces.contains(pos.site.edge().twin.face)) {
+                    throw new IllegalStateException("added LineSite not reached from the boundary of the region: " + pos.site);
+                }
+            }
+        }
+        for (Face f : region) {
+            if (!g2t.containsKey(f)) {
+                Edge current = f.edge;
+                do {
+                    if (!dropped.contains(current)) {
+                        throw new IllegalStateException("edge left on deleted face " + f.site);
+                    }
+                    current = current.next;
+                } while (current != f.edge);
+            }
+        }
+    }
+
+    /// true for an edge made by walk()
+    private boolean created_edge(Edge e) {
+        List<Edge> l = new_out.get(e.source);
+        return l != null && l.contains(e);
+    }
+
+    /// \brief replace the region of the graph with the planned part of T
+    void apply() {
+        assert( built ) : " built ";
+        for (Edge e : dropped) {
+            g.remove_edge(e);
+        }
+        for (Vertex v : interior) {
+            g.remove_vertex(v);
+        }
+        for (Face f : deleted_faces()) {
+            if (removed.contains(f) && f.site.isPoint()) {
+                g.delete_vertex(f.site.vertex());
+            }
+            g.remove_face(f);
+        }
+        for (Vertex v : created.values()) {
+            g.add_vertex(v);
+        }
+        for (Edge e : new_edges) {
+            e.source.out_edges.add(e);
+            e.target.in_edges.add(e);
+            g.edges.add(e);
+        }
+        for (Map.Entry<Edge, Edge> en : next.entrySet()) {
+            en.getKey().next = en.getValue();
+        }
+        for (Face f : new_faces) {
+            g.add_face(f);
+            f.set_status(FaceStatus.NONINCIDENT, Vertex.PERSISTENT);
+        }
+        g.invalidate_interval_index();
+        for (Map.Entry<Face, Edge> en : face_edge.entrySet()) {
+            en.getKey().edge = en.getValue();
+        }
+        for (Edge e : new_edges) {
+            if (e.type == EdgeType.LINESITE) {
+                ((LineSite) e.face.site).e = e;
+            }
+        }
+        for (int i = 0; i < t_points.size(); i++) {
+            Vertex v = g_points.get(i);
+            if (v == null) {
+                v = t_vertices[i]; // an added point keeps its vertex, face and site from T
+                g.add_vertex(v);
+            } else if (!region.contains(point_face(v))) {
+                continue;
+            } else if (new_faces.contains(null_faces[i])) {
+                null_faces[i].site = point_face(v).site; // the first LineSite at v, the null-face shares the site of v
+            }
+            v.null_face = null_faces[i];
+        }
+    }
+}
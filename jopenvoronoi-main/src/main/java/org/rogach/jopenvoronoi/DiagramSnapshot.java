@@ -0,0 +1,149 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/// \brief immutable copy of a finished diagram, for concurrent read-only queries
+///
+/// The snapshot copies the graph into a CompactHalfEdgeDiagram and indexes the Sites in a SiteGrid.
+/// Neither is modified after construction and all fields are final,
+/// so a snapshot can be shared between threads without locking, once constructed.
+/// Later changes to the VoronoiDiagram (inserting or removing sites, running a Filter) do not affect the snapshot.
+///
+/// The Sites are copies made by the CompactHalfEdgeDiagram, not the Site objects of the diagram:
+/// their face, vertex and edge are null.
+///
+/// queries:
+/// - nearest_site(), the Site closest to a point (the Site of the face containing the point).
+///   the three far-away initial sites added by VoronoiDiagram::initialize() are not considered.
+/// - clearance(), distance from a point to the closest Site
+/// - offset(), offset loops at a given distance, same as Offset::offset()
+public final class DiagramSnapshot {
+    private final CompactHalfEdgeDiagram g;
+    private final Site[] sites; ///< sites[f] is the Site of face f, null if it has none
+    private final SiteGrid grid;
+
+    /// take a snapshot of \a vd. edges invalidated by a Filter stay invalid in the snapshot.
+    public DiagramSnapshot(VoronoiDiagram vd) {
+        this(vd.get_graph_reference());
+    }
+
+    /// take a snapshot of graph \a hedi
+    public DiagramSnapshot(HalfEdgeDiagram hedi) {
+        CompactHalfEdgeDiagram c = CompactHalfEdgeDiagram.from(hedi);
+        c.trim();
+        g = c;
+        sites = new Site[g.face_slots()];
+        List<Site> inner = new ArrayList<>();
+        int f = 0;
+        for (Face face : hedi.faces) { // from() numbers faces in iteration order
+            sites[f] = g.face_site(f);
+            if (!face.is_null_face && sites[f] != null && !FaceIndex.is_outer_face(face)) {
+                inner.add(sites[f]);
+            }
+            f++;
+        }
+        grid = new SiteGrid(inner.toArray(new Site[inner.size()]));
+    }
+
+    /// return the graph of this snapshot. \attention must not be modified.
+    CompactHalfEdgeDiagram graph() {
+        return g;
+    }
+
+    /// return number of faces in the snapshot
+    public int num_faces() {
+        return g.num_faces();
+    }
+
+    /// return the Site closest to \a p, or null for an empty diagram
+    public Site nearest_site(Point p) {
+        int i = grid.nearest(p);
+        return i == -1 ? null : grid.site(i);
+    }
+
+    /// return the clearance-disk radius at \a p, i.e. the distance to the closest Site
+    public double clearance(Point p) {
+        int i = grid.nearest(p);
+        return i == -1 ? Double.POSITIVE_INFINITY : grid.site(i).apex_distance(p);
+    }
+
+    /// \brief create offsets at offset distance \a t
+    ///
+    /// works like Offset::offset(), using only local state, so it can be called concurrently.
+    /// the face and edge of the returned OffsetVertex:es are null, since the snapshot holds no Face or Edge objects.
+    public List<OffsetLoop> offset(double t) {
+        boolean[] remaining = new boolean[g.face_slots()];
+        for (int f = 0; f < g.face_slots(); f++) {
+            remaining[f] = g.is_face(f) && needs_offset(f, t);
+        }
+        return new SnapshotWalk(remaining, t).walk();
+    }
+
+    /// true if an edge of face \a f brackets \a t, and no edge of \a f is invalid
+    private boolean needs_offset(int f, double t) {
+        boolean bracket = false;
+        int start = g.face_edge(f);
+        int current = start;
+        do {
+            if (!g.valid(current)) {
+                return false;
+            }
+            double src_r = g.vertex_r(g.source(current));
+            double trg_r = g.vertex_r(g.target(current));
+            if (Math.min(src_r, trg_r) < t && t < Math.max(src_r, trg_r)) {
+                bracket = true;
+            }
+            current = g.next(current);
+        } while (current != start);
+        return bracket;
+    }
+
+    /// the offset walk over the face and edge numbers of the compact graph, faces are walked in increasing order
+    private class SnapshotWalk extends OffsetWalk<Integer, Integer> {
+        final boolean[] remaining;
+        int start = 0; ///< no face below start remains
+
+        SnapshotWalk(boolean[] remaining, double t) {
+            super(t);
+            this.remaining = remaining;
+        }
+
+        @Override
+        Integer next_remaining_face() {
+            while (start < remaining.length && !remaining[start]) {
+                start++;
+            }
+            return start < remaining.length ? start : null;
+        }
+
+        @Override
+        void face_done(Integer f) { remaining[f] = false; }
+        @Override
+        Integer face_edge(Integer f) { return g.face_edge(f); }
+        @Override
+        Integer next(Integer e) { return g.next(e); }
+        @Override
+        Integer twin(Integer e) { return g.twin(e); }
+        @Override
+        Integer face(Integer e) { return g.face(e); }
+        @Override
+        Site site(Integer f) { return sites[f]; }
+        @Override
+        double source_r(Integer e) { return g.vertex_r(g.source(e)); }
+        @Override
+        double target_r(Integer e) { return g.vertex_r(g.target(e)); }
+        @Override
+        Point point(Integer e) { return new Point(g.edge_point_x(e, t), g.edge_point_y(e, t)); }
+
+        @Override
+        OffsetVertex start_vertex(Point p, Integer e) {
+            return new OffsetVertex(p, null);
+        }
+
+        @Override
+        OffsetVertex offset_vertex(Point p, double r, Point c, boolean cw, Integer f, Integer e) {
+            return new OffsetVertex(p, r, c, cw, null, null);
+        }
+    }
+}
@@ -70,6 +70,15 @@ public class Edge {
     /// the eight-parameter formula for a point on the edge is:
     /// x = x1 - x2 - x3*t +/- x4 * sqrt( square(x5+x6*t) - square(x7+x8*t) )
     public Point point(double t) {
+        Point p = new Point();
+        point(t, p);
+        return p;
+    }
+
+    /// \brief set \a out to the point on edge at given offset-distance t
+    ///
+    /// same as point(double), but without allocating a new Point.
+    public void point(double t, Point out) {
         double discr1 =  chop( sq(x[4]+x[5]*t) - sq(x[6]+x[7]*t), 1e-14 );
         double discr2 =  chop( sq(y[4]+y[5]*t) - sq(y[6]+y[7]*t), 1e-14 );
         if ( (discr1 >= 0) && (discr2 >= 0) ) {
@@ -80,9 +89,9 @@ public class Edge {
             if (xc!=xc) { // test for NaN!
                 throw new RuntimeException();
             }
-            return new Point(xc,yc);
+            out.set(xc,yc);
         } else {
-            return new Point(x[0] - x[1] - x[2]*t ,y[0] - y[1] - y[2]*t); // coordinates without sqrt()
+            out.set(x[0] - x[1] - x[2]*t ,y[0] - y[1] - y[2]*t); // coordinates without sqrt()
         }
     }
 
@@ -382,7 +391,7 @@ public class Edge {
     /// minimum t-value for edge between PointSite and ArcSite
     public double minimum_pa_t(Site s1, Site s2) {
         assert( s1.isPoint() && s2.isArc() ) : " s1.isPoint() && s2.isArc() ";
-        double p1p2 = s1.position().sub(s2.apex_point(s1.position())).norm(); // - s2->r() ;
+        double p1p2 = s2.apex_distance(s1.position()); // - s2->r() ;
         assert( p1p2 >=0 ) : " p1p2 >=0 ";
         return p1p2/2; // this splits point-point edges at APEX
     }
@@ -0,0 +1,97 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/// \brief interval tree over the edges of a graph, keyed by the clearance-disk radii of the end-points
+///
+/// each edge covers the interval [min(src.r,trg.r), max(src.r,trg.r)].
+/// find() returns the edges whose interval strictly brackets a given offset distance t,
+/// i.e. the edges on which an offset at distance t has a point, in O(log n + k).
+///
+/// The tree is implicit: edges sorted by the lower end of their interval, and a
+/// balanced binary tree over that array where each node stores the largest upper end in its subtree.
+/// A subtree is skipped when all its intervals start at or after t, or all end at or before t.
+///
+/// The index also numbers the faces of the graph: Face::index is set to the position of the face
+/// in face(int), so callers can keep per-face state for an offset in arrays instead of sets.
+///
+/// See HalfEdgeDiagram::interval_index(), which keeps an index for the current graph.
+public class EdgeIntervalIndex {
+    private final Edge[] edges; ///< edges sorted by lo
+    private final double[] lo; ///< lower end of the interval of edges[i]
+    private final double[] hi; ///< upper end of the interval of edges[i]
+    private final double[] max_hi; ///< largest hi in the subtree of node i (heap layout, root at 1)
+    private final Face[] faces; ///< faces[i].index == i
+
+    public EdgeIntervalIndex(Collection<Edge> graph_edges, Collection<Face> graph_faces) {
+        faces = graph_faces.toArray(new Face[graph_faces.size()]);
+        for (int i = 0; i < faces.length; i++) {
+            faces[i].index = i;
+        }
+        edges = graph_edges.toArray(new Edge[graph_edges.size()]);
+        Arrays.sort(edges, new Comparator<Edge>() {
+                public int compare(Edge a, Edge b) {
+                    return Double.compare(Math.min(a.source.dist(), a.target.dist()),
+                                          Math.min(b.source.dist(), b.target.dist()));
+                }
+            });
+        int n = edges.length;
+        lo = new double[n];
+        hi = new double[n];
+        for (int i = 0; i < n; i++) {
+            lo[i] = Math.min(edges[i].source.dist(), edges[i].target.dist());
+            hi[i] = Math.max(edges[i].source.dist(), edges[i].target.dist());
+        }
+        max_hi = new double[Math.max(2, 4*n)];
+        if (n > 0) {
+            build(1, 0, n);
+        }
+    }
+
+    private double build(int node, int from, int to) {
+        if (to - from == 1) {
+            max_hi[node] = hi[from];
+        } else {
+            int mid = (from + to) >>> 1;
+            max_hi[node] = Math.max(build(2*node, from, mid), build(2*node+1, mid, to));
+        }
+        return max_hi[node];
+    }
+
+    /// return number of indexed edges
+    public int size() {
+        return edges.length;
+    }
+
+    /// return number of numbered faces
+    public int num_faces() {
+        return faces.length;
+    }
+
+    /// return the face with Face::index \a i
+    public Face face(int i) {
+        return faces[i];
+    }
+
+    /// add all edges with min(src.r,trg.r) < t < max(src.r,trg.r) to \a out
+    public void find(double t, Collection<Edge> out) {
+        if (edges.length > 0) {
+            find(1, 0, edges.length, t, out);
+        }
+    }
+
+    private void find(int node, int from, int to, double t, Collection<Edge> out) {
+        if (max_hi[node] <= t || lo[from] >= t) {
+            return; // all intervals in this subtree end before t, or start after t
+        }
+        if (to - from == 1) {
+            out.add(edges[from]);
+        } else {
+            int mid = (from + to) >>> 1;
+            find(2*node, from, mid, t, out);
+            find(2*node+1, mid, to, t, out);
+        }
+    }
+}
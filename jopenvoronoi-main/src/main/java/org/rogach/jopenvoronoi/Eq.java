@@ -83,6 +83,15 @@ public class Eq {
         q = other.q;
     }
 
+    /// copy the parameters of \a other, with the offset direction multiplied by \a kk
+    public void set(Eq other, double kk) {
+        a = other.a;
+        b = other.b;
+        c = other.c;
+        k = other.k * kk;
+        q = other.q;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other instanceof Eq) {
@@ -3,9 +3,32 @@ package org.rogach.jopenvoronoi;
 public class Face {
     public Edge edge;
     public Site site;
-    public FaceStatus status;
+    FaceStatus status; ///< face status, read it with status(int)
+    int epoch; ///< the epoch in which status was set
     public boolean is_null_face;
+    int index; ///< number of this face in the EdgeIntervalIndex of the graph, see EdgeIntervalIndex::face()
+    HalfEdgeDiagram graph; ///< the graph this face was added to, whose epoch status() reads. null before that
     public Face() {}
+
+    /// \brief return the status of this face in the current epoch of its graph
+    ///
+    /// replaces the public status field, which was reset after each site insertion.
+    /// reads like HalfEdgeDiagram::status(Face). A face that is not in a graph has no epochs.
+    public FaceStatus status() {
+        return graph == null ? status : status(graph.epoch());
+    }
+
+    /// return the status of this face in epoch \a current. a status set in an earlier epoch reads as ::NONINCIDENT
+    public FaceStatus status(int current) {
+        return epoch == current ? status : FaceStatus.NONINCIDENT;
+    }
+
+    /// set the status for epoch \a current only
+    void set_status(FaceStatus st, int current) {
+        status = st;
+        epoch = current;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,75 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/// \brief point-location index, finds the Face containing a query point
+///
+/// The Face containing a point is the face of the Site closest to that point,
+/// so point-location is a nearest-site query over the face sites, see SiteGrid.
+/// Null-faces have no area and are not indexed.
+/// The faces of the three far-away initial sites are kept out of the grid (they would
+/// stretch it over the whole far-circle) and are checked separately on every query.
+///
+/// The index is built from the faces present at construction time,
+/// and is stale once the diagram is modified. See VoronoiDiagram::find_face(), which rebuilds as needed.
+public class FaceIndex {
+    private final SiteGrid grid;
+    private final Face[] faces; ///< faces[i] is the face of grid.site(i)
+    private final Face[] outer_faces; ///< faces with ::OUTER vertices
+
+    public FaceIndex(HalfEdgeDiagram g) {
+        List<Face> inner = new ArrayList<>();
+        List<Face> outer = new ArrayList<>();
+        for (Face f : g.faces) {
+            if (f.is_null_face || f.site == null) {
+                continue;
+            }
+            if (is_outer_face(f)) {
+                outer.add(f);
+            } else {
+                inner.add(f);
+            }
+        }
+        faces = inner.toArray(new Face[inner.size()]);
+        outer_faces = outer.toArray(new Face[outer.size()]);
+        Site[] sites = new Site[faces.length];
+        for (int i = 0; i < faces.length; i++) {
+            sites[i] = faces[i].site;
+        }
+        grid = new SiteGrid(sites);
+    }
+
+    /// true for the faces of the three far-away initial sites, which have ::OUTER vertices
+    static boolean is_outer_face(Face f) {
+        Edge current = f.edge;
+        do {
+            if (current.target.type == VertexType.OUTER) {
+                return true;
+            }
+            current = current.next;
+        } while (current != f.edge);
+        return false;
+    }
+
+    /// return the Face containing \a p
+    public Face find_face(Point p) {
+        int i = grid.nearest(p);
+        Face best = i == -1 ? null : faces[i];
+        double best_dist = i == -1 ? Double.POSITIVE_INFINITY : best.site.apex_distance(p);
+        for (Face f : outer_faces) {
+            double d = f.site.apex_distance(p);
+            if (d < best_dist) {
+                best = f;
+                best_dist = d;
+            }
+        }
+        return best;
+    }
+
+    /// return the Site of the Face containing \a p
+    public Site find_site(Point p) {
+        Face f = find_face(p);
+        return f == null ? null : f.site;
+    }
+}
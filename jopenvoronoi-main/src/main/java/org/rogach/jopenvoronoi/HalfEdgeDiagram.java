@@ -50,18 +50,128 @@ public class HalfEdgeDiagram {
     public Set<Vertex> vertices = new HashSet<>();
     public Set<Edge> edges = new HashSet<>();
     public Set<Face> faces = new HashSet<>();
+    private int vertex_count; ///< number of vertices ever added, including removed ones
+    private volatile EdgeIntervalIndex interval_index; ///< built on demand by interval_index(), null when edges have changed
+    private int epoch = 1; ///< current status epoch, see next_epoch()
 
     public Vertex add_vertex() {
-        Vertex v = new Vertex();
-        vertices.add(v);
-        return v;
+        return add_vertex(new Vertex());
     }
     /// add a vertex with given properties, return vertex descriptor
     public Vertex add_vertex(Vertex v) {
         vertices.add(v);
+        v.graph = this;
+        vertex_count++;
         return v;
     }
 
+    /// return number of vertices ever added to this graph, including removed ones
+    public int vertex_count() {
+        return vertex_count;
+    }
+
+    /// set the number of vertices ever added, for a graph restored by DiagramFile
+    void set_vertex_count(int n) {
+        vertex_count = n;
+    }
+
+    /// \brief move all vertices, edges and faces of \a other into this graph, see ParallelBuilder
+    ///
+    /// the two graphs are not connected, the caller links them. Statuses set in either graph expire.
+    void absorb(HalfEdgeDiagram other) {
+        vertices.addAll(other.vertices);
+        edges.addAll(other.edges);
+        faces.addAll(other.faces);
+        for (Vertex v : other.vertices) {
+            v.graph = this;
+        }
+        for (Face f : other.faces) {
+            f.graph = this;
+        }
+        vertex_count += other.vertex_count;
+        epoch = Math.max(epoch, other.epoch) + 1;
+        interval_index = null;
+    }
+
+    /// \brief return an EdgeIntervalIndex of the edges in the graph
+    ///
+    /// the index is built on the first call, and kept until an edge or face is added or removed
+    /// through add_edge(), add_twin_edges(), remove_edge(), clear_vertex(), add_face() or remove_face().
+    /// Code that changes the graph in other ways (setting the source or target of an edge,
+    /// the clearance-disk radius of a vertex, or filling the edge and face sets directly)
+    /// must call invalidate_interval_index().
+    ///
+    /// Readers of an unchanging graph (e.g. Offset on several threads) may call this concurrently:
+    /// the index is built once, under a lock, and published through a volatile field,
+    /// together with the Face::index:es that it assigns.
+    public EdgeIntervalIndex interval_index() {
+        EdgeIntervalIndex index = interval_index;
+        if (index == null) {
+            synchronized (this) {
+                index = interval_index;
+                if (index == null) {
+                    index = new EdgeIntervalIndex(edges, faces);
+                    interval_index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /// drop the cached EdgeIntervalIndex, after a change to the graph that bypasses the add/remove methods
+    public void invalidate_interval_index() {
+        interval_index = null;
+    }
+
+    /// \brief start a new status epoch
+    ///
+    /// vertex and face statuses set with set_status() are valid only in the epoch in which they were set.
+    /// after next_epoch() they read as ::UNDECIDED and ::NONINCIDENT, without visiting the vertices and faces.
+    /// VoronoiDiagram starts a new epoch after each site insertion.
+    public void next_epoch() {
+        epoch++;
+    }
+
+    /// return the current status epoch
+    public int epoch() {
+        return epoch;
+    }
+
+    /// return the status of vertex \a v in the current epoch
+    public VertexStatus status(Vertex v) {
+        return v.status(epoch);
+    }
+
+    /// set the status of vertex \a v for the current epoch
+    public void set_status(Vertex v, VertexStatus st) {
+        v.set_status(st, epoch);
+    }
+
+    /// make the status of vertex \a v expire at the end of the current epoch
+    public void stamp(Vertex v) {
+        v.stamp(epoch);
+    }
+
+    /// true if vertex \a v was pushed to the vertex queue in the current epoch
+    public boolean in_queue(Vertex v) {
+        return v.in_queue(epoch);
+    }
+
+    /// mark vertex \a v as pushed to the vertex queue in the current epoch
+    public void set_in_queue(Vertex v) {
+        v.set_in_queue(epoch);
+    }
+
+    /// return the status of face \a f in the current epoch
+    public FaceStatus status(Face f) {
+        return f.status(epoch);
+    }
+
+    /// set the status of face \a f for the current epoch
+    public void set_status(Face f, FaceStatus st) {
+        f.set_status(st, epoch);
+    }
+
     /// return number of faces in graph
     public int num_faces() {
         return faces.size();
@@ -85,14 +195,23 @@ public class HalfEdgeDiagram {
     /// add an edge between vertices v1-v2
     public Edge add_edge(Vertex v1, Vertex v2) {
         Edge e = new Edge(v1, v2);
+        interval_index = null;
         v1.out_edges.add(e);
         v2.in_edges.add(e);
         edges.add(e);
         return e;
     }
 
-    /// return true if v1-v2 edge exists
+    /// return true if v1-v2 edge exists. scans the out-edges of v1 or the in-edges of v2, whichever is shorter
     public boolean has_edge(Vertex v1, Vertex v2) {
+        if (v2.in_edges.size() < v1.out_edges.size()) {
+            for (Edge e : v2.in_edges) {
+                if (e.source == v1) {
+                    return true;
+                }
+            }
+            return false;
+        }
         for (Edge e : v1.out_edges) {
             if (e.target == v2) {
                 return true;
@@ -113,6 +232,7 @@ public class HalfEdgeDiagram {
 
     /// clear given vertex. this removes all edges connecting to the vertex.
     public void clear_vertex(Vertex v) {
+        interval_index = null;
         for (Edge e : v.out_edges) {
             e.target.in_edges.remove(e);
             edges.remove(e);
@@ -132,6 +252,7 @@ public class HalfEdgeDiagram {
 
     /// remove given edge
     public void remove_edge(Edge e) {
+        interval_index = null;
         e.source.out_edges.remove(e);
         e.target.in_edges.remove(e);
         edges.remove(e);
@@ -221,11 +342,23 @@ public class HalfEdgeDiagram {
 
     /// add a face, with given properties
     public Face add_face() {
-        Face f = new Face();
+        return add_face(new Face());
+    }
+
+    /// add the given face, e.g. a face of another graph, return it
+    public Face add_face(Face f) {
         faces.add(f);
+        f.graph = this;
+        interval_index = null;
         return f;
     }
 
+    /// remove a face. the edges of the face are not touched, remove them first!
+    public void remove_face(Face f) {
+        faces.remove(f);
+        interval_index = null;
+    }
+
     /// return all vertices adjecent to given vertex
     public List<Vertex> adjacent_vertices(Vertex v) {
         List<Vertex> adj = new ArrayList<>();
@@ -0,0 +1,166 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/// \brief spatial presorting of point sites along a Hilbert curve
+///
+/// Points that are consecutive in Hilbert order are (mostly) close to each other.
+/// Inserting sites in this order means that each new site lands in a face next to
+/// the faces touched by the previous insertion, which keeps the incremental
+/// algorithm working on a small, cache-friendly part of the graph.
+///
+/// see http://en.wikipedia.org/wiki/Hilbert_curve
+public class HilbertSort {
+    /// the bounding box of the input is divided into 2^ORDER x 2^ORDER cells.
+    /// curve positions then need 2*ORDER bits, which leaves room for a 32-bit point index in a long.
+    static final int ORDER = 15;
+
+    /// \brief return the indices of \a points, sorted by position along a Hilbert curve
+    ///
+    /// the curve covers the bounding box of the points, see order(List, double, double, double).
+    public static int[] order(List<Point> points) {
+        double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+        double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+        for (Point p : points) {
+            minx = Math.min(minx, p.x);
+            miny = Math.min(miny, p.y);
+            maxx = Math.max(maxx, p.x);
+            maxy = Math.max(maxy, p.y);
+        }
+        return order(points, minx, miny, Math.max(maxx - minx, maxy - miny));
+    }
+
+    /// \brief return the indices of \a points, sorted by position along the Hilbert curve of a fixed square
+    ///
+    /// \param points the points, inside the square
+    /// \param minx left side of the square
+    /// \param miny bottom side of the square
+    /// \param extent side length of the square
+    ///
+    /// \details
+    /// Points in the same grid cell are sorted by x and then by y coordinate. Over a fixed square,
+    /// any subset of the points is then sorted in the same relative order as the whole set.
+    /// A diagram of a subset splits degenerate vertices (of several equidistant sites) the same way
+    /// as the diagram of the whole set, which ParallelBuilder and DiagramPatch depend on.
+    public static int[] order(List<Point> points, double minx, double miny, double extent) {
+        int n = points.size();
+        long[] cell = new long[n];
+        for (int i = 0; i < n; i++) {
+            cell[i] = cell_index(points.get(i), minx, miny, extent);
+        }
+
+        // sort (curve position, index) pairs packed into a long, to avoid boxing
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = (cell[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) (keys[i] & 0xffffffffL);
+        }
+        // runs of points in the same cell are rare, and short
+        for (int i = 0; i < n; ) {
+            int j = i + 1;
+            while (j < n && cell[order[j]] == cell[order[i]]) {
+                j++;
+            }
+            for (int k = i + 1; k < j; k++) {
+                for (int m = k; m > i && compare(points.get(order[m]), points.get(order[m - 1])) < 0; m--) {
+                    int tmp = order[m];
+                    order[m] = order[m - 1];
+                    order[m - 1] = tmp;
+                }
+            }
+            i = j;
+        }
+        return order;
+    }
+
+    /// \brief return the indices of \a segments, sorted by the position of their mid-points along the Hilbert curve of a fixed square
+    ///
+    /// \param points end-points of the segments, inside the square
+    /// \param segments {start, end} indices into \a points
+    /// \param minx left side of the square
+    /// \param miny bottom side of the square
+    /// \param extent side length of the square
+    ///
+    /// \details
+    /// Segments with mid-points in the same grid cell are sorted by their lower and then their upper end-point
+    /// (by x, then y), whatever their direction. Like order(List, double, double, double), any subset of the segments
+    /// is sorted in the same relative order as the whole set.
+    public static int[] order_segments(final List<Point> points, final List<int[]> segments, double minx, double miny, double extent) {
+        int n = segments.size();
+        final long[] cell = new long[n];
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            int[] s = segments.get(i);
+            Point mid = points.get(s[0]).add(points.get(s[1])).mult(0.5);
+            cell[i] = cell_index(mid, minx, miny, extent);
+            idx[i] = i;
+        }
+        Arrays.sort(idx, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                if (cell[i] != cell[j]) {
+                    return cell[i] < cell[j] ? -1 : 1;
+                }
+                Point[] a = sorted_ends(points, segments.get(i));
+                Point[] b = sorted_ends(points, segments.get(j));
+                int c = HilbertSort.compare(a[0], b[0]);
+                return c != 0 ? c : HilbertSort.compare(a[1], b[1]);
+            }
+        });
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = idx[i];
+        }
+        return order;
+    }
+
+    /// the end-points of segment \a s, lower one first
+    private static Point[] sorted_ends(List<Point> points, int[] s) {
+        Point a = points.get(s[0]);
+        Point b = points.get(s[1]);
+        return compare(a, b) <= 0 ? new Point[] { a, b } : new Point[] { b, a };
+    }
+
+    /// order of points by x, then y coordinate
+    static int compare(Point a, Point b) {
+        int c = Double.compare(a.x, b.x);
+        return c != 0 ? c : Double.compare(a.y, b.y);
+    }
+
+    /// \brief position of the grid cell of \a p along the Hilbert curve over the square at (\a minx, \a miny) with side \a extent
+    private static long cell_index(Point p, double minx, double miny, double extent) {
+        double scale = (extent > 0) ? ((1 << ORDER) - 1) / extent : 0;
+        int x = (int) ((p.x - minx) * scale);
+        int y = (int) ((p.y - miny) * scale);
+        return hilbert_index(x, y);
+    }
+
+    /// \brief position of grid cell (\a x, \a y) along the Hilbert curve of the 2^ORDER x 2^ORDER grid
+    static long hilbert_index(int x, int y) {
+        int n = 1 << ORDER;
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = ((x & s) > 0) ? 1 : 0;
+            int ry = ((y & s) > 0) ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant, so that the sub-curve is traversed in the right direction
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,69 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import ags.utils.dataStructures.trees.thirdGenKD.KdTree;
+import ags.utils.dataStructures.trees.thirdGenKD.NearestNeighborIterator;
+import ags.utils.dataStructures.trees.thirdGenKD.SquareEuclideanDistanceFunction;
+
+/// \brief PointLocator that finds the closest PointSite with a kd-tree nearest-neighbor search
+///
+/// works for any insertion order, each lookup is O(log n).
+/// The kd-tree does not support deletion, so removed sites stay in the tree and are skipped
+/// during the search, see remove(). When more than half of the tree is removed sites
+/// the tree is rebuilt from the live sites, so the search never skips more entries than there are live ones.
+public class KdTreeLocator implements PointLocator {
+    private KdTree<KdPoint> kd_tree = new KdTree<KdPoint>(2); ///< kd-tree of all PointSite:s
+    private SquareEuclideanDistanceFunction distance = new SquareEuclideanDistanceFunction();
+    private List<KdPoint> points = new ArrayList<>(); ///< all points in kd_tree, for rebuilding it
+    private Set<Face> removed = Collections.newSetFromMap(new IdentityHashMap<Face, Boolean>()); ///< faces of removed sites still in kd_tree
+
+    public void add(Point p, Face f) {
+        KdPoint kp = new KdPoint(p, f);
+        kd_tree.addPoint(new double[] { p.x, p.y }, kp);
+        points.add(kp);
+    }
+
+    public void remove(Point p, Face f) {
+        removed.add(f);
+        if (2*removed.size() > points.size()) {
+            rebuild();
+        }
+    }
+
+    /// build a new kd-tree without the removed sites
+    private void rebuild() {
+        List<KdPoint> live = new ArrayList<>(points.size() - removed.size());
+        for (KdPoint kp : points) {
+            if (!removed.contains(kp.face)) {
+                live.add(kp);
+            }
+        }
+        kd_tree = new KdTree<KdPoint>(2);
+        points.clear();
+        removed.clear();
+        for (KdPoint kp : live) {
+            add(kp.p, kp.face);
+        }
+    }
+
+    public Face nearest_face(Point p) {
+        double[] q = new double[] { p.x, p.y };
+        if (removed.isEmpty()) {
+            return kd_tree.findNearestNeighbors(q, 1, distance).getMax().face;
+        }
+        // at most removed.size() points are skipped before a live one is found
+        NearestNeighborIterator<KdPoint> it = kd_tree.getNearestNeighborIterator(q, removed.size() + 1, distance);
+        while (it.hasNext()) {
+            KdPoint kp = it.next();
+            if (!removed.contains(kp.face)) {
+                return kp.face;
+            }
+        }
+        throw new IllegalStateException("no PointSite left in the locator");
+    }
+}
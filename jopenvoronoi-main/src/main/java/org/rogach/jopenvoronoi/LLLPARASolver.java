@@ -1,12 +1,10 @@
 package org.rogach.jopenvoronoi;
 
-import java.util.List;
-import java.util.ArrayList;
-
 /// \brief line-line-line Solver (parallel line-segment case)
 ///
 /// solves 3x3 system.
 public class LLLPARASolver extends Solver {
+    private final double[] xy = new double[2]; ///< scratch space for two_by_two_solver()
 // parallel linesegment edge case.
 //  a1 x + b1 y + c1 + k1 t = 0
 //  a2 x + b2 y + c2 + k2 t = 0
@@ -36,28 +34,24 @@ public class LLLPARASolver extends Solver {
 
     public int solve( Site s1, double k1,
                Site s2, double k2,
-               Site s3, double k3, List<Solution> slns ) {
+               Site s3, double k3, SolutionBuffer slns ) {
         assert( s1.isLine() && s2.isLine() && s3.isLine() ) : " s1.isLine() && s2.isLine() && s3.isLine() ";
 
-        Eq bisector = new Eq();
-        bisector.a = s1.a();
-        bisector.b = s1.b();
+        double bisector_a = s1.a();
+        double bisector_b = s1.b();
         double s2c = s2.c();
 
         // if s1 and s2 have opposite (a,b) normals, flip the sign of s2c
-        Point n0 = new Point(s1.a(), s1.b());
-        Point n1 = new Point(s2.a(), s2.b());
-        if (n0.dot(n1) < 0)
+        if (s1.a()*s2.a() + s1.b()*s2.b() < 0)
             {
                 s2c = -s2c;
             }
 
-        bisector.c = (s1.c() + s2c)*0.5;
+        double bisector_c = (s1.c() + s2c)*0.5;
         double tb = 0.5*Math.abs(s1.c() - s2c); // bisector offset distance
 
-        Pair<Double, Double> xy = two_by_two_solver(bisector.a, bisector.b, s3.a(), s3.b(), -bisector.c, -s3.c()-k3*tb);
-        if (xy != null) {
-            slns.add(new Solution(new Point(xy.getFirst(), xy.getSecond()), tb, k3));
+        if (two_by_two_solver(bisector_a, bisector_b, s3.a(), s3.b(), -bisector_c, -s3.c()-k3*tb, xy)) {
+            slns.add(xy[0], xy[1], tb, k3);
             return 1;
         } else {
             return 0;
@@ -65,14 +59,14 @@ public class LLLPARASolver extends Solver {
     }
 
     /// solve 2z2 system Ax = y by inverting A
-    /// x = Ainv * y
+    /// x = Ainv * y, written to \a uv
     /// returns false if det(A)==0, i.e. no solution found
-    Pair<Double, Double> two_by_two_solver( double a,
-                                            double b,
-                                            double c,
-                                            double d,
-                                            double e,
-                                            double f) {
+    boolean two_by_two_solver( double a,
+                               double b,
+                               double c,
+                               double d,
+                               double e,
+                               double f, double[] uv) {
         //  [ a  b ] [u] = [ e ]
         //  [ c  d ] [v] = [ f ]
         // matrix inverse is
@@ -83,10 +77,12 @@ public class LLLPARASolver extends Solver {
         //  [v]  =  1/det *  [ -c  a ] [ f ]
         double det = a*d-c*b;
         if ( Math.abs(det) < 1e-15 ) // TOLERANCE!!
-            return null;
+            return false;
         double u = (1.0/det) * (d*e - b*f);
         double v = (1.0/det) * (-c*e + a*f);
-        return new Pair<Double, Double>(u, v);
+        uv[0] = u;
+        uv[1] = v;
+        return true;
     }
 
 };
@@ -1,7 +1,5 @@
 package org.rogach.jopenvoronoi;
 
-import java.util.List;
-import java.util.ArrayList;
 import static org.rogach.jopenvoronoi.Numeric.determinant;
 import static org.rogach.jopenvoronoi.Numeric.chop;
 
@@ -9,6 +7,10 @@ import static org.rogach.jopenvoronoi.Numeric.chop;
 ///
 /// solves 3x3 system.
 public class LLLSolver extends Solver {
+    // scratch space, reused between calls
+    private final Eq[] eq = new Eq[] { new Eq(), new Eq(), new Eq() }; ///< site equations, written by Site::eqp()
+    private final LLLPARASolver para_solver = new LLLPARASolver(); ///< fallback for nearly parallel lines
+    private final SolutionBuffer para_solutions = new SolutionBuffer();
 
 //  a1 x + b1 y + c1 + k1 t = 0
 //  a2 x + b2 y + c2 + k2 t = 0
@@ -25,34 +27,33 @@ public class LLLSolver extends Solver {
 
     public int solve( Site s1, double k1,
                       Site s2, double k2,
-                      Site s3, double k3, List<Solution> slns ) {
+                      Site s3, double k3, SolutionBuffer slns ) {
 
         assert( s1.isLine() && s2.isLine() && s3.isLine() ) : " s1.isLine() && s2.isLine() && s3.isLine() ";
 
-        List<Eq> eq = new ArrayList<>(); // equation-parameters, in quad-precision
-        Site[] sites = new Site[] { s1, s2, s3 };
-        double[] kvals = new double[] { k1, k2, k3 };
-        for (int i=0;i<3;i++)
-            eq.add( sites[i].eqp( kvals[i] ) );
+        // equation-parameters, in quad-precision
+        s1.eqp(k1, eq[0]);
+        s2.eqp(k2, eq[1]);
+        s3.eqp(k3, eq[2]);
 
         int i = 0, j=1, k=2;
-        double d = chop( determinant( eq.get(i).a, eq.get(i).b, eq.get(i).k,
-                                      eq.get(j).a, eq.get(j).b, eq.get(j).k,
-                                      eq.get(k).a, eq.get(k).b, eq.get(k).k ) );
+        double d = chop( determinant( eq[i].a, eq[i].b, eq[i].k,
+                                      eq[j].a, eq[j].b, eq[j].k,
+                                      eq[k].a, eq[k].b, eq[k].k ) );
         double det_eps = 1e-6;
         if ( Math.abs(d) > det_eps ) {
-            double t = determinant(  eq.get(i).a, eq.get(i).b, -eq.get(i).c,
-                                     eq.get(j).a, eq.get(j).b, -eq.get(j).c,
-                                     eq.get(k).a, eq.get(k).b, -eq.get(k).c ) / d ;
+            double t = determinant(  eq[i].a, eq[i].b, -eq[i].c,
+                                     eq[j].a, eq[j].b, -eq[j].c,
+                                     eq[k].a, eq[k].b, -eq[k].c ) / d ;
             if (t >= 0) {
-                double sol_x = determinant(  -eq.get(i).c, eq.get(i).b, eq.get(i).k,
-                                             -eq.get(j).c, eq.get(j).b, eq.get(j).k,
-                                             -eq.get(k).c, eq.get(k).b, eq.get(k).k ) / d ;
-                double sol_y = determinant(  eq.get(i).a, -eq.get(i).c, eq.get(i).k,
-                                             eq.get(j).a, -eq.get(j).c, eq.get(j).k,
-                                             eq.get(k).a, -eq.get(k).c, eq.get(k).k ) / d ;
+                double sol_x = determinant(  -eq[i].c, eq[i].b, eq[i].k,
+                                             -eq[j].c, eq[j].b, eq[j].k,
+                                             -eq[k].c, eq[k].b, eq[k].k ) / d ;
+                double sol_y = determinant(  eq[i].a, -eq[i].c, eq[i].k,
+                                             eq[j].a, -eq[j].c, eq[j].k,
+                                             eq[k].a, -eq[k].c, eq[k].k ) / d ;
 
-                slns.add( new Solution( new Point( sol_x, sol_y ), t, k3 ) ); // kk3 just passes through without any effect!?
+                slns.add( sol_x, sol_y, t, k3 ); // kk3 just passes through without any effect!?
                 return 1;
             }
         } else {
@@ -60,17 +61,22 @@ public class LLLSolver extends Solver {
             for (i = 0; i < 3; i++)
                 {
                     j = (i+1)%3;
-                    double delta = Math.abs(eq.get(i).a*eq.get(j).b - eq.get(j).a*eq.get(i).b);
+                    double delta = Math.abs(eq[i].a*eq[j].b - eq[j].a*eq[i].b);
                     if (delta <= 1e-300)
                         {
-                            LLLPARASolver para_solver = new LLLPARASolver();
-                            List<Solution> paraSolutions = new ArrayList<>();
-                            para_solver.solve(sites[i], kvals[i], sites[j], kvals[j], sites[(i+2)%3], kvals[(i+2)%3], paraSolutions);
+                            Site[] sites = new Site[] { s1, s2, s3 };
+                            double[] kvals = new double[] { k1, k2, k3 };
+                            para_solutions.clear();
+                            para_solver.solve(sites[i], kvals[i], sites[j], kvals[j], sites[(i+2)%3], kvals[(i+2)%3], para_solutions);
                             int solution_count = 0;
-                            for (Solution s : paraSolutions) {
+                            double dir_x = s3.end().x - s3.start().x;
+                            double dir_y = s3.end().y - s3.start().y;
+                            for (int n = 0; n < para_solutions.size(); n++) {
                                 // check that solution has proper offset-direction
-                                if (s3.end().sub(s3.start()).cross(s.p.sub(s3.start())) * k3 >= 0) {
-                                    slns.add(s);
+                                double px = para_solutions.x(n) - s3.start().x;
+                                double py = para_solutions.y(n) - s3.start().y;
+                                if ((dir_x*py - dir_y*px) * k3 >= 0) {
+                                    slns.add(para_solutions, n);
                                     solution_count++;
                                 }
                             }
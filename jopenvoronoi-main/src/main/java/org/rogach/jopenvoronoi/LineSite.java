@@ -40,25 +40,36 @@ public class LineSite extends Site {
     /// project onto line and return either the projected point
     /// or one endpoint of the linesegment
     public Point apex_point(Point p) {
-        Point s_p = p.sub(_start);
-        Point s_e = _end.sub(_start);
-        double t = s_p.dot(s_e) / s_e.dot(s_e);
+        double t = in_region_t_raw(p);
         if (t<0)
             return _start;
         if (t>1)
             return _end;
         else {
-            return _start.add(_end.sub(_start).mult(t));
+            return new Point(_start.x + (_end.x - _start.x)*t, _start.y + (_end.y - _start.y)*t);
         }
     }
+
+    public double apex_distance(Point p) {
+        double t = in_region_t_raw(p);
+        if (t<0)
+            return p.distance(_start);
+        if (t>1)
+            return p.distance(_end);
+        double dx = p.x - (_start.x + (_end.x - _start.x)*t);
+        double dy = p.y - (_start.y + (_end.y - _start.y)*t);
+        return Math.sqrt(dx*dx + dy*dy);
+    }
+    /// exact sign, evaluated from the end-points of the segment with Predicates::segment_in_circle()
+    public double in_circle_sign(Point p, double r) {
+        return Predicates.segment_in_circle(p.x, p.y, _start.x, _start.y, _end.x, _end.y, r);
+    }
     public boolean in_region(Point p) {
         double t = in_region_t(p);
         return ( (t>=0) && (t<=1) );
     }
     public double in_region_t(Point p) {
-        Point s_p = p.sub(_start);
-        Point s_e = _end.sub(_start);
-        double t = s_p.dot(s_e) / s_e.dot(s_e);
+        double t = in_region_t_raw(p);
         double eps = 1e-7;
         if (Math.abs(t) < eps)  // rounding... UGLY
             t = 0.0;
@@ -67,9 +78,9 @@ public class LineSite extends Site {
         return t;
     }
     public double in_region_t_raw(Point p) {
-        Point s_p = p.sub(_start);
-        Point s_e = _end.sub(_start);
-        double t = s_p.dot(s_e) / s_e.dot(s_e);
+        double s_e_x = _end.x - _start.x;
+        double s_e_y = _end.y - _start.y;
+        double t = ((p.x - _start.x)*s_e_x + (p.y - _start.y)*s_e_y) / (s_e_x*s_e_x + s_e_y*s_e_y);
         return t;
     }
     public boolean isLine() {return true;}
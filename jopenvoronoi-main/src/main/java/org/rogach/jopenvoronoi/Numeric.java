@@ -10,44 +10,55 @@ public class Numeric {
     /// solve quadratic eqn: a*x*x + b*x + c = 0
     /// returns real roots (0, 1, or 2) as vector
     public static List<Double> quadratic_roots(double a, double b, double c) {
+        double[] r = new double[2];
+        int n = quadratic_roots(a, b, c, r);
         List<Double> roots = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            roots.add(r[i]);
+        }
+        return roots;
+    }
+
+    /// solve quadratic eqn: a*x*x + b*x + c = 0
+    /// writes real roots to \a roots (length >= 2), returns number of roots (0, 1, or 2)
+    public static int quadratic_roots(double a, double b, double c, double[] roots) {
         if ((a == 0) && (b == 0)) {
-            return roots;
+            return 0;
         }
         if (a == 0) {
-            roots.add( -c / b );
-            return roots;
+            roots[0] = -c / b;
+            return 1;
         }
         if (b == 0) {
             double sqr = -c / a;
             if (sqr > 0) {
-                roots.add( Math.sqrt(sqr) );
-                roots.add( -roots.get(0) );
-                return roots;
+                roots[0] = Math.sqrt(sqr);
+                roots[1] = -roots[0];
+                return 2;
             } else if (sqr == 0) {
-                roots.add(0d);
-                return roots;
+                roots[0] = 0;
+                return 1;
             } else {
                 //std::cout << " quadratic_roots() b == 0. no roots.\n";
-                return roots;
+                return 0;
             }
         }
-        double disc = chop(b*b - 4*a*c); // discriminant, chop!
+        double disc = chop(Predicates.discriminant(a, b, c)); // discriminant, chop!
         if (disc > 0) {
             double q;
             if (b > 0)
                 q = (b + Math.sqrt(disc)) / -2;
             else
                 q = (b - Math.sqrt(disc)) / -2;
-            roots.add( q / a );
-            roots.add( c / q );
-            return roots;
+            roots[0] = q / a;
+            roots[1] = c / q;
+            return 2;
         } else if (disc == 0) {
-            roots.add( -b / (2*a) );
-            return roots;
+            roots[0] = -b / (2*a);
+            return 1;
         }
         //std::cout << " quadratic_roots() disc < 0. no roots. disc= " << disc << "\n";
-        return roots;
+        return 0;
     }
 
     public static double determinant(double a, double b, double c,
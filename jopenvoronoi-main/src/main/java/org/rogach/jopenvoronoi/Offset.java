@@ -1,6 +1,8 @@
 package org.rogach.jopenvoronoi;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /// \brief From a voronoi-diagram, generate offsets.
 ///
@@ -15,162 +17,365 @@ import java.util.*;
 /// voronoi-diagram. To produce offsets only inside or outside a given geometry,
 /// use a filter first. The filter sets the valid-property of edges, so that offsets
 /// are not produced on faces with one or more invalid edge.
+///
+/// For many offset distances, offsets(double[]) is faster than calling offset(double) repeatedly.
+/// For offsets with many separate loops, offset_parallel() walks the loops on a caller-supplied ForkJoinPool.
+///
+/// The walk only reads the graph, all walk state is passed around in local variables,
+/// so one Offset may be used from several threads as long as the graph is not modified.
 public class Offset {
     HalfEdgeDiagram g; ///< vd-graph
-    Set<Face> remaining_faces = new HashSet<>();
-    List<OffsetLoop> offset_list; ///< list of output offsets
 
     /// \param gi vd-graph
     public Offset(HalfEdgeDiagram g) {
         this.g = g;
     }
 
-    /// create offsets at offset distance \a t
+    /// \brief create offsets at offset distance \a t
+    ///
+    /// the walk marks the faces it has passed by their position among the faces that need an offset,
+    /// so a call costs time and memory in proportion to the faces near the offset, not to the size of the graph.
     public List<OffsetLoop> offset(double t) {
-        offset_list = new ArrayList<OffsetLoop>();
-        set_flags(t);
-        Face start;
-        int c = 0;
-        while ((start = find_start_face()) != null) { // while there are faces that still require offsets
-            offset_loop_walk(start, t); // start on the face, and do an offset loop
-            if (c > 30000) {
-                throw new AssertionError("c > 30000, hang in offset walk");
+        EdgeIntervalIndex index = g.interval_index();
+        List<Edge> bracketing = new ArrayList<>();
+        index.find(t, bracketing);
+        int[] offset_faces = find_offset_faces(index, bracketing, t);
+        return new FaceWalk(index, offset_faces, offset_faces, new int[offset_faces.length], 1, t).walk();
+    }
+
+    /// \brief create offsets at each of the offset distances \a ts
+    ///
+    /// returns one list of offset loops per distance, in the same order as \a ts.
+    /// The result is the same as calling offset(double) for each distance, but the graph is
+    /// scanned only once: the vertices of a face have clearance-disk radii between some min_r and max_r,
+    /// and the face needs an offset exactly for min_r < t < max_r. The distances are visited in increasing order
+    /// while faces enter (at min_r) and leave (at max_r) the set of faces that need an offset,
+    /// so each distance only costs work proportional to the faces it actually offsets.
+    ///
+    /// Faces are handled by their Face::index (see EdgeIntervalIndex), so the sweep keeps its state
+    /// in arrays, and sorts primitive keys.
+    public List<List<OffsetLoop>> offsets(double[] ts) {
+        EdgeIntervalIndex index = g.interval_index();
+        int nf = index.num_faces();
+        // face intervals. faces with invalid edges never get offsets, and get an empty interval at infinity
+        double[] min_r = new double[nf];
+        double[] max_r = new double[nf];
+        for (int i = 0; i < nf; i++) {
+            Face f = index.face(i);
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            boolean valid = true;
+            Edge current = f.edge;
+            do {
+                valid &= current.valid;
+                lo = Math.min(lo, current.target.dist());
+                hi = Math.max(hi, current.target.dist());
+                current = current.next;
+            } while (current != f.edge);
+            if (!valid || lo >= hi) {
+                lo = hi = Double.POSITIVE_INFINITY;
             }
-            c++;
+            min_r[i] = lo;
+            max_r[i] = hi;
         }
+        int[] by_min = sorted_indices(min_r);
+        int[] by_max = sorted_indices(max_r);
+        int[] t_order = sorted_indices(ts);
 
-        return offset_list;
+        List<List<OffsetLoop>> result = new ArrayList<>(Collections.nCopies(ts.length, (List<OffsetLoop>) null));
+        int[] active = new int[nf]; // faces that need an offset at the current distance, in no particular order
+        int[] active_pos = new int[nf]; // position of a face in active
+        int num_active = 0;
+        int[] done = new int[nf]; // done[i] == k+1 when the walk for ts[k] has passed face i
+        int next_min = 0;
+        int next_max = 0;
+        for (int k : t_order) {
+            double t = ts[k];
+            while (next_min < nf && min_r[by_min[next_min]] < t) {
+                int f = by_min[next_min++];
+                active_pos[f] = num_active;
+                active[num_active++] = f;
+            }
+            while (next_max < nf && max_r[by_max[next_max]] <= t) {
+                int f = by_max[next_max++]; // min_r[f] < max_r[f] <= t, so f is active
+                int last = active[--num_active]; // remove f by moving the last active face into its place
+                active[active_pos[f]] = last;
+                active_pos[last] = active_pos[f];
+            }
+            int[] start_faces = Arrays.copyOf(active, num_active);
+            Arrays.sort(start_faces);
+            result.set(k, new FaceWalk(index, start_faces, null, done, k + 1, t).walk());
+        }
+        return result;
     }
 
-    /// find a suitable start face
-    private Face find_start_face() {
-        if (!remaining_faces.isEmpty()) {
-            return remaining_faces.iterator().next();
-        } else {
-            return null;
+    /// \brief return the indices of \a v, in increasing order of value
+    ///
+    /// sorts (rank, index) pairs packed into a long, as HilbertSort does, to avoid boxing.
+    /// the rank of a value is its position in a sorted copy of \a v.
+    static int[] sorted_indices(double[] v) {
+        double[] sorted = v.clone();
+        Arrays.sort(sorted);
+        long[] keys = new long[v.length];
+        for (int i = 0; i < v.length; i++) {
+            keys[i] = ((long) Arrays.binarySearch(sorted, v[i]) << 32) | i;
         }
+        Arrays.sort(keys);
+        int[] order = new int[v.length];
+        for (int i = 0; i < v.length; i++) {
+            order[i] = (int) (keys[i] & 0xffffffffL);
+        }
+        return order;
     }
 
-    /// perform an offset walk at given distance \a t,
-    /// starting at the given face
-    private void offset_loop_walk(Face start, double t) {
-        boolean out_in_mode = false;
-        Edge start_edge = find_next_offset_edge(start.edge, t, out_in_mode); // the first edge on the start-face
-        Edge current_edge = start_edge;
-        OffsetLoop loop = new OffsetLoop(); // store the output in this loop
-        loop.offset_distance = t;
-        loop.add(new OffsetVertex(current_edge.point(t), current_edge));
-        do {
-            out_in_mode = edge_mode(current_edge, t);
-            // find the next edge
-            Edge next_edge = find_next_offset_edge(current_edge.next, t, out_in_mode);
-            Face current_face = current_edge.face;
-            loop.add(offset_element_from_face(current_face, current_edge, next_edge, t));
-            remaining_faces.remove(current_face); // although we may revisit current_face (if it is non-convex), it seems safe to mark it "done" here.
-            current_edge = next_edge.twin;
-        } while (current_edge != start_edge);
-        offset_list.add(loop); // append the created loop to the output
-    }
+    /// \brief create offsets at offset distance \a t, walking independent loops in parallel on \a pool
+    ///
+    /// An offset loop passes from face to face over the edges that bracket t.
+    /// Faces joined by such edges are merged with union-find; each resulting group
+    /// of faces contains whole loops, and is walked by its own fork-join task.
+    ///
+    /// The result is the same as from offset(double), loops and order: both methods start loops at the
+    /// faces in increasing Face::index order, a group sees its faces in that order too, and the loops
+    /// of all groups are sorted by the index of their start face at the end.
+    public List<OffsetLoop> offset_parallel(double t, ForkJoinPool pool) {
+        EdgeIntervalIndex index = g.interval_index();
+        List<Edge> bracketing = new ArrayList<>();
+        index.find(t, bracketing);
+        int[] offset_faces = find_offset_faces(index, bracketing, t);
 
+        // union-find over the faces on both sides of the bracketing edges, by their position in the sorted Face::index:es.
+        // the twin of a bracketing edge also brackets t, so these are the faces of the bracketing edges
+        int[] faces = new int[bracketing.size()];
+        int num_faces = 0;
+        for (Edge e : bracketing) {
+            faces[num_faces++] = e.face.index;
+        }
+        Arrays.sort(faces);
+        faces = unique(faces);
+        int[] parent = new int[faces.length];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (Edge e : bracketing) {
+            if (e.twin != null) {
+                int a = find_root(parent, Arrays.binarySearch(faces, e.face.index));
+                int b = find_root(parent, Arrays.binarySearch(faces, e.twin.face.index));
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
 
-    /// return an offset-element corresponding to the current face
-    private OffsetVertex offset_element_from_face(Face current_face, Edge current_edge, Edge next_edge, double t) {
-        Site s = current_face.site;
-        Ofs o = s.offset(current_edge.point(t), next_edge.point(t)); // ask the Site for offset-geometry here.
-        boolean cw = true;
-        if (!s.isLine()) { // point and arc-sites produce arc-offsets, for which cw must be set.
-            cw = find_cw(o.start(), o.center(), o.end() ); // figure out cw or ccw arcs?
+        // group the faces that need an offset by their root, keeping the increasing order within a group
+        int[] group_of_root = new int[faces.length]; // group number + 1, zero for a root without group
+        int[] group = new int[offset_faces.length];
+        int[] group_size = new int[offset_faces.length];
+        int num_groups = 0;
+        for (int i = 0; i < offset_faces.length; i++) {
+            int root = find_root(parent, Arrays.binarySearch(faces, offset_faces[i]));
+            if (group_of_root[root] == 0) {
+                group_of_root[root] = ++num_groups;
+            }
+            group[i] = group_of_root[root] - 1;
+            group_size[group[i]]++;
         }
-        // add offset to output
-        return new OffsetVertex(next_edge.point(t), o.radius(), o.center(), cw, current_face, next_edge);
-    }
+        int[][] groups = new int[num_groups][];
+        for (int i = 0; i < num_groups; i++) {
+            groups[i] = new int[group_size[i]];
+            group_size[i] = 0;
+        }
+        for (int i = 0; i < offset_faces.length; i++) {
+            groups[group[i]][group_size[group[i]]++] = offset_faces[i];
+        }
+        List<OffsetLoop> loops = pool.invoke(new WalkTask(index, groups, offset_faces, new int[offset_faces.length], 0, num_groups, t));
 
-    /// \brief figure out mode (?)
-    private boolean edge_mode(Edge e, double t) {
-        Vertex src = e.source;
-        Vertex trg = e.target;
-        double src_r = src.dist();
-        double trg_r = trg.dist();
-        if ((src_r<t) && (t<trg_r)) {
-            return true;
-        } else if ((trg_r<t) && (t<src_r)) {
-            return false;
-        } else {
-            assert(false) : "failed to determine edge mode";
-            return false;
+        // sort by start face, (face index, position) pairs packed into a long. the first vertex of a loop is on the start face
+        long[] keys = new long[loops.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) loops.get(i).vertices.get(0).e.face.index << 32) | i;
         }
+        Arrays.sort(keys);
+        List<OffsetLoop> sorted = new ArrayList<>(loops.size());
+        for (long key : keys) {
+            sorted.add(loops.get((int) (key & 0xffffffffL)));
+        }
+        return sorted;
     }
 
-    /// figure out cw or ccw for an arc
-    private boolean find_cw(Point start, Point center, Point end) {
-        return center.is_right(start,end); // NOTE: this only works for arcs smaller than a half-circle !
+    /// the sorted array \a a without repeated values
+    private static int[] unique(int[] a) {
+        int n = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (i == 0 || a[i] != a[i - 1]) {
+                a[n++] = a[i];
+            }
+        }
+        return Arrays.copyOf(a, n);
     }
 
+    private static int find_root(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // path halving
+            i = parent[i];
+        }
+        return i;
+    }
 
-    /// \brief starting at e, find the next edge on the face that brackets t
+    /// \brief walks the face groups [from, to), splitting the range in half until it holds few faces
     ///
-    /// we can be in one of two modes.
-    /// if mode==false then we are looking for an edge where src_t < t < trg_t
-    /// if mode==true we are looning for an edge where       trg_t < t < src_t
-    private Edge find_next_offset_edge(Edge e, double t, boolean mode) {
-        Edge start = e;
-        Edge current = start;
-        Edge ofs_edge = e;
-        do {
-            Vertex src = current.source;
-            Vertex trg = current.target;
-            double src_r = src.dist();
-            double trg_r = trg.dist();
-            if (!mode && (src_r<t) && (t<trg_r)) {
-                ofs_edge = current;
-                break;
-            } else if (mode && (trg_r<t) && (t<src_r)) {
-                ofs_edge = current;
-                break;
+    /// the groups share one done-array, indexed by the position of a face in \a offset_faces:
+    /// a walk only passes the faces of its own group.
+    class WalkTask extends RecursiveTask<List<OffsetLoop>> {
+        private static final long serialVersionUID = 1L;
+        static final int SEQUENTIAL_FACES = 256; ///< below this many faces, walk without forking
+        final EdgeIntervalIndex index;
+        final int[][] groups;
+        final int[] offset_faces;
+        final int[] done;
+        final int from;
+        final int to;
+        final double t;
+
+        WalkTask(EdgeIntervalIndex index, int[][] groups, int[] offset_faces, int[] done, int from, int to, double t) {
+            this.index = index;
+            this.groups = groups;
+            this.offset_faces = offset_faces;
+            this.done = done;
+            this.from = from;
+            this.to = to;
+            this.t = t;
+        }
+
+        @Override
+        protected List<OffsetLoop> compute() {
+            int faces = 0;
+            for (int i = from; i < to; i++) {
+                faces += groups[i].length;
             }
-            current = current.next;
-        } while (current!=start);
-        return ofs_edge;
+            if (to - from <= 1 || faces <= SEQUENTIAL_FACES) {
+                List<OffsetLoop> out = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    out.addAll(new FaceWalk(index, groups[i], offset_faces, done, 1, t).walk());
+                }
+                return out;
+            }
+            int mid = (from + to) >>> 1;
+            WalkTask right = new WalkTask(index, groups, offset_faces, done, mid, to, t);
+            right.fork();
+            List<OffsetLoop> out = new WalkTask(index, groups, offset_faces, done, from, mid, t).compute();
+            out.addAll(right.join());
+            return out;
+        }
     }
 
-    /// go through all faces and set flag=0 if the face requires an offset.
-    private void set_flags(double t) {
-        for (Face f : g.faces) {
-            Edge start = f.edge;
-            Edge current = start;
-            do {
-                Vertex src = current.source;
-                Vertex trg = current.target;
-                double src_r = src.dist();
-                double trg_r = trg.dist();
-                if (t_bracket(src_r,trg_r,t)) {
-                    remaining_faces.add(f);
-                }
-                current = current.next;
-            } while (current!=start);
+    /// \brief the offset walk over the Face and Edge objects of the graph
+    ///
+    /// walks offset loops at distance t, starting at the faces \a start_faces (Face::index:es) in the given order.
+    /// The walk sets the done-mark of each face it passes to \a mark. The mark of a face is done[f.index],
+    /// or done[i] for the face at position i in the sorted \a slots, when these are given.
+    static class FaceWalk extends OffsetWalk<Face, Edge> {
+        final EdgeIntervalIndex index;
+        final int[] start_faces;
+        final int[] slots; ///< sorted Face::index:es with a mark in done, or null to mark by Face::index
+        final int[] done;
+        final int mark;
+        int next_start = 0; ///< the faces in start_faces before next_start are done
+
+        FaceWalk(EdgeIntervalIndex index, int[] start_faces, int[] slots, int[] done, int mark, double t) {
+            super(t);
+            this.index = index;
+            this.start_faces = start_faces;
+            this.slots = slots;
+            this.done = done;
+            this.mark = mark;
         }
 
-        // again go through faces again, and set flag=1 if any edge on the face is invalid
-        // this is required because an upstream filter will set valid=false on some edges,
-        // but not all, on a face where we do not want offsets.
-        for (Face f : g.faces) {
-            Edge start = f.edge;
-            Edge current = start;
-            do {
-                if (!current.valid) {
-                    remaining_faces.remove(f); // don't offset faces with invalid edges
-                }
-                current = current.next;
-            } while (current!=start);
+        /// position of the mark of the face with Face::index \a f in done, negative for a face without a mark
+        private int slot(int f) {
+            return slots == null ? f : Arrays.binarySearch(slots, f);
+        }
+
+        @Override
+        Face next_remaining_face() {
+            while (next_start < start_faces.length && done[slot(start_faces[next_start])] == mark) {
+                next_start++;
+            }
+            return next_start < start_faces.length ? index.face(start_faces[next_start]) : null;
+        }
+
+        @Override
+        void face_done(Face f) {
+            int i = slot(f.index);
+            if (i >= 0) { // the walk may pass a face that needs no offset of its own, see find_offset_faces()
+                done[i] = mark;
+            }
+        }
+        @Override
+        Edge face_edge(Face f) { return f.edge; }
+        @Override
+        Edge next(Edge e) { return e.next; }
+        @Override
+        Edge twin(Edge e) { return e.twin; }
+        @Override
+        Face face(Edge e) { return e.face; }
+        @Override
+        Site site(Face f) { return f.site; }
+        @Override
+        double source_r(Edge e) { return e.source.dist(); }
+        @Override
+        double target_r(Edge e) { return e.target.dist(); }
+        @Override
+        Point point(Edge e) { return e.point(t); }
+
+        @Override
+        OffsetVertex start_vertex(Point p, Edge e) {
+            return new OffsetVertex(p, e);
+        }
+
+        @Override
+        OffsetVertex offset_vertex(Point p, double r, Point c, boolean cw, Face f, Edge e) {
+            return new OffsetVertex(p, r, c, cw, f, e);
         }
     }
 
+    /// \brief return the Face::index:es of the faces that require an offset, in increasing order
+    ///
+    /// \param bracketing the edges that bracket t, found with the EdgeIntervalIndex of the graph,
+    /// so only faces near the offset are visited.
+    ///
+    /// the index holds every edge of the graph, and degenerate inputs can leave edges that are not on
+    /// the boundary of their Edge::face. So a face is only taken if its own boundary brackets t, see needs_offset().
+    private int[] find_offset_faces(EdgeIntervalIndex index, List<Edge> bracketing, double t) {
+        int[] faces = new int[bracketing.size()];
+        for (int i = 0; i < faces.length; i++) {
+            faces[i] = bracketing.get(i).face.index;
+        }
+        Arrays.sort(faces);
+        int n = 0;
+        int previous = -1;
+        for (int f : faces) {
+            // an upstream filter will set valid=false on some edges,
+            // but not all, on a face where we do not want offsets.
+            if (f != previous && needs_offset(index.face(f), t)) {
+                faces[n++] = f;
+            }
+            previous = f;
+        }
+        return Arrays.copyOf(faces, n);
+    }
 
-    /// is t in (a,b) ?
-    private boolean t_bracket(double a, double b, double t) {
-        double min_t = Math.min(a,b);
-        double max_t = Math.max(a,b);
-        return ((min_t<t) && (t<max_t));
+    /// \brief true if the boundary of face \a f brackets \a t, and no edge of it has been marked invalid by a filter
+    ///
+    /// a boundary that brackets t has an edge with src_r < t < trg_r, where the offset walk starts.
+    private boolean needs_offset(Face f, double t) {
+        boolean brackets = false;
+        Edge current = f.edge;
+        do {
+            if (!current.valid) {
+                return false; // don't offset faces with invalid edges
+            }
+            brackets |= current.source.dist() < t && t < current.target.dist();
+            current = current.next;
+        } while (current != f.edge);
+        return brackets;
     }
 
 }
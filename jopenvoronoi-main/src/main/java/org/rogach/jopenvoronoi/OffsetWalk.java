@@ -0,0 +1,127 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/// \brief the offset walk shared by Offset and DiagramSnapshot
+///
+/// An offset loop is walked face by face: on each face from the edge where the loop enters
+/// to the edge where it leaves, and on over the twin of that edge into the next face.
+/// The walk is written against faces of type F and edges of type E, subclasses give access to the graph:
+/// Offset walks a HalfEdgeDiagram, DiagramSnapshot walks a CompactHalfEdgeDiagram.
+///
+/// A walk is created for one offset distance and one set of remaining faces, and used by one thread.
+abstract class OffsetWalk<F, E> {
+    final double t; ///< offset distance
+
+    OffsetWalk(double t) {
+        this.t = t;
+    }
+
+    /// return a face that still requires an offset, or null if none is left
+    abstract F next_remaining_face();
+    /// the walk has passed through face \a f
+    abstract void face_done(F f);
+
+    abstract E face_edge(F f);
+    abstract E next(E e);
+    abstract E twin(E e);
+    abstract F face(E e);
+    abstract Site site(F f);
+    /// clearance-disk radius at the source of \a e
+    abstract double source_r(E e);
+    /// clearance-disk radius at the target of \a e
+    abstract double target_r(E e);
+    /// the point on \a e at offset distance t
+    abstract Point point(E e);
+    /// the first vertex of a loop, at \a p on edge \a e
+    abstract OffsetVertex start_vertex(Point p, E e);
+    /// the vertex at \a p on edge \a e, ending the offset element of face \a f
+    abstract OffsetVertex offset_vertex(Point p, double r, Point c, boolean cw, F f, E e);
+
+    /// walk offset loops until no face remains
+    List<OffsetLoop> walk() {
+        List<OffsetLoop> offset_list = new ArrayList<OffsetLoop>();
+        F start;
+        int c = 0;
+        while ((start = next_remaining_face()) != null) { // while there are faces that still require offsets
+            offset_list.add(offset_loop_walk(start)); // start on the face, and do an offset loop
+            if (c > 30000) {
+                throw new AssertionError("c > 30000, hang in offset walk");
+            }
+            c++;
+        }
+        return offset_list;
+    }
+
+    /// perform an offset walk, starting at the given face
+    private OffsetLoop offset_loop_walk(F start) {
+        boolean out_in_mode = false;
+        E start_edge = find_next_offset_edge(face_edge(start), out_in_mode); // the first edge on the start-face
+        E current_edge = start_edge;
+        OffsetLoop loop = new OffsetLoop(); // store the output in this loop
+        loop.offset_distance = t;
+        loop.add(start_vertex(point(current_edge), current_edge));
+        do {
+            out_in_mode = edge_mode(current_edge);
+            // find the next edge
+            E next_edge = find_next_offset_edge(next(current_edge), out_in_mode);
+            F current_face = face(current_edge);
+            loop.add(offset_element_from_face(current_face, current_edge, next_edge));
+            face_done(current_face); // although we may revisit current_face (if it is non-convex), it seems safe to mark it "done" here.
+            current_edge = twin(next_edge);
+        } while (!current_edge.equals(start_edge));
+        return loop;
+    }
+
+    /// return an offset-element corresponding to the current face
+    private OffsetVertex offset_element_from_face(F current_face, E current_edge, E next_edge) {
+        Site s = site(current_face);
+        Point next_point = point(next_edge);
+        Ofs o = s.offset(point(current_edge), next_point); // ask the Site for offset-geometry here.
+        boolean cw = true;
+        if (!s.isLine()) { // point and arc-sites produce arc-offsets, for which cw must be set.
+            cw = find_cw(o.start(), o.center(), o.end()); // figure out cw or ccw arcs?
+        }
+        return offset_vertex(next_point, o.radius(), o.center(), cw, current_face, next_edge);
+    }
+
+    /// \brief figure out mode (?)
+    private boolean edge_mode(E e) {
+        double src_r = source_r(e);
+        double trg_r = target_r(e);
+        if ((src_r<t) && (t<trg_r)) {
+            return true;
+        } else if ((trg_r<t) && (t<src_r)) {
+            return false;
+        } else {
+            assert(false) : "failed to determine edge mode";
+            return false;
+        }
+    }
+
+    /// figure out cw or ccw for an arc
+    private static boolean find_cw(Point start, Point center, Point end) {
+        return center.is_right(start,end); // NOTE: this only works for arcs smaller than a half-circle !
+    }
+
+    /// \brief starting at e, find the next edge on the face that brackets t
+    ///
+    /// we can be in one of two modes.
+    /// if mode==false then we are looking for an edge where src_t < t < trg_t
+    /// if mode==true we are looning for an edge where       trg_t < t < src_t
+    private E find_next_offset_edge(E e, boolean mode) {
+        E current = e;
+        do {
+            double src_r = source_r(current);
+            double trg_r = target_r(current);
+            if (!mode && (src_r<t) && (t<trg_r)) {
+                return current;
+            } else if (mode && (trg_r<t) && (t<src_r)) {
+                return current;
+            }
+            current = next(current);
+        } while (!current.equals(e));
+        return e;
+    }
+}
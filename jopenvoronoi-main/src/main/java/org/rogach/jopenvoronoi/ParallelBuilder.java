@@ -0,0 +1,378 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/// \brief builds VoronoiDiagram:s in parallel on a ForkJoinPool
+///
+/// build(List) builds several independent Input:s, each into its own diagram by one thread
+/// from start to finish. A VoronoiDiagram has no global state,
+/// so diagrams that share no Point, Site or Vertex objects can be built concurrently.
+///
+/// build_tiled() builds one Input by divide-and-conquer. The points are split in two halves of equal size
+/// across the longer side of their bounding box, and so on until there is one part per tile (a kd-tree, see Part).
+/// The sites of each tile are built into a separate diagram, and two halves are merged into one diagram
+/// as soon as both are built, so all tiles, and all merges on one level of the tree, run in parallel.
+/// A segment is inserted by the smallest part that holds both its end-points: in a tile, or in the merge
+/// where its end-points meet. A merge of halves A and B rebuilds a region with a DiagramPatch:
+/// - a face of A is kept when the clearance-disk of each of its vertices misses the bounding box of B,
+///   and the segments that are inserted by this merge. No site of B, and no new segment, is then closer
+///   to any point of the face than the site of the face, so it is also a face of the merged diagram.
+///   The same for the faces of B.
+/// - the other faces, along the seam between A and B, around the new segments, and the far-faces,
+///   are rebuilt. The far-faces of B are removed.
+///
+/// The hull faces of A on the side away from B are kept, so a merge only costs as much as the seam between the halves.
+/// For degenerate inputs the patch may grow its region up to all faces, see DiagramPatch::plan().
+/// All diagrams insert their sites in Hilbert order over the same square (see HilbertSort), so that they split
+/// degenerate vertices the same way, which keeps this rare.
+public class ParallelBuilder {
+
+    /// \brief one diagram to build: point sites, and line segments given as index pairs into the points
+    public static class Input {
+        public final List<Point> points;
+        public final List<int[]> segments; ///< {start, end} indices into points
+
+        public Input(List<Point> points, List<int[]> segments) {
+            this.points = points;
+            this.segments = segments;
+        }
+
+        /// input with point sites only
+        public Input(List<Point> points) {
+            this(points, new ArrayList<int[]>());
+        }
+    }
+
+    /// build all inputs on a temporary pool with one thread per core. the result is in the same order as the input.
+    public static List<VoronoiDiagram> build(List<Input> inputs) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return build(inputs, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /// build all inputs on the given pool. the result is in the same order as the input.
+    public static List<VoronoiDiagram> build(List<Input> inputs, ForkJoinPool pool) {
+        VoronoiDiagram[] out = new VoronoiDiagram[inputs.size()];
+        pool.invoke(new BuildTask(inputs, out, 0, inputs.size()));
+        return Arrays.asList(out);
+    }
+
+    /// build one Input into a new diagram, on the calling thread
+    public static VoronoiDiagram build(Input in) {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        List<Vertex> vertices = vd.insert_point_sites(in.points);
+        for (int[] s : in.segments) {
+            vd.insert_line_site(vertices.get(s[0]), vertices.get(s[1]));
+        }
+        return vd;
+    }
+
+    /// build one Input split into about \a tiles x \a tiles tiles, on a temporary pool with one thread per core
+    public static VoronoiDiagram build_tiled(Input in, int tiles) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return build_tiled(in, tiles, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /// \brief build one Input split into about \a tiles x \a tiles tiles, on the given pool
+    ///
+    /// the result is the diagram that build(Input) makes of the same input.
+    public static VoronoiDiagram build_tiled(Input in, int tiles, ForkJoinPool pool) {
+        int n = in.points.size();
+        if (tiles < 2 || n < 2) {
+            return build(in);
+        }
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = i;
+        }
+        Part root = Part.split(in.points, all, tiles*tiles);
+        int[] tile_of = new int[n];
+        root.number(tile_of, 0);
+        for (int[] s : in.segments) {
+            root.owner(tile_of[s[0]], tile_of[s[1]]).segments.add(s);
+        }
+        pool.invoke(new PartTask(root, in.points, new Vertex[n]));
+        return new VoronoiDiagram(root.g, root.far_radius, 3 + n, in.segments.size(), 0);
+    }
+
+    /// \brief a node of the kd-tree of build_tiled(): a tile, or the two halves of a larger part
+    static class Part {
+        final int[] points; ///< indices into Input::points
+        final double minx, miny, maxx, maxy; ///< bounding box of the points
+        final Part low, high; ///< the halves, null for a tile
+        final List<int[]> segments = new ArrayList<>(); ///< segments inserted by this part, see owner()
+        int first_tile, end_tile; ///< the tiles of this part are numbered [first_tile, end_tile)
+        HalfEdgeDiagram g; ///< the diagram of the sites of this part, after build() or merge()
+        List<Face> far = new ArrayList<>(); ///< the far-faces of g, of the three initial sites
+        double far_radius;
+
+        Part(int[] points, double minx, double miny, double maxx, double maxy, Part low, Part high) {
+            this.points = points;
+            this.minx = minx;
+            this.miny = miny;
+            this.maxx = maxx;
+            this.maxy = maxy;
+            this.low = low;
+            this.high = high;
+        }
+
+        /// \brief split \a points (indices into \a all) into \a tiles tiles of (about) equal size
+        static Part split(final List<Point> all, int[] points, int tiles) {
+            double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+            double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+            for (int i : points) {
+                Point p = all.get(i);
+                minx = Math.min(minx, p.x);
+                miny = Math.min(miny, p.y);
+                maxx = Math.max(maxx, p.x);
+                maxy = Math.max(maxy, p.y);
+            }
+            if (tiles < 2 || points.length < 2) {
+                return new Part(points, minx, miny, maxx, maxy, null, null);
+            }
+            final boolean by_x = maxx - minx >= maxy - miny;
+            Integer[] sorted = new Integer[points.length];
+            for (int i = 0; i < points.length; i++) {
+                sorted[i] = points[i];
+            }
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i, Integer j) {
+                    Point a = all.get(i);
+                    Point b = all.get(j);
+                    int c = by_x ? Double.compare(a.x, b.x) : Double.compare(a.y, b.y);
+                    return c != 0 ? c : (by_x ? Double.compare(a.y, b.y) : Double.compare(a.x, b.x));
+                }
+            });
+            int low_tiles = tiles / 2;
+            int k = Math.max(1, Math.min(points.length - 1, (int) ((long) points.length * low_tiles / tiles)));
+            int[] low = new int[k];
+            int[] high = new int[points.length - k];
+            for (int i = 0; i < points.length; i++) {
+                if (i < k) {
+                    low[i] = sorted[i];
+                } else {
+                    high[i - k] = sorted[i];
+                }
+            }
+            return new Part(points, minx, miny, maxx, maxy,
+                            split(all, low, low_tiles), split(all, high, tiles - low_tiles));
+        }
+
+        /// number the tiles from \a first on, and store the tile of each point in \a tile_of. return the next free number
+        int number(int[] tile_of, int first) {
+            first_tile = first;
+            if (low == null) {
+                for (int i : points) {
+                    tile_of[i] = first;
+                }
+                end_tile = first + 1;
+            } else {
+                end_tile = high.number(tile_of, low.number(tile_of, first));
+            }
+            return end_tile;
+        }
+
+        /// the smallest part that holds tile \a a and tile \a b
+        Part owner(int a, int b) {
+            Part p = this;
+            while (p.low != null) {
+                if (b < p.low.end_tile && a < p.low.end_tile) {
+                    p = p.low;
+                } else if (a >= p.high.first_tile && b >= p.high.first_tile) {
+                    p = p.high;
+                } else {
+                    break;
+                }
+            }
+            return p;
+        }
+
+        /// \brief build the diagram of a tile, and store the point vertex of each point in \a vertices
+        void build(List<Point> all, Vertex[] vertices) {
+            VoronoiDiagram vd = new VoronoiDiagram();
+            List<Point> positions = new ArrayList<>();
+            for (int i : points) {
+                positions.add(all.get(i));
+            }
+            List<Vertex> inserted = vd.insert_point_sites(positions);
+            for (int i = 0; i < points.length; i++) {
+                vertices[points[i]] = inserted.get(i);
+            }
+            far_radius = vd.get_far_radius();
+            for (int i : HilbertSort.order_segments(all, segments, -far_radius, -far_radius, 2*far_radius)) {
+                vd.insert_line_site(vertices[segments.get(i)[0]], vertices[segments.get(i)[1]]);
+            }
+            g = vd.get_graph_reference();
+            for (Face f : g.faces) {
+                if (!f.is_null_face && f.site.isPoint() && f.site.vertex().face == null) { // the initial sites have no Vertex::face
+                    far.add(f);
+                }
+            }
+        }
+
+        /// \brief merge the diagrams of the two halves into the graph of the low half, and insert the segments between them
+        ///
+        /// \details
+        /// the points where a site of the other half, or a new segment, may be closer than the sites of a half
+        /// form a connected set. It holds a ray away from the other half (the halves are split by a line),
+        /// which ends in a far-face, and the segments, which start at a point site of the half.
+        /// So the faces that meet this set (see keeps()) are found by a search from the far-faces
+        /// and the faces at the new segments, and the cost of a merge does not grow with the size of the halves.
+        void merge(List<Point> all, Vertex[] vertices) {
+            List<Point[]> crossing = new ArrayList<>();
+            List<Vertex[]> ends = new ArrayList<>();
+            double[] box = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+            for (int[] s : segments) {
+                Point a = all.get(s[0]);
+                Point b = all.get(s[1]);
+                crossing.add(new Point[] { a, b });
+                ends.add(new Vertex[] { vertices[s[0]], vertices[s[1]] });
+                box[0] = Math.min(box[0], Math.min(a.x, b.x));
+                box[1] = Math.min(box[1], Math.min(a.y, b.y));
+                box[2] = Math.max(box[2], Math.max(a.x, b.x));
+                box[3] = Math.max(box[3], Math.max(a.y, b.y));
+            }
+            Set<Face> region = new HashSet<>();
+            region.addAll(low.far);
+            region.addAll(high.far);
+            DiagramPatch.add_neighbours(region, high.far); // T has no site of a removed face
+            for (Vertex[] s : ends) {
+                for (Vertex v : s) {
+                    region.add(v.face);
+                    if (v.null_face != null) {
+                        region.add(v.null_face);
+                    }
+                }
+            }
+            Deque<Face> queue = new ArrayDeque<>(region);
+            while (!queue.isEmpty()) {
+                Face f = queue.poll();
+                Edge current = f.edge;
+                do {
+                    Face n = current.twin != null ? current.twin.face : null;
+                    if (n != null && !region.contains(n)) {
+                        boolean in_low = low.g.faces.contains(n);
+                        if (!(in_low ? low : high).keeps(n, in_low ? high : low, crossing, box)) {
+                            region.add(n);
+                            queue.add(n);
+                        }
+                    }
+                    current = current.next;
+                } while (current != f.edge);
+            }
+            g = low.g;
+            far = low.far;
+            far_radius = low.far_radius;
+            g.absorb(high.g);
+            DiagramPatch.plan(g, region, high.far, null, ends).apply();
+        }
+
+        /// \brief true if face \a f of this part is a face of the diagram with the sites of \a other and the \a crossing segments too
+        ///
+        /// the clearance-disks of the vertices of \a f cover the clearance-disks of all points in \a f.
+        /// When they miss the bounding box of \a other and the \a crossing segments (with bounding box \a box),
+        /// no new site is closer to a point of \a f than the site of \a f.
+        boolean keeps(Face f, Part other, List<Point[]> crossing, double[] box) {
+            Edge current = f.edge;
+            do {
+                Vertex v = current.source;
+                if (v.type == VertexType.OUTER ||
+                    box_distance(v.position, other.minx, other.miny, other.maxx, other.maxy) <= v.r ||
+                    (box_distance(v.position, box[0], box[1], box[2], box[3]) <= v.r && meets(v, crossing))) {
+                    return false;
+                }
+                current = current.next;
+            } while (current != f.edge);
+            return true;
+        }
+
+        /// true if the clearance-disk of \a v meets one of the \a segments
+        private static boolean meets(Vertex v, List<Point[]> segments) {
+            for (Point[] s : segments) {
+                if (VoronoiDiagram.segment_distance(v.position, s[0], s[1]) <= v.r) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /// distance from \a p to the box [minx, maxx] x [miny, maxy], infinite for an empty box
+        private static double box_distance(Point p, double minx, double miny, double maxx, double maxy) {
+            if (minx > maxx) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double dx = Math.max(0, Math.max(minx - p.x, p.x - maxx));
+            double dy = Math.max(0, Math.max(miny - p.y, p.y - maxy));
+            return Math.sqrt(dx*dx + dy*dy);
+        }
+    }
+
+    /// builds the inputs [from, to), splitting the range in half until one input is left
+    static class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final List<Input> inputs;
+        final VoronoiDiagram[] out;
+        final int from;
+        final int to;
+
+        BuildTask(List<Input> inputs, VoronoiDiagram[] out, int from, int to) {
+            this.inputs = inputs;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                out[from] = build(inputs.get(from));
+            } else if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BuildTask(inputs, out, from, mid), new BuildTask(inputs, out, mid, to));
+            }
+        }
+    }
+
+    /// builds a Part: the tile itself, or both halves in parallel and then their merge
+    static class PartTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Part part;
+        final List<Point> points;
+        final Vertex[] vertices; ///< point vertex of each point, shared by all tasks. each tile writes its own points
+
+        PartTask(Part part, List<Point> points, Vertex[] vertices) {
+            this.part = part;
+            this.points = points;
+            this.vertices = vertices;
+        }
+
+        @Override
+        protected void compute() {
+            if (part.low == null) {
+                part.build(points, vertices);
+            } else {
+                invokeAll(new PartTask(part.low, points, vertices), new PartTask(part.high, points, vertices));
+                part.merge(points, vertices);
+            }
+        }
+    }
+}
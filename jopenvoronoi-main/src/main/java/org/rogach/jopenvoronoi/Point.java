@@ -49,22 +49,17 @@ public class Point {
     }
 
     /// is this Point right of line through points \a p1 and \a p2 ?
+    ///
+    /// evaluated with the filtered Predicates::orient2d(), so the answer is exact for the given coordinates.
     public boolean is_right(Point p1, Point p2) {
-        // this is an ugly way of doing a determinant
-        // should be prettyfied sometime...
         /// \todo FIXME: what if p1==p2 ? (in the XY plane)
-        double a1 = p2.x - p1.x;
-        double a2 = p2.y - p1.y;
-        double t1 = a2;
-        double t2 = -a1;
-        double b1 = x - p1.x;
-        double b2 = y - p1.y;
+        return Predicates.orient2d(p1.x, p1.y, p2.x, p2.y, x, y) < 0.0;
+    }
 
-        double t = t1 * b1 + t2 * b2;
-        if (t > 0.0)
-            return true;
-        else
-            return false;
+    /// set coordinates, for reusing a Point as output parameter
+    public void set(double xi, double yi) {
+        x = xi;
+        y = yi;
     }
 
     public void addEq(Point p) {
@@ -0,0 +1,22 @@
+package org.rogach.jopenvoronoi;
+
+/// \brief strategy for finding the face that is closest to a new PointSite
+///
+/// insert_point_site() needs the face of the already inserted PointSite that is
+/// closest to the new site, the seed vertex is then searched for on that face.
+///
+/// available strategies:
+/// - KdTreeLocator, nearest-neighbor search in a kd-tree of all PointSite:s (default)
+/// - WalkingLocator, greedy walk over adjacent faces, starting at the previously inserted site
+public interface PointLocator {
+    /// register the face \a f of a newly inserted PointSite at position \a p
+    void add(Point p, Face f);
+
+    /// \brief unregister the face \a f of a PointSite at position \a p that is being removed
+    ///
+    /// called by VoronoiDiagram::remove_point_site() while \a f is still connected to its neighbours
+    void remove(Point p, Face f);
+
+    /// return the face of the PointSite closest to \a p
+    Face nearest_face(Point p);
+}
@@ -39,6 +39,8 @@ public class PointSite extends Site {
     }
 
     public Point apex_point(Point p) { return _p; }
+    public double apex_distance(Point p) { return p.distance(_p); }
+    public double in_circle_sign(Point p, double r) { return Predicates.point_in_circle(p.x, p.y, _p.x, _p.y, r); }
     public Ofs offset(Point p1,Point p2) {
         double rad = p1.sub(_p).norm();
         return new ArcOfs(p1, p2, _p, rad);
@@ -0,0 +1,235 @@
+package org.rogach.jopenvoronoi;
+
+import java.math.BigDecimal;
+
+/// \brief filtered geometric predicates
+///
+/// each predicate is first evaluated in plain double together with an a-priori bound on its rounding error.
+/// Only when the double value is smaller than the bound (i.e. its sign is uncertain) the predicate is
+/// re-evaluated in double-double arithmetic (about 106 bits), and if that is still uncertain, exactly with BigDecimal.
+/// (segment_in_circle() and its dot products skip the double-double stage.)
+/// The returned sign is therefore always the sign of the exact value for the given double inputs,
+/// and the fast path costs a few extra flops. See Shewchuk, "Adaptive Precision Floating-Point Arithmetic
+/// and Fast Robust Geometric Predicates", 1997, and Dekker, "A Floating-Point Technique for Extending
+/// the Available Precision", 1971.
+///
+/// Java 7 has no fused multiply-add, so exact products are formed with Dekker's splitting.
+/// Inputs are assumed to be far from overflow and underflow, which holds for sites inside the far-circle.
+public class Predicates {
+    private static final double EPS = Math.ulp(1.0)/2; ///< unit roundoff, 2^-53
+    private static final double SPLITTER = 134217729.0; ///< 2^27 + 1, for splitting a double into two 26-bit halves
+    private static final double ORIENT_ERRBOUND = (3.0 + 16.0*EPS)*EPS; ///< error bound of orient2d() in double
+    private static final double CIRCLE_ERRBOUND = 8.0*EPS; ///< error bound of a distance minus a radius in double
+    private static final double LINE_ERRBOUND = 4.0*EPS; ///< error bound of a*x+b*y+c minus a radius in double
+    private static final double DD_ERRBOUND = 0x1p-96; ///< error bound of a few double-double operations
+
+    private Predicates() {}
+
+    /// \brief orientation of point c relative to the directed line through a and b
+    ///
+    /// \return a value that is positive if a, b, c are in counter-clockwise order,
+    /// negative if clockwise and zero if collinear. The magnitude approximates twice the signed triangle area.
+    public static double orient2d(double ax, double ay, double bx, double by, double cx, double cy) {
+        double left = (ax - cx)*(by - cy);
+        double right = (ay - cy)*(bx - cx);
+        double det = left - right;
+        if (Math.abs(det) > ORIENT_ERRBOUND*(Math.abs(left) + Math.abs(right))) {
+            return det;
+        }
+        // a - c and b - c as exact double-double differences
+        DD acx = DD.diff(ax, cx);
+        DD acy = DD.diff(ay, cy);
+        DD bcx = DD.diff(bx, cx);
+        DD bcy = DD.diff(by, cy);
+        DD ddleft = acx.mul(bcy);
+        DD ddright = acy.mul(bcx);
+        DD dd = ddleft.sub(ddright);
+        if (Math.abs(dd.hi) > DD_ERRBOUND*(Math.abs(ddleft.hi) + Math.abs(ddright.hi))) {
+            return dd.hi;
+        }
+        BigDecimal acxe = exact(ax).subtract(exact(cx));
+        BigDecimal acye = exact(ay).subtract(exact(cy));
+        BigDecimal bcxe = exact(bx).subtract(exact(cx));
+        BigDecimal bcye = exact(by).subtract(exact(cy));
+        return acxe.multiply(bcye).subtract(acye.multiply(bcxe)).signum();
+    }
+
+    /// \brief in-circle predicate of point p with respect to a circle of radius \a r around point s
+    ///
+    /// \return the sign of |p-s| - r : negative if p is inside the circle, zero if on it, positive if outside
+    public static double point_in_circle(double px, double py, double sx, double sy, double r) {
+        double dx = px - sx;
+        double dy = py - sy;
+        double d = Math.sqrt(dx*dx + dy*dy);
+        double h = d - r;
+        if (Math.abs(h) > CIRCLE_ERRBOUND*(d + Math.abs(r))) {
+            return Math.signum(h);
+        }
+        // compare squares, |p-s|^2 - r^2, with r >= 0
+        DD ddx = DD.diff(px, sx);
+        DD ddy = DD.diff(py, sy);
+        DD dx2 = ddx.mul(ddx);
+        DD dy2 = ddy.mul(ddy);
+        DD r2 = DD.prod(r, r);
+        DD dd = dx2.add(dy2).sub(r2);
+        if (Math.abs(dd.hi) > DD_ERRBOUND*(dx2.hi + dy2.hi + r2.hi)) {
+            return Math.signum(dd.hi);
+        }
+        BigDecimal dxe = exact(px).subtract(exact(sx));
+        BigDecimal dye = exact(py).subtract(exact(sy));
+        BigDecimal re = exact(r);
+        return dxe.multiply(dxe).add(dye.multiply(dye)).subtract(re.multiply(re)).signum();
+    }
+
+    /// \brief in-circle predicate of point p with respect to the line a*x + b*y + c = 0 and a radius \a r
+    ///
+    /// \return the sign of |a*px + b*py + c| - r : negative if p is closer than r to the line (for a normalized line)
+    /// \attention the sign is exact for the given coefficients. For a line through two points, a, b and c are rounded,
+    /// and the normalization to a*a + b*b = 1 is inexact, so use segment_in_circle() for the exact sign with respect to the points.
+    public static double line_in_circle(double a, double b, double c, double px, double py, double r) {
+        double ax = a*px;
+        double by = b*py;
+        double h = Math.abs(ax + by + c) - r;
+        if (Math.abs(h) > LINE_ERRBOUND*(Math.abs(ax) + Math.abs(by) + Math.abs(c) + Math.abs(r))) {
+            return Math.signum(h);
+        }
+        DD ddax = DD.prod(a, px);
+        DD ddby = DD.prod(b, py);
+        DD dist = ddax.add(ddby).add(new DD(c, 0));
+        DD dd = (dist.hi < 0 ? dist.negate() : dist).sub(new DD(r, 0));
+        if (Math.abs(dd.hi) > DD_ERRBOUND*(Math.abs(ddax.hi) + Math.abs(ddby.hi) + Math.abs(c) + Math.abs(r))) {
+            return Math.signum(dd.hi);
+        }
+        BigDecimal diste = exact(a).multiply(exact(px)).add(exact(b).multiply(exact(py))).add(exact(c));
+        return diste.abs().subtract(exact(r)).signum();
+    }
+
+    /// \brief in-circle predicate of point p with respect to the line segment s-e and a radius \a r
+    ///
+    /// evaluated from the end-points, not from a (rounded) line equation: the closest point of the segment
+    /// is chosen with exact signs of the dot products (p-s).(e-s) and (p-e).(s-e), and for an interior closest point
+    /// the sign of cross(e-s, p-s)^2 - r^2*|e-s|^2 is computed, in double, or exactly when that is uncertain.
+    ///
+    /// \return the sign of the distance from p to the segment minus r
+    public static double segment_in_circle(double px, double py, double sx, double sy, double ex, double ey, double r) {
+        if (dot2d(px, py, ex, ey, sx, sy) < 0) {
+            return point_in_circle(px, py, sx, sy, r);
+        }
+        if (dot2d(px, py, sx, sy, ex, ey) < 0) {
+            return point_in_circle(px, py, ex, ey, r);
+        }
+        double left = (ex - sx)*(py - sy);
+        double right = (ey - sy)*(px - sx);
+        double cross = Math.abs(left - right);
+        double len = Math.sqrt((ex - sx)*(ex - sx) + (ey - sy)*(ey - sy));
+        double h = cross/len - r;
+        double bound = (ORIENT_ERRBOUND*(Math.abs(left) + Math.abs(right)) + 8.0*EPS*cross)/len + 4.0*EPS*Math.abs(r);
+        if (Math.abs(h) > bound) {
+            return Math.signum(h);
+        }
+        BigDecimal dxe = exact(ex).subtract(exact(sx));
+        BigDecimal dye = exact(ey).subtract(exact(sy));
+        BigDecimal crosse = dxe.multiply(exact(py).subtract(exact(sy))).subtract(dye.multiply(exact(px).subtract(exact(sx))));
+        BigDecimal re = exact(r);
+        return crosse.multiply(crosse).subtract(re.multiply(re).multiply(dxe.multiply(dxe).add(dye.multiply(dye)))).signum();
+    }
+
+    /// \brief sign of the dot product (a-c).(b-c), with the same filter as orient2d()
+    private static double dot2d(double ax, double ay, double bx, double by, double cx, double cy) {
+        double left = (ax - cx)*(bx - cx);
+        double right = (ay - cy)*(by - cy);
+        double dot = left + right;
+        if (Math.abs(dot) > ORIENT_ERRBOUND*(Math.abs(left) + Math.abs(right))) {
+            return dot;
+        }
+        BigDecimal acxe = exact(ax).subtract(exact(cx));
+        BigDecimal acye = exact(ay).subtract(exact(cy));
+        BigDecimal bcxe = exact(bx).subtract(exact(cx));
+        BigDecimal bcye = exact(by).subtract(exact(cy));
+        return acxe.multiply(bcxe).add(acye.multiply(bcye)).signum();
+    }
+
+    /// \brief discriminant b*b - 4*a*c of a quadratic, with the cancellation in the subtraction avoided
+    ///
+    /// the two products are formed exactly and subtracted in double-double,
+    /// so the result is the exact discriminant rounded to double.
+    public static double discriminant(double a, double b, double c) {
+        double bb = b*b;
+        double ac4 = 4*a*c;
+        double disc = bb - ac4;
+        if (Math.abs(disc) > 0.5*(Math.abs(bb) + Math.abs(ac4))) {
+            return disc; // no cancellation, only a few ulps of error
+        }
+        DD dd = DD.prod(b, b).sub(DD.prod(4*a, c)); // 4*a is exact
+        return dd.hi + dd.lo;
+    }
+
+    private static BigDecimal exact(double d) {
+        return new BigDecimal(d);
+    }
+
+    /// \brief double-double number, the unevaluated sum hi + lo with |lo| <= ulp(hi)/2
+    ///
+    /// only used on the slow path of the predicates, where allocation does not matter.
+    private static final class DD {
+        final double hi;
+        final double lo;
+
+        DD(double hi, double lo) {
+            this.hi = hi;
+            this.lo = lo;
+        }
+
+        /// renormalize s + e, assuming |s| >= |e|
+        static DD fast_two_sum(double s, double e) {
+            double hi = s + e;
+            return new DD(hi, e - (hi - s));
+        }
+
+        /// exact sum a + b
+        static DD sum(double a, double b) {
+            double s = a + b;
+            double bb = s - a;
+            double e = (a - (s - bb)) + (b - bb);
+            return new DD(s, e);
+        }
+
+        /// exact difference a - b
+        static DD diff(double a, double b) {
+            return sum(a, -b);
+        }
+
+        /// exact product a * b, using Dekker's splitting
+        static DD prod(double a, double b) {
+            double p = a*b;
+            double c = SPLITTER*a;
+            double ahi = c - (c - a);
+            double alo = a - ahi;
+            c = SPLITTER*b;
+            double bhi = c - (c - b);
+            double blo = b - bhi;
+            double e = ((ahi*bhi - p) + ahi*blo + alo*bhi) + alo*blo;
+            return new DD(p, e);
+        }
+
+        DD add(DD o) {
+            DD s = sum(hi, o.hi);
+            DD t = sum(lo, o.lo);
+            DD u = fast_two_sum(s.hi, s.lo + t.hi);
+            return fast_two_sum(u.hi, u.lo + t.lo);
+        }
+
+        DD sub(DD o) {
+            return add(o.negate());
+        }
+
+        DD mul(DD o) {
+            DD p = prod(hi, o.hi);
+            return fast_two_sum(p.hi, p.lo + (hi*o.lo + lo*o.hi));
+        }
+
+        DD negate() {
+            return new DD(-hi, -lo);
+        }
+    }
+}
@@ -7,20 +7,29 @@ import static org.rogach.jopenvoronoi.Numeric.quadratic_roots;
 
 /// \brief quadratic-linear-linear Solver
 public class QLLSolver extends Solver {
+    // scratch space, reused between calls. a solver is used by one VertexPositioner, and not concurrently.
+    private final Eq[] eqs = new Eq[] { new Eq(), new Eq(), new Eq() }; ///< site equations, written by Site::eqp()
+    private final List<Eq> quads = new ArrayList<>(3);
+    private final List<Eq> lins = new ArrayList<>(3);
+    private final double[][] aargs = new double[3][2];
+    private final double[][] isolns = new double[2][3];
+    private final double[] tsoln = new double[3];
+    private final double[] roots = new double[2];
+
     public int solve( Site s1, double k1,
                Site s2, double k2,
-               Site s3, double k3, List<Solution> slns ) {
+               Site s3, double k3, SolutionBuffer slns ) {
         // equation-parameters, in quad-precision
-        List<Eq> quads = new ArrayList<>();
-        List<Eq> lins = new ArrayList<>();
-        Site[] sites = new Site[] { s1,s2,s3 };
-        double[] kvals = new double[] {k1,k2,k3};
+        quads.clear();
+        lins.clear();
+        s1.eqp(k1, eqs[0]);
+        s2.eqp(k2, eqs[1]);
+        s3.eqp(k3, eqs[2]);
         for (int i=0;i<3;i++) {
-            Eq eqn = sites[i].eqp(kvals[i]);
-            if (sites[i].is_linear() ) // store site-equations in lins or quads
-                lins.add( eqn );
+            if (eqs[i].q ) // store site-equations in lins or quads
+                quads.add( eqs[i] );
             else
-                quads.add( eqn );
+                lins.add( eqs[i] );
         }
         assert( !quads.isEmpty() ) : " !quads.isEmpty() ";
 
@@ -34,13 +43,19 @@ public class QLLSolver extends Solver {
         assert( lins.size() == 2) : " lins.size() == 2";
 
         // TODO:  pick the solution appraoch with the best numerical stability.
-        // call all three permutations
+        // call all three permutations, or until the acceptor accepts a solution
         // index shuffling determines if we solve:
         // x and y in terms of t
         // y and t in terms of x
         // t and x in terms of y
+        int from = slns.size();
         qll_solver( lins, 0, 1, 2, quads.get(0), k3, slns);
+        if (accepted(slns, from))
+            return slns.size();
+        from = slns.size();
         qll_solver( lins, 2, 0, 1, quads.get(0), k3, slns);
+        if (accepted(slns, from))
+            return slns.size();
         qll_solver( lins, 1, 2, 0, quads.get(0), k3, slns);
 
         return slns.size();
@@ -55,7 +70,7 @@ public class QLLSolver extends Solver {
     // solns = output solution triplets (x,y,t) or (u,v,t)
     // returns number of solutions found
     private int qll_solver(List<Eq> lins, int xi, int yi, int ti,
-                           Eq quad, double k3, List<Solution> solns) {
+                           Eq quad, double k3, SolutionBuffer solns) {
         assert( lins.size() == 2 ) : " lins.size() == 2 ";
         double ai = lins.get(0).get(xi); // first linear
         double bi = lins.get(0).get(yi);
@@ -78,7 +93,6 @@ public class QLLSolver extends Solver {
         double b0 =  (bi*cj - bj*ci) / d;
         double b1 = -(ai*cj - aj*ci) / d;
         // based on the 'last' quadratic of (s1,s2,s3)
-        double[][] aargs = new double[3][2];
         aargs[0][0] = 1.0;
         aargs[0][1] = quad.a;
         aargs[1][0] = 1.0;
@@ -86,7 +100,6 @@ public class QLLSolver extends Solver {
         aargs[2][0] = -1.0;
         aargs[2][1] = quad.k;
 
-        double[][] isolns = new double[2][3];
         // this solves for w, and returns either 0, 1, or 2 triplets of (u,v,t) in isolns
         // NOTE: indexes of aargs shuffled depending on (xi,yi,ti) !
         int scount = qll_solve( aargs[xi][0], aargs[xi][1],
@@ -95,13 +108,11 @@ public class QLLSolver extends Solver {
                                 quad.c, // xk*xk + yk*yk - rk*rk,
                                 a0, b0,
                                 a1, b1, isolns);
-        double[][] tsolns = new double[2][3];
         for (int i=0; i<scount; i++) {
-            tsolns[i][xi] = isolns[i][0];       // u       x
-            tsolns[i][yi] = isolns[i][1];       // v       y
-            tsolns[i][ti] = isolns[i][2];       // t       t  chop!
-            solns.add(new Solution(new Point( tsolns[i][0], tsolns[i][1] ),
-                                       tsolns[i][2], k3 ) );
+            tsoln[xi] = isolns[i][0];       // u       x
+            tsoln[yi] = isolns[i][1];       // v       y
+            tsoln[ti] = isolns[i][2];       // t       t  chop!
+            solns.add( tsoln[0], tsoln[1], tsoln[2], k3 );
         }
         //std::cout << " k3="<<kk3<<" qqq_solve found " << scount << " roots\n";
         return scount;
@@ -125,18 +136,14 @@ public class QLLSolver extends Solver {
         double a = chop( (a0*(a1*a1) + c0*(a2*a2) + e0) );
         double b = chop( (2*a0*a1*b1 + 2*a2*b2*c0 + a1*b0 + a2*d0 + f0) );
         double c = a0*(b1*b1) + c0*(b2*b2) + b0*b1 + b2*d0 + g0;
-        List<Double> roots = quadratic_roots(a, b, c); // solves a*w^2 + b*w + c = 0
-        if ( roots.isEmpty() ) { // No roots, no solutions
-            return 0;
-        } else {
-            for (int i=0; i<roots.size(); i++) {
-                double w = roots.get(i);
-                soln[i][0] = a1*w + b1; // u
-                soln[i][1] = a2*w + b2; // v
-                soln[i][2] = w;         // t
-            }
-            return roots.size();
+        int nroots = quadratic_roots(a, b, c, roots); // solves a*w^2 + b*w + c = 0
+        for (int i=0; i<nroots; i++) {
+            double w = roots[i];
+            soln[i][0] = a1*w + b1; // u
+            soln[i][1] = a2*w + b2; // v
+            soln[i][2] = w;         // t
         }
+        return nroots; // No roots, no solutions
     }
 
 };
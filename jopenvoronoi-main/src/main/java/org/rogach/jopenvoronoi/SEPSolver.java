@@ -1,8 +1,5 @@
 package org.rogach.jopenvoronoi;
 
-import java.util.List;
-import java.util.ArrayList;
-
 // this solver is called when we want to position a vertex on a SEPARATOR edge
 // a SEPARATOR edge exists between a LineSite and one of its PointSite end-points
 // the input sites are thus s1=LineSite and s2=PointSite  (if arcs are supported in the future then s1=ArcSite is possible)
@@ -47,16 +44,16 @@ import java.util.ArrayList;
 public class SEPSolver extends Solver {
     public int solve( Site s1, double k1,
                       Site s2, double k2,
-                      Site s3, double k3, List<Solution> slns ) {
+                      Site s3, double k3, SolutionBuffer slns ) {
         assert( s1.isLine() && s2.isPoint() ) : " s1.isLine() && s2.isPoint() ";
         assert(s3.isLine()) : "s3.isLine()";
 
         // separator direction
-        Point sv = new Point(-s1.a(),-s1.b());
-        double tsln = -(s3.a()*s2.x()+s3.b()*s2.y()+s3.c()) / ( sv.x*s3.a() + sv.y*s3.b() + k3  );
+        double sv_x = -s1.a();
+        double sv_y = -s1.b();
+        double tsln = -(s3.a()*s2.x()+s3.b()*s2.y()+s3.c()) / ( sv_x*s3.a() + sv_y*s3.b() + k3  );
 
-        Point psln = new Point(s2.x(), s2.y() ).add(sv.mult(tsln));
-        slns.add( new Solution( psln, tsln, k3 ) );
+        slns.add( s2.x() + sv_x*tsln, s2.y() + sv_y*tsln, tsln, k3 );
         return 1;
     }
 
@@ -10,6 +10,20 @@ public abstract class Site {
     /// return closest point on site to given point p
     public abstract Point apex_point(Point p);
 
+    /// return distance from given point p to the closest point on site, without allocating the apex Point
+    public double apex_distance(Point p) {
+        return p.distance(apex_point(p));
+    }
+
+    /// \brief sign of apex_distance(\a p) - \a r, i.e. the in-circle predicate of a vertex at \a p with clearance-disk radius \a r
+    ///
+    /// PointSite and LineSite evaluate it with the filtered Predicates, from the site position or segment end-points,
+    /// which gives the exact sign for the double coordinates of \a p, \a r and the site.
+    /// Other sites return the sign of the double value.
+    public double in_circle_sign(Point p, double r) {
+        return Math.signum(apex_distance(p) - r);
+    }
+
     /// return offset of site
     public abstract Ofs offset(Point p1, Point p2);
 
@@ -40,6 +54,12 @@ public abstract class Site {
         return eq2;
     }
 
+    /// write equation parameters with offset direction \a kk to \a out, and return \a out
+    public Eq eqp(double kk, Eq out) {
+        out.set(eq, kk);
+        return out;
+    }
+
     /// true for LineSite
     public boolean is_linear() {
         return isLine();
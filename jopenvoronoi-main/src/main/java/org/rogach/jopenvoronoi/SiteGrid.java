@@ -0,0 +1,208 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.Arrays;
+
+/// \brief uniform grid over Site bounding boxes, for nearest-site queries
+///
+/// Each Site is registered in every grid cell that it overlaps: a LineSite in the cells along the segment,
+/// other sites in the cells of their bounding box.
+/// A query visits rings of cells around the query point (or, for a point outside the grid, around the closest cell),
+/// until the cells not yet visited are farther away than the closest Site found so far.
+/// With roughly uniformly spread sites a query visits a constant number of cells.
+///
+/// A LineSite is one-sided: the two faces on either side of a line-segment have their own LineSite,
+/// with opposite start/end direction. A LineSite is only reported for points on its own side
+/// and within its region (beyond the end-points, the PointSite of the end-point is closest),
+/// so that the result is the Site of the face containing the query point.
+///
+/// The grid is not modified after construction, so concurrent queries are safe.
+public class SiteGrid {
+    private final Site[] sites;
+    private final double x0, y0; ///< lower left corner of the grid
+    private final double cell; ///< width and height of a cell
+    private final int nx, ny; ///< number of cells in x and y direction
+    private final int[] cell_start; ///< sites of cell c are cell_sites[cell_start[c]] ... cell_sites[cell_start[c+1]-1]
+    private final int[] cell_sites;
+
+    /// \param sites the indexed sites. queries return indices into this array.
+    public SiteGrid(Site[] sites) {
+        this.sites = sites;
+        double[] box = new double[4 * sites.length];
+        double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+        double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < sites.length; i++) {
+            bounding_box(sites[i], box, 4*i);
+            minx = Math.min(minx, box[4*i]);
+            miny = Math.min(miny, box[4*i+1]);
+            maxx = Math.max(maxx, box[4*i+2]);
+            maxy = Math.max(maxy, box[4*i+3]);
+        }
+        if (sites.length == 0) {
+            minx = miny = 0;
+            maxx = maxy = 1;
+        }
+        double w = Math.max(maxx - minx, 1e-9);
+        double h = Math.max(maxy - miny, 1e-9);
+        // about one site per cell
+        double c = Math.sqrt(w * h / Math.max(sites.length, 1));
+        c = Math.max(c, Math.max(w, h) / 4096);
+        x0 = minx;
+        y0 = miny;
+        cell = c;
+        nx = Math.max(1, (int) Math.ceil(w / c));
+        ny = Math.max(1, (int) Math.ceil(h / c));
+
+        // counting sort of (cell, site) pairs into cell_start/cell_sites
+        cell_start = new int[nx*ny + 1];
+        for (int i = 0; i < sites.length; i++) {
+            add_site(i, box, null);
+        }
+        for (int k = 0; k < nx*ny; k++) {
+            cell_start[k+1] += cell_start[k];
+        }
+        cell_sites = new int[cell_start[nx*ny]];
+        int[] fill = Arrays.copyOf(cell_start, nx*ny);
+        for (int i = 0; i < sites.length; i++) {
+            add_site(i, box, fill);
+        }
+    }
+
+    /// \brief add site \a i to the cells it overlaps: count it in cell_start, or if \a fill is given, store it in cell_sites
+    ///
+    /// a LineSite is added to the cells along the segment, row by row: in each row of cells it spans,
+    /// from the cell where it enters the row to the cell where it leaves it.
+    private void add_site(int i, double[] box, int[] fill) {
+        Site s = sites[i];
+        int cy0 = cell_y(box[4*i+1]), cy1 = cell_y(box[4*i+3]);
+        for (int cy = cy0; cy <= cy1; cy++) {
+            int cx0, cx1;
+            if (s.isLine() && cy0 < cy1) {
+                double ylo = Math.max(box[4*i+1], y0 + cy*cell);
+                double yhi = Math.min(box[4*i+3], y0 + (cy+1)*cell);
+                double xa = x_at(s, ylo, box, 4*i);
+                double xb = x_at(s, yhi, box, 4*i);
+                double margin = 1e-9*cell; // against rounding, where the segment passes close to a cell corner
+                cx0 = cell_x(Math.min(xa, xb) - margin);
+                cx1 = cell_x(Math.max(xa, xb) + margin);
+            } else {
+                cx0 = cell_x(box[4*i]);
+                cx1 = cell_x(box[4*i+2]);
+            }
+            for (int cx = cx0; cx <= cx1; cx++) {
+                if (fill == null) {
+                    cell_start[cy*nx + cx + 1]++;
+                } else {
+                    cell_sites[fill[cy*nx + cx]++] = i;
+                }
+            }
+        }
+    }
+
+    /// x-coordinate of the non-horizontal LineSite \a s at \a y, within its bounding box at \a offset in \a box
+    private static double x_at(Site s, double y, double[] box, int offset) {
+        Point a = s.start();
+        Point b = s.end();
+        double x = a.x + (y - a.y)/(b.y - a.y)*(b.x - a.x);
+        return Math.min(box[offset+2], Math.max(box[offset], x));
+    }
+
+    /// write the bounding box (minx, miny, maxx, maxy) of \a s to \a box at \a offset
+    private static void bounding_box(Site s, double[] box, int offset) {
+        if (s.isPoint()) {
+            box[offset] = box[offset+2] = s.x();
+            box[offset+1] = box[offset+3] = s.y();
+        } else if (s.isLine()) {
+            box[offset] = Math.min(s.start().x, s.end().x);
+            box[offset+1] = Math.min(s.start().y, s.end().y);
+            box[offset+2] = Math.max(s.start().x, s.end().x);
+            box[offset+3] = Math.max(s.start().y, s.end().y);
+        } else {
+            box[offset] = s.x() - s.r();
+            box[offset+1] = s.y() - s.r();
+            box[offset+2] = s.x() + s.r();
+            box[offset+3] = s.y() + s.r();
+        }
+    }
+
+    private int cell_x(double x) {
+        return Math.min(nx-1, Math.max(0, (int) ((x - x0) / cell)));
+    }
+
+    private int cell_y(double y) {
+        return Math.min(ny-1, Math.max(0, (int) ((y - y0) / cell)));
+    }
+
+    /// return number of indexed sites
+    public int size() {
+        return sites.length;
+    }
+
+    /// return the indexed site \a i
+    public Site site(int i) {
+        return sites[i];
+    }
+
+    /// return the index of the Site closest to \a p, or -1 if the grid is empty
+    public int nearest(Point p) {
+        if (sites.length == 0) {
+            return -1;
+        }
+        int cx = cell_x(p.x); // clamped to the grid
+        int cy = cell_y(p.y);
+        int best = -1;
+        double best_dist = Double.POSITIVE_INFINITY;
+        int max_ring = Math.max(Math.max(cx, nx-1-cx), Math.max(cy, ny-1-cy));
+        for (int ring = 0; ring <= max_ring; ring++) {
+            for (int y = cy - ring; y <= cy + ring; y++) {
+                if (y < 0 || y >= ny) {
+                    continue;
+                }
+                // on the top and bottom row of the ring visit all cells, otherwise only the first and last
+                int step = (y == cy - ring || y == cy + ring) ? 1 : Math.max(1, 2*ring);
+                for (int x = cx - ring; x <= cx + ring; x += step) {
+                    if (x < 0 || x >= nx) {
+                        continue;
+                    }
+                    int c = y*nx + x;
+                    for (int k = cell_start[c]; k < cell_start[c+1]; k++) {
+                        int i = cell_sites[k];
+                        Site s = sites[i];
+                        if (s.isLine() && (!on_side(s, p) || !s.in_region(p))) {
+                            continue;
+                        }
+                        double d = s.apex_distance(p);
+                        if (d < best_dist) {
+                            best_dist = d;
+                            best = i;
+                        }
+                    }
+                }
+            }
+            // all sites in the cells outside the ring are farther away than this. only sides of the ring
+            // inside the grid count: a query point outside the grid is beyond the side at the grid border
+            double ring_dist = Double.POSITIVE_INFINITY;
+            if (cx - ring > 0) {
+                ring_dist = Math.min(ring_dist, p.x - (x0 + (cx - ring)*cell));
+            }
+            if (cx + ring < nx-1) {
+                ring_dist = Math.min(ring_dist, x0 + (cx + ring + 1)*cell - p.x);
+            }
+            if (cy - ring > 0) {
+                ring_dist = Math.min(ring_dist, p.y - (y0 + (cy - ring)*cell));
+            }
+            if (cy + ring < ny-1) {
+                ring_dist = Math.min(ring_dist, y0 + (cy + ring + 1)*cell - p.y);
+            }
+            if (best != -1 && best_dist <= ring_dist) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /// true if \a p is on the side of LineSite \a s that its face lies on
+    private static boolean on_side(Site s, Point p) {
+        // the face of a LineSite is to the left of start->end, where a*x + b*y + c is negative
+        return s.a()*p.x + s.b()*p.y + s.c() <= 0;
+    }
+}
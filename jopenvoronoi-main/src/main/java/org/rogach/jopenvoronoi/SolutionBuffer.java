@@ -0,0 +1,77 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.Arrays;
+
+/// \brief reusable buffer of candidate vertex positions, written by a Solver
+///
+/// each candidate is a position (x,y), an offset-distance t and an offset direction k3,
+/// stored in four parallel primitive arrays. add() allocates nothing (except when the arrays grow),
+/// so a buffer that is clear():ed and reused gives solvers that produce no garbage.
+///
+/// get() converts a candidate to a Solution, for the one that is finally chosen.
+public class SolutionBuffer {
+    private double[] x = new double[8];
+    private double[] y = new double[8];
+    private double[] t = new double[8];
+    private double[] k3 = new double[8];
+    private int size;
+
+    /// add a candidate at (\a px, \a py) with offset-distance \a pt and offset direction \a pk3
+    public void add(double px, double py, double pt, double pk3) {
+        if (size == x.length) {
+            x = Arrays.copyOf(x, 2*size);
+            y = Arrays.copyOf(y, 2*size);
+            t = Arrays.copyOf(t, 2*size);
+            k3 = Arrays.copyOf(k3, 2*size);
+        }
+        x[size] = px;
+        y[size] = py;
+        t[size] = pt;
+        k3[size] = pk3;
+        size++;
+    }
+
+    /// add candidate \a i of buffer \a other
+    public void add(SolutionBuffer other, int i) {
+        add(other.x[i], other.y[i], other.t[i], other.k3[i]);
+    }
+
+    /// remove all candidates, keeping the arrays
+    public void clear() {
+        size = 0;
+    }
+
+    /// number of candidates in the buffer
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /// x-coordinate of candidate \a i
+    public double x(int i) {
+        return x[i];
+    }
+
+    /// y-coordinate of candidate \a i
+    public double y(int i) {
+        return y[i];
+    }
+
+    /// offset-distance (clearance-disk radius) of candidate \a i
+    public double t(int i) {
+        return t[i];
+    }
+
+    /// offset direction to the third Site of candidate \a i
+    public double k3(int i) {
+        return k3[i];
+    }
+
+    /// return candidate \a i as a new Solution
+    public Solution get(int i) {
+        return new Solution(new Point(x[i], y[i]), t[i], k3[i]);
+    }
+}
@@ -5,7 +5,7 @@ import java.util.List;
 /// \brief abstract base-class for voronoi vertex position solvers
 ///
 /// The input to the solver is three Sites (s1,s2,s3) and three offset-directions (k1,k2,k3).
-/// The optput is a vector with one or more Solution.
+/// The optput is one or more solutions, appended to a SolutionBuffer.
 public abstract class Solver {
 
     /// \brief solve for position of VoronoiVertex with given adjacent sites and directions
@@ -16,10 +16,51 @@ public abstract class Solver {
     /// \param k2 direction from \a s2 to new VoronoiVertex
     /// \param s3 third adjacent Site
     /// \param k3 direction from \a s3 to new VoronoiVertex
-    /// \param slns Solution vector, will be updated by Solver
+    /// \param slns solution buffer, solutions are appended by Solver
     public abstract int solve(Site s1, double k1,
                               Site s2, double k2,
-                              Site s3, double k3, List<Solution> slns );
+                              Site s3, double k3, SolutionBuffer slns );
+
+    /// \brief solve for position of VoronoiVertex, appending new Solution objects to \a slns
+    ///
+    /// same as solve() with a SolutionBuffer, but allocates.
+    public int solve(Site s1, double k1,
+                     Site s2, double k2,
+                     Site s3, double k3, List<Solution> slns ) {
+        SolutionBuffer buf = new SolutionBuffer();
+        int n = solve(s1, k1, s2, k2, s3, k3, buf);
+        for (int i = 0; i < buf.size(); i++) {
+            slns.add(buf.get(i));
+        }
+        return n;
+    }
+
+    /// \brief decides if a solution is good enough to stop searching for more, see set_acceptor()
+    public interface Acceptor {
+        /// true if solution \a i in \a slns is an acceptable vertex position
+        boolean accept(SolutionBuffer slns, int i);
+    }
+
+    /// \brief set an Acceptor, or null to always search exhaustively
+    ///
+    /// solvers that try several approaches for the same system (e.g. QLLSolver, with three index permutations)
+    /// return after the first approach that produced an accepted solution.
+    public void set_acceptor(Acceptor a) {
+        acceptor = a;
+    }
+
+    /// true if one of the solutions in \a slns, starting at index \a from, is accepted by the acceptor
+    boolean accepted(SolutionBuffer slns, int from) {
+        if (acceptor == null) {
+            return false;
+        }
+        for (int i = from; i < slns.size(); i++) {
+            if (acceptor.accept(slns, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     /// used by alt_sep_solver
     public void set_type(int t) {
@@ -43,4 +84,5 @@ public abstract class Solver {
     /// - type = 1 means l3 / p2 form a separator
     int  type;
     boolean silent; ///< suppress all warnings or other stdout output
+    Acceptor acceptor; ///< stop condition for solvers that try several approaches, null for exhaustive search
 }
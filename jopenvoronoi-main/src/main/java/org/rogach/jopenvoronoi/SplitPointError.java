@@ -11,6 +11,7 @@ public class SplitPointError implements UnivariateFunction {
     private Edge edge;     ///< the HEEdge on which we position the new SPLIT vertex
     private Point p1;     ///< first point of the split-line
     private Point p2;    ///< second point of the split-line
+    private Point p = new Point(); ///< scratch point, reused by every value() call
 
     /// \param gi graph
     /// \param split_edge the edge on which we want to position a SPLIT vertex
@@ -25,13 +26,16 @@ public class SplitPointError implements UnivariateFunction {
 
     /// \return signed distance to the pt1-pt2 line from edge-point at given offset \a t
     public double value(double t) {
-        Point p = edge.point(t);
+        edge.point(t, p);
         // line: pt1 + u*(pt2-pt1) = p
         //   (p-pt1) dot (pt2-pt1) = u* (pt2-pt1) dot (pt2-pt1)
 
-        double u = (p.sub(p1)).dot(p2.sub(p1)) / ( (p2.sub(p1)).dot(p2.sub(p1)));
-        Point proj = p1.add(p2.sub(p1).mult(u));
-        double dist = (proj.sub(p)).norm();
+        double dx = p2.x - p1.x;
+        double dy = p2.y - p1.y;
+        double u = ((p.x - p1.x)*dx + (p.y - p1.y)*dy) / (dx*dx + dy*dy);
+        double proj_x = p1.x + dx*u;
+        double proj_y = p1.y + dy*u;
+        double dist = Math.sqrt((proj_x - p.x)*(proj_x - p.x) + (proj_y - p.y)*(proj_y - p.y));
         double sign;
         if (p.is_right(p1,p2)) {
             sign = +1;
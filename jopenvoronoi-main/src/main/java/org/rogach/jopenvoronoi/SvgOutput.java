@@ -2,15 +2,35 @@ package org.rogach.jopenvoronoi;
 
 import java.awt.Color;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
+/// \brief write a VoronoiDiagram as a 1024x1024 px SVG image
+///
+/// the view is centered on (CX, CY) and scaled by SCALE pixels per unit.
+/// Elements are written straight to a buffered Writer as they are visited:
+/// - edges and vertices outside the view are culled,
+/// - curved edges are sampled into a reused array, dropping samples closer than SIMPLIFY pixels
+///   to the previous one, and edges shorter than SIMPLIFY pixels are not written at all,
+/// - of two twin half-edges with the same type only one is written,
+/// - vertex coordinate labels are written only if LABELS is set.
+/// Pixel coordinates are written with three decimals.
 public class SvgOutput {
+    private static final int SIZE = 1024; ///< width and height of the image in pixels
+    private static final int SAMPLES = 40; ///< samples on a curved edge
 
     private VoronoiDiagram vd;
     public double CX = 0;
     public double CY = 0;
     public double WIDTH = 0.2;
     public double SCALE = 256;
+    public double SIMPLIFY = 0.5; ///< pixel threshold for edge simplification, 0 writes every sample
+    public boolean LABELS = true; ///< write a coordinate label next to each vertex
+
+    private final double[] xs = new double[SAMPLES]; ///< pixel coordinates of the edge being written
+    private final double[] ys = new double[SAMPLES];
+    private final Point pt = new Point(); ///< scratch point for Edge::point()
+    private final StringBuilder sb = new StringBuilder();
 
     public SvgOutput(VoronoiDiagram vd) {
         this.vd = vd;
@@ -21,60 +41,106 @@ public class SvgOutput {
     }
 
     public void writeTo(String fname) {
-        PrintWriter w;
-        try {
-            w = new PrintWriter(fname);
-        } catch (FileNotFoundException e) {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fname), StandardCharsets.UTF_8), 1 << 16)) {
+            writeTo(w);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        HalfEdgeDiagram g = vd.get_graph_reference();;
+    }
+
+    /// write the image to \a w. \a w is not closed
+    public void writeTo(Writer w) throws IOException {
+        HalfEdgeDiagram g = vd.get_graph_reference();
 
         // write header
-        w.println("<svg width='1024px' height='1024px'>");
+        w.write("<svg width='1024px' height='1024px'>\n");
         // write background
-        w.println("<rect width='1024px' height='1024px' fill='rgb(200,200,200)'/>");
+        w.write("<rect width='1024px' height='1024px' fill='rgb(200,200,200)'/>\n");
 
         for (Edge e : g.edges) {
-            if (e.valid) {
+            if (e.valid && !drawn_by_twin(e)) {
                 writeEdge(w, e);
             }
         }
         for (Vertex v : g.vertices) {
-            writeVertex(w, v);
+            writeVertex(w, g, v);
         }
 
         // write footer
-        w.println("</svg>");
+        w.write("</svg>\n");
+        w.flush();
+    }
 
-        w.close();
+    /// \brief true if the twin of \a e looks the same and is written instead of \a e
+    ///
+    /// of two such twins, the one starting at the lexicographically smaller (x, y) position is written,
+    /// so the output does not depend on object identity. A zero-length edge and its twin are both written.
+    private static boolean drawn_by_twin(Edge e) {
+        Edge twin = e.twin;
+        return twin != null && twin != e && twin.valid && twin.type == e.type
+            && twin.source == e.target && twin.target == e.source
+            && compare(twin.source.position, e.source.position) < 0;
     }
 
-    private void writeVertex(PrintWriter w, Vertex v) {
-        String col = color_string(vertex_color(v));
-        Point p = scale(v.position);
-        w.printf("<circle cx='%f' cy='%f' r='%f' fill='%s'/>\n",
-                 p.x, p.y, WIDTH * 1.5, col);
-        if (v.status == VertexStatus.NEW) {
-            w.printf("<circle cx='%f' cy='%f' r='%f' stroke='green' fill='none' stroke-width='%f'/>\n",
-                     p.x, p.y, WIDTH * 2, WIDTH * 0.5);
+    private static int compare(Point a, Point b) {
+        int c = Double.compare(a.x, b.x);
+        return c != 0 ? c : Double.compare(a.y, b.y);
+    }
+
+    private void writeVertex(Writer w, HalfEdgeDiagram g, Vertex v) throws IOException {
+        double x = scale_x(v.position.x);
+        double y = scale_y(v.position.y);
+        double margin = WIDTH * 5;
+        if (!in_view(x - margin, y - margin, x + margin, y + margin)) {
+            return;
+        }
+        VertexStatus status = g.status(v);
+        sb.setLength(0);
+        sb.append("<circle cx='");
+        append(sb, x);
+        sb.append("' cy='");
+        append(sb, y);
+        sb.append("' r='");
+        append(sb, WIDTH * 1.5);
+        sb.append("' fill='").append(vertex_color_string(v)).append("'/>\n");
+        if (status == VertexStatus.NEW) {
+            append_ring(sb, x, y, WIDTH * 2, "green");
         }
-        if (v.status == VertexStatus.IN) {
-            w.printf("<circle cx='%f' cy='%f' r='%f' stroke='red' fill='none' stroke-width='%f'/>\n",
-                     p.x, p.y, WIDTH * 3, WIDTH * 0.5);
+        if (status == VertexStatus.IN) {
+            append_ring(sb, x, y, WIDTH * 3, "red");
         }
-        w.printf("<text x='%f' y='%f' font-size='%f'>(%.3f,%.3f)</text>\n",
-                 p.x, p.y, WIDTH * 5, v.position.x, v.position.y);
+        if (LABELS) {
+            sb.append("<text x='");
+            append(sb, x);
+            sb.append("' y='");
+            append(sb, y);
+            sb.append("' font-size='");
+            append(sb, WIDTH * 5);
+            sb.append("'>(");
+            append(sb, v.position.x);
+            sb.append(',');
+            append(sb, v.position.y);
+            sb.append(")</text>\n");
+        }
+        w.append(sb);
     }
 
-    private void writeEdge(PrintWriter w, Edge e) {
+    private void append_ring(StringBuilder sb, double x, double y, double r, String stroke) {
+        sb.append("<circle cx='");
+        append(sb, x);
+        sb.append("' cy='");
+        append(sb, y);
+        sb.append("' r='");
+        append(sb, r);
+        sb.append("' stroke='").append(stroke).append("' fill='none' stroke-width='");
+        append(sb, WIDTH * 0.5);
+        sb.append("'/>\n");
+    }
+
+    private void writeEdge(Writer w, Edge e) throws IOException {
         Vertex src = e.source;
         Vertex trg = e.target;
-        Point src_p = scale(src.position);
-        Point trg_p = scale(trg.position);
-
-        String col = edge_color_string(e);
-
-        List<Point> points = new ArrayList<>();
+        int n;
         if (e.type == EdgeType.SEPARATOR ||
             e.type == EdgeType.LINE ||
             e.type == EdgeType.LINESITE ||
@@ -82,44 +148,131 @@ public class SvgOutput {
             e.type == EdgeType.LINELINE ||
             e.type == EdgeType.PARA_LINELINE) {
             // edge drawn as two points
-            points.add(src_p);
-            points.add(trg_p);
+            xs[0] = scale_x(src.position.x);
+            ys[0] = scale_y(src.position.y);
+            xs[1] = scale_x(trg.position.x);
+            ys[1] = scale_y(trg.position.y);
+            n = 2;
         } else if (e.type == EdgeType.PARABOLA) {
-            double t_src = src.dist();
-            double t_trg = trg.dist();
-            double t_min = Math.min(t_src, t_trg);
-            double t_max = Math.max(t_src, t_trg);
-            int nmax = 40;
-            for (int n = 0; n < nmax; n++) {
-                double t = t_min + ((t_max - t_min)/((nmax - 1)*(nmax - 1)))*n*n;
-                points.add(scale(e.point(t)));
+            n = sample_parabola(e);
+        } else {
+            return;
+        }
+        double xmin = xs[0], xmax = xs[0], ymin = ys[0], ymax = ys[0];
+        for (int i = 1; i < n; i++) {
+            xmin = Math.min(xmin, xs[i]);
+            xmax = Math.max(xmax, xs[i]);
+            ymin = Math.min(ymin, ys[i]);
+            ymax = Math.max(ymax, ys[i]);
+        }
+        if (!in_view(xmin - WIDTH, ymin - WIDTH, xmax + WIDTH, ymax + WIDTH)) {
+            return;
+        }
+        if (SIMPLIFY > 0 && Math.max(xmax - xmin, ymax - ymin) < SIMPLIFY) {
+            return; // the whole edge is smaller than the threshold
+        }
+        sb.setLength(0);
+        sb.append("<polyline points='");
+        for (int i = 0; i < n; i++) {
+            append(sb, xs[i]);
+            sb.append(',');
+            append(sb, ys[i]);
+            sb.append(' ');
+        }
+        sb.append("' fill='none' stroke-width='");
+        append(sb, WIDTH);
+        sb.append("' stroke='").append(edge_color_string(e)).append("' />\n");
+        w.append(sb);
+    }
+
+    /// sample parabolic edge \a e into xs/ys, densely near the smaller offset-distance, return number of samples kept
+    private int sample_parabola(Edge e) {
+        double t_src = e.source.dist();
+        double t_trg = e.target.dist();
+        double t_min = Math.min(t_src, t_trg);
+        double t_max = Math.max(t_src, t_trg);
+        int kept = 0;
+        for (int n = 0; n < SAMPLES; n++) {
+            double t = t_min + ((t_max - t_min)/((SAMPLES - 1)*(SAMPLES - 1)))*n*n;
+            e.point(t, pt);
+            double x = scale_x(pt.x);
+            double y = scale_y(pt.y);
+            if (kept > 0 && close(x, y, kept - 1)) {
+                if (n < SAMPLES - 1) {
+                    continue;
+                }
+                if (kept > 1) {
+                    kept--; // replace the previous sample with the end-point
+                }
             }
+            xs[kept] = x;
+            ys[kept] = y;
+            kept++;
         }
-        StringBuilder sb = new StringBuilder();
-        for (Point p : points) {
-            sb.append(String.format("%f,%f", p.x, p.y));
-            sb.append(" ");
+        return kept;
+    }
+
+    /// true if pixel (\a x, \a y) is closer than SIMPLIFY to sample \a i in both directions
+    private boolean close(double x, double y, int i) {
+        return Math.abs(x - xs[i]) < SIMPLIFY && Math.abs(y - ys[i]) < SIMPLIFY;
+    }
+
+    /// true if the pixel box intersects the image
+    private static boolean in_view(double xmin, double ymin, double xmax, double ymax) {
+        return xmax >= 0 && ymax >= 0 && xmin <= SIZE && ymin <= SIZE;
+    }
+
+    private double scale_x(double x) {
+        return (x - CX) * SCALE + SIZE/2;
+    }
+
+    private double scale_y(double y) {
+        return -(y - CY) * SCALE + SIZE/2;
+    }
+
+    /// append \a v with three decimals, without going through String.format
+    private static void append(StringBuilder sb, double v) {
+        long m = Math.round(v * 1000);
+        if (m < 0) {
+            sb.append('-');
+            m = -m;
+        }
+        sb.append(m / 1000).append('.');
+        long f = m % 1000;
+        if (f < 100) {
+            sb.append('0');
         }
-        if (!points.isEmpty()) {
-            w.printf("<polyline points='%s' fill='none' stroke-width='%f' stroke='%s' />\n",
-                     sb.toString(), WIDTH, col);
+        if (f < 10) {
+            sb.append('0');
         }
+        sb.append(f);
     }
 
-    private Point scale(Point p) {
-        return new Point((p.x - CX) * SCALE + 512, -(p.y-CY) * SCALE + 512);
+    private static final Map<EdgeType, String> edge_colors = new EnumMap<>(EdgeType.class);
+    private static final Map<VertexType, String> vertex_colors = new EnumMap<>(VertexType.class);
+    static {
+        for (EdgeType t : EdgeType.values()) {
+            edge_colors.put(t, color_string(edge_color(t)));
+        }
+        for (VertexType t : VertexType.values()) {
+            vertex_colors.put(t, color_string(vertex_color(t)));
+        }
     }
 
     private static String edge_color_string(Edge e) {
-        return color_string(edge_color(e));
+        return edge_colors.get(e.type);
+    }
+
+    private static String vertex_color_string(Vertex v) {
+        return vertex_colors.get(v.type);
     }
 
     private static String color_string(Color c) {
         return String.format("rgb(%d,%d,%d)", c.getRed(), c.getGreen(), c.getBlue());
     }
 
-    private static Color edge_color(Edge e) {
-        switch (e.type) {
+    private static Color edge_color(EdgeType t) {
+        switch (t) {
         case LINESITE: return Color.YELLOW;
         case PARABOLA: return Color.CYAN;
         case SEPARATOR: return Color.MAGENTA;
@@ -130,8 +283,8 @@ public class SvgOutput {
         }
     }
 
-    private static Color vertex_color(Vertex v) {
-        switch (v.type) {
+    private static Color vertex_color(VertexType t) {
+        switch (t) {
         case OUTER: return Color.GRAY;
         case NORMAL: return Color.RED;
         case POINTSITE: return new Color(250, 5, 126);
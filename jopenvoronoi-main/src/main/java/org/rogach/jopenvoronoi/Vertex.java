@@ -1,7 +1,8 @@
 package org.rogach.jopenvoronoi;
 
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -12,31 +13,37 @@ public class Vertex {
     public List<Edge> out_edges = new ArrayList<>();
     public List<Edge> in_edges = new ArrayList<>();
 
+    /// epoch of a status that never expires, e.g. the status given to the constructor
+    static final int PERSISTENT = 0;
+
     public Vertex() {}
 
     public int degree() {
         return out_edges.size() + in_edges.size();
     }
-    public static int count = 0; ///< global vertex count \todo hold this in hedigraph instead?
 
     /// A map of this type is used by VoronoiDiagramChecker to check that all vertices
     /// have the expected (correct) degree (i.e. number of edges)
-    /// map for checking topology correctness
-    public static Map<VertexType, Integer> expected_degree = new HashMap<>();
+    /// map for checking topology correctness. read-only, so it can be shared by diagrams in different threads.
+    public static final Map<VertexType, Integer> expected_degree;
     static {
-        expected_degree.put(VertexType.OUTER, 4);     // special outer vertices
-        expected_degree.put(VertexType.NORMAL, 6);    // normal vertex in the graph
-        expected_degree.put(VertexType.POINTSITE, 0); // point site
-        expected_degree.put(VertexType.ENDPOINT, 6);  // end-point of line or arc
-        expected_degree.put(VertexType.SEPPOINT, 6);  // end-point of separator
-        expected_degree.put(VertexType.SPLIT, 4);     // split point, to avoid loops in delete-tree
-        expected_degree.put(VertexType.APEX, 4);      // apex point on quadratic bisector
-    }
-
-    public VertexStatus status; ///< vertex status. updated/changed during an incremental graph update
+        Map<VertexType, Integer> degrees = new EnumMap<>(VertexType.class);
+        degrees.put(VertexType.OUTER, 4);     // special outer vertices
+        degrees.put(VertexType.NORMAL, 6);    // normal vertex in the graph
+        degrees.put(VertexType.POINTSITE, 0); // point site
+        degrees.put(VertexType.ENDPOINT, 6);  // end-point of line or arc
+        degrees.put(VertexType.SEPPOINT, 6);  // end-point of separator
+        degrees.put(VertexType.SPLIT, 4);     // split point, to avoid loops in delete-tree
+        degrees.put(VertexType.APEX, 4);      // apex point on quadratic bisector
+        expected_degree = Collections.unmodifiableMap(degrees);
+    }
+
+    VertexStatus status; ///< vertex status. updated/changed during an incremental graph update, read it with status(int)
+    int epoch; ///< the epoch in which status was set, or PERSISTENT
     public VertexType type; ///< The type of the vertex. Never(?) changes
     public double max_error; ///< \todo what is this? remove?
-    public boolean in_queue; ///< flag for indicating wether vertex is in the vertexQueue
+    boolean in_queue; ///< flag for indicating wether vertex is in the vertexQueue, only valid in epoch
+    HalfEdgeDiagram graph; ///< the graph this vertex was added to, whose epoch status() and in_queue() read. null before that
     public Point position; ///< the position of the vertex.
     public double k3;  ///< the offset-direction {-1,+1} of this vertex to the newly inserted site.
     public double alfa; ///< diangle for a null-vertex. only for debug-drawing
@@ -65,9 +72,8 @@ public class Vertex {
         r = init_radius;
     }
 
-    /// set index, increase count, initialize in_queue to false.
+    /// initialize in_queue to false.
     void init() {
-        count++;
         in_queue = false;
         alfa=-1; // invalid/non-initialized alfa value
         null_face = null;
@@ -101,10 +107,59 @@ public class Vertex {
         k3 = lk3;
     }
 
-    /// set in_queue false, and status to ::UNDECIDED
-    void reset_status() {
-        in_queue = false;
-        status = VertexStatus.UNDECIDED;
+    /// \brief return the status of this vertex in the current epoch of its graph
+    ///
+    /// replaces the public status field, which was reset after each site insertion: the status now expires with the epoch
+    /// of the graph, and this reads it like HalfEdgeDiagram::status(Vertex). A vertex that is not in a graph has no epochs.
+    public VertexStatus status() {
+        return graph == null ? status : status(graph.epoch());
+    }
+
+    /// \brief true if the vertex was pushed to the vertexQueue in the current epoch of its graph
+    ///
+    /// replaces the public in_queue field, see status().
+    public boolean in_queue() {
+        return graph == null ? in_queue : in_queue(graph.epoch());
+    }
+
+    /// \brief return the status of this vertex in epoch \a current
+    ///
+    /// a status set in an earlier epoch (i.e. during an earlier site insertion) has expired,
+    /// and reads as ::UNDECIDED. see HalfEdgeDiagram::status(Vertex)
+    public VertexStatus status(int current) {
+        return (epoch == current || epoch == PERSISTENT) ? status : VertexStatus.UNDECIDED;
+    }
+
+    /// true if the vertex was pushed to the vertexQueue in epoch \a current
+    boolean in_queue(int current) {
+        return in_queue && epoch == current;
+    }
+
+    /// make the status of this vertex expire after epoch \a current
+    void stamp(int current) {
+        if (epoch != current) {
+            status = status(current);
+            in_queue = false;
+            epoch = current;
+        }
+    }
+
+    /// set the status for epoch \a current only
+    void set_status(VertexStatus st, int current) {
+        stamp(current);
+        status = st;
+    }
+
+    /// set a status that does not expire
+    void set_status(VertexStatus st) {
+        status = st;
+        epoch = PERSISTENT;
+    }
+
+    /// set in_queue for epoch \a current
+    void set_in_queue(int current) {
+        stamp(current);
+        in_queue = true;
     }
 
     void set_alfa(Point dir) {
@@ -118,7 +173,7 @@ public class Vertex {
 
     /// return distance to a point from this vertex
     public double dist(Point p) {
-        return position.sub(p).norm();
+        return position.distance(p);
     }
 
     /// set clearance-disk to zero
@@ -136,9 +191,9 @@ public class Vertex {
         return dist(p) - r;
     }
 
-    /// reset the index count
-    public static void reset_count() {
-        count = 0;
+    /// in-circle predicate with respect to the apex point of Site \a s, same as in_circle(s.apex_point(position))
+    double in_circle(Site s) {
+        return s.apex_distance(position) - r;
     }
 
     @Override
@@ -9,6 +9,8 @@ public class VertexError implements UnivariateFunction {
     HalfEdgeDiagram g; ///< vd-graph
     Edge edge; ///< existing edge on which we have positioned a new vertex
     Site s3; ///< newly inserted Site
+    Point p = new Point(); ///< scratch point, reused by every value() call
+    boolean signed; ///< if true, value() returns the signed error t-d3, for root-finding
 
     /// \param gi vd-graph
     /// \param sln_edge solution edge
@@ -19,18 +21,30 @@ public class VertexError implements UnivariateFunction {
         this.s3 = si3;
     }
 
-    /// return the vertex-error t-d3 where
+    /// set a new edge and Site, so that the functor can be reused
+    void set(Edge sln_edge, Site si3) {
+        this.edge = sln_edge;
+        this.s3 = si3;
+    }
+
+    /// return the vertex-error fabs(t-d3) (or t-d3 if signed is set) where
     /// t3 is the distance from edge-point(t) to s3, and
     /// t is the offset-distance of the solution
     public double value(double t) {
-        Point p = edge_point(t);
-        double s3_dist = p.sub(s3.apex_point(p)).norm();
-        return Math.abs(t-s3_dist);
+        edge_point(t, p);
+        double s3_dist = s3.apex_distance(p);
+        return signed ? t-s3_dist : Math.abs(t-s3_dist);
     }
     /// return a point on the edge at given offset-distance
     /// \param t offset-distance ( >= 0 )
     Point edge_point(double t) {
-        Point p;
+        Point p = new Point();
+        edge_point(t, p);
+        return p;
+    }
+    /// set \a p to the point on the edge at given offset-distance
+    /// \param t offset-distance ( >= 0 )
+    void edge_point(double t, Point p) {
         if ( edge.type == EdgeType.LINELINE ) { // this is a workaround because the LINELINE edge-parameters are wrong? at least in some cases?
             Vertex src = edge.source;
             Vertex trg = edge.target;
@@ -41,14 +55,13 @@ public class VertexError implements UnivariateFunction {
             // edge is src_p -> trg_p
             if ( trg_t > src_t ) {
                 double frac = (t-src_t) / (trg_t-src_t);
-                p = src_p.add(trg_p.sub(src_p).mult(frac));
+                p.set(src_p.x + (trg_p.x - src_p.x)*frac, src_p.y + (trg_p.y - src_p.y)*frac);
             } else {
                 double frac = (t-trg_t) / (src_t-trg_t);
-                p = trg_p.add(src_p.sub(trg_p).mult(frac));
+                p.set(trg_p.x + (src_p.x - trg_p.x)*frac, trg_p.y + (src_p.y - trg_p.y)*frac);
             }
 
         } else
-            p = edge.point(t);
-        return p;
+            edge.point(t, p);
     }
 }
@@ -2,9 +2,6 @@ package org.rogach.jopenvoronoi;
 
 import java.util.List;
 import java.util.ArrayList;
-import org.apache.commons.math3.optim.*;
-import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
-import org.apache.commons.math3.optim.univariate.*;
 
 /// Calculates the (x,y) position of a VoronoiVertex in the VoronoiDiagram
 public class VertexPositioner {
@@ -17,6 +14,9 @@ public class VertexPositioner {
     Solver sep_solver; ///< separator solver
     Solver alt_sep_solver; ///< alternative separator solver
 
+    /// relative dist_error() and edge_error() below which a solution is acceptable(), see set_short_circuit()
+    static final double ACCEPT_TOLERANCE = 1e-9;
+
 // DATA
     HalfEdgeDiagram g;  ///< reference to the VD graph.
     double t_min; ///< minimum offset-distance
@@ -24,6 +24,16 @@ public class VertexPositioner {
     Edge edge;  ///< the edge on which we position a new vertex
     List<Double> errstat = new ArrayList<>(); ///< error-statistics
     boolean silent; ///< silent mode (outputs no warnings to stdout)
+    Site site; ///< the new Site, for which we position a vertex
+    boolean short_circuit = false; ///< stop solving at the first acceptable solution, see set_short_circuit()
+    private final SolutionBuffer solutions = new SolutionBuffer(); ///< candidate solutions in position(), reused between calls
+    private final Point pt = new Point(); ///< scratch point for evaluating candidate solutions
+    private final Point edge_pt = new Point(); ///< scratch point for edge_error()
+    private final VertexError err_functor; ///< error functor for desperate_solution(), reused
+    private final BracketSolver bracket_solver = new BracketSolver();
+    int desperate_count; ///< number of desperate_solution() calls
+    int desperate_root_count; ///< number of desperate_solution() calls solved by root-finding
+    long desperate_evaluations; ///< number of error-function evaluations in desperate_solution()
 
     /// create positioner, set graph.
     public VertexPositioner(HalfEdgeDiagram gi) {
@@ -34,6 +44,12 @@ public class VertexPositioner {
         sep_solver =      new SEPSolver();
         alt_sep_solver =  new ALTSEPSolver();
         lll_para_solver = new LLLPARASolver();
+        err_functor = new VertexError(g, null, null);
+        qll_solver.set_acceptor(new Solver.Acceptor() {
+                public boolean accept(SolutionBuffer slns, int i) {
+                    return short_circuit && acceptable(slns, i);
+                }
+            });
         silent = false;
         errstat.clear();
     }
@@ -81,6 +97,7 @@ public class VertexPositioner {
     Solution position(Site s1, double k1, Site s2, double k2, Site s3) {
         assert( (k1==1) || (k1 == -1) ) : " (k1==1) || (k1 == -1) ";
         assert( (k2==1) || (k2 == -1) ) : " (k2==1) || (k2 == -1) ";
+        site = s3;
 
         if (s3.isLine()) {
             // special handling for the case when site and edge endpoints share a common point -
@@ -117,7 +134,7 @@ public class VertexPositioner {
             }
         }
 
-        List<Solution> solutions = new ArrayList<>();
+        solutions.clear();
 
         if (s3.isLine() &&
                 ((s1.isPoint() && s2.isLine() && (s3.start().equals(s1.position()) || s3.end().equals(s1.position()))) ||
@@ -127,10 +144,10 @@ public class VertexPositioner {
             if (ed.face.site != ptsite) {
                 ed = edge.twin;
             }
-            assert(ed.source.status == VertexStatus.IN || ed.target.status == VertexStatus.IN) : "edge to be split has no IN vertex";
+            assert(g.status(ed.source) == VertexStatus.IN || g.status(ed.target) == VertexStatus.IN) : "edge to be split has no IN vertex";
 
             double k;
-            if (ed.source.status == VertexStatus.IN) {
+            if (g.status(ed.source) == VertexStatus.IN) {
                 k = -1;
             } else {
                 k = +1;
@@ -142,70 +159,79 @@ public class VertexPositioner {
         } else {
             solver_dispatch(s1, k1, s2, k2, s3, +1, solutions); // a single k3=+1 call for s3->isPoint()
 
-            if (!s3.isPoint()) {
+            if (!s3.isPoint() && !(short_circuit && has_acceptable(solutions))) {
                 solver_dispatch(s1, k1, s2, k2, s3, -1, solutions); // for lineSite or ArcSite we try k3=-1 also
             }
         }
 
-        if ( solutions.size() == 1 && (t_min<=solutions.get(0).t) && (t_max>=solutions.get(0).t) && (s3.in_region( solutions.get(0).p)) ) {
+        if ( solutions.size() == 1 && (t_min<=solutions.t(0)) && (t_max>=solutions.t(0)) && (s3.in_region( point(solutions, 0) )) ) {
             return solutions.get(0);
         }
 
         // choose only in_region() solutions
-        List<Solution> acceptable_solutions = new ArrayList<>();
-        for (Solution s : solutions) {
-            if (s3.in_region(s.p) && s.t >= t_min && s.t <= t_max) {
-                acceptable_solutions.add(s);
+        int acceptable_count = 0;
+        int first_acceptable = -1;
+        for (int i = 0; i < solutions.size(); i++) {
+            if (in_range(i)) {
+                if (acceptable_count == 0)
+                    first_acceptable = i;
+                acceptable_count++;
             }
         }
 
-        if ( acceptable_solutions.size() == 1) { // if only one solution is found, return that.
-            return acceptable_solutions.get(0);
-        } else if (acceptable_solutions.size()>1) {
+        if ( acceptable_count == 1) { // if only one solution is found, return that.
+            return solutions.get(first_acceptable);
+        } else if (acceptable_count>1) {
             // two or more points remain so we must further filter here!
             // filter further using edge_error
             double min_error=100;
-            Solution min_solution = new Solution(new Point(0,0),0,0);
-            for (Solution s : acceptable_solutions) {
-                double err = edge_error(s);
+            int min_solution = -1;
+            for (int i = first_acceptable; i < solutions.size(); i++) {
+                if (!in_range(i))
+                    continue;
+                double err = edge_error(solutions.x(i), solutions.y(i), solutions.t(i));
                 if ( err < min_error) {
-                    min_solution = s;
+                    min_solution = i;
                     min_error = err;
                 }
             }
-            return min_solution;
+            return min_solution == -1 ? new Solution(new Point(0,0),0,0) : solutions.get(min_solution);
         }
 
         if (solutions.isEmpty()) {
             return desperate_solution(s3);
         } else {
             // choose solution that is best by dist_error
-            Solution leastBad = solutions.get(0);
+            int leastBad = 0;
             double leastErr = Double.MAX_VALUE;
-            for (Solution s : solutions) {
+            for (int i = 0; i < solutions.size(); i++) {
+                double sx = solutions.x(i);
+                double sy = solutions.y(i);
+                double st = solutions.t(i);
                 // punish wrong solutions
-                double derr = dist_error(edge, s, s3);
+                double derr = dist_error(edge, sx, sy, st, s3);
                 // punish solutions outside t range
-                double terr = Math.max(0, Math.max((s.t - t_max), (t_min - s.t)));
+                double terr = Math.max(0, Math.max((st - t_max), (t_min - st)));
                 if (edge.type == EdgeType.PARA_LINELINE) {
-                    Point s_p = s.p.sub(edge.source.position);
-                    Point s_e = edge.target.position.sub(edge.source.position);
-                    double dist = s_p.dot(s_e) / s_e.dot(s_e);
+                    Point src = edge.source.position;
+                    double e_x = edge.target.position.x - src.x;
+                    double e_y = edge.target.position.y - src.y;
+                    double dist = ((sx - src.x)*e_x + (sy - src.y)*e_y) / (e_x*e_x + e_y*e_y);
                     terr = Math.max(0, Math.max(dist - 1, -dist));
                 }
                 double err = derr + terr;
                 if (err < leastErr) {
-                    leastBad = s;
+                    leastBad = i;
                     leastErr = err;
                 }
             }
 
             if (edge.type == EdgeType.PARA_LINELINE) {
-                return leastBad;
+                return solutions.get(leastBad);
             }
 
             // determine clamp direction
-            double t = Math.max(t_min, Math.min(t_max, leastBad.t));
+            double t = Math.max(t_min, Math.min(t_max, solutions.t(leastBad)));
             Point p_sln = edge.point(t);
 
             // find out on which side the solution lies
@@ -225,19 +251,86 @@ public class VertexPositioner {
         }
     }
 
-    /// search numerically for a desperate solution along the solution-edge
+    /// return solution \a i of \a slns in the scratch point pt, overwritten by the next call
+    private Point point(SolutionBuffer slns, int i) {
+        pt.set(slns.x(i), slns.y(i));
+        return pt;
+    }
+
+    /// true if solution \a i is in the region of the new site and within the t-range of the edge
+    private boolean in_range(int i) {
+        return site.in_region(point(solutions, i)) && solutions.t(i) >= t_min && solutions.t(i) <= t_max;
+    }
+
+    /// \brief true if solution \a i of \a slns is a good enough position for the new vertex to stop searching for other solutions
+    ///
+    /// the solution must be within the t-range of the edge, in the region of the new site,
+    /// equidistant to the three sites within a small tolerance, and on the edge within the same tolerance:
+    /// position() chooses among several in-region solutions by edge_error(), so a solution that is off the edge
+    /// must not stop the search for one that is on it.
+    boolean acceptable(SolutionBuffer slns, int i) {
+        double t = slns.t(i);
+        double tolerance = ACCEPT_TOLERANCE * Math.max(1.0, t);
+        return t >= t_min && t <= t_max && site.in_region(point(slns, i)) &&
+               dist_error(edge, slns.x(i), slns.y(i), t, site) <= tolerance &&
+               edge_error(slns.x(i), slns.y(i), t) <= tolerance;
+    }
+
+    /// true if one of \a slns is acceptable()
+    boolean has_acceptable(SolutionBuffer slns) {
+        for (int i = 0; i < slns.size(); i++) {
+            if (acceptable(slns, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// return the number of desperate_solution() calls, i.e. edges where no solver found an acceptable solution
+    public int desperate_count() {
+        return desperate_count;
+    }
+
+    /// return the number of desperate_solution() calls where the vertex-error changed sign along the edge,
+    /// so that a root could be found
+    public int desperate_root_count() {
+        return desperate_root_count;
+    }
+
+    /// return the total number of error-function evaluations in desperate_solution()
+    public long desperate_evaluations() {
+        return desperate_evaluations;
+    }
+
+    /// \brief turn short-circuiting on or off (off by default)
+    ///
+    /// with short-circuiting, the k3=-1 solver call for line and arc sites is skipped if k3=+1 gave an acceptable() solution,
+    /// and QLLSolver stops after the first index permutation with an acceptable() solution.
+    /// with short-circuiting off, all solutions are computed and the best is chosen, as before.
+    public void set_short_circuit(boolean b) {
+        short_circuit = b;
+    }
+
+    /// \brief search numerically for a desperate solution along the solution-edge
+    ///
+    /// if the signed vertex-error changes sign over [t_min, t_max], its root is found by BracketSolver::find_root(),
+    /// otherwise the absolute error is minimized with BracketSolver::minimize().
+    /// the number of calls, root-finding calls and function evaluations are counted, see desperate_count().
     Solution desperate_solution(Site s3) {
-        VertexError err_functor = new VertexError(g, edge, s3);
-        Vertex src = edge.source;
-        Vertex trg = edge.target;
-        Point src_p = src.position;
-        Point trg_p = trg.position;
-
-        BrentOptimizer optimizer = new BrentOptimizer(1e-10, 1e-14);
-        double t_sln = optimizer.optimize(new MaxEval(1000),
-                                          new UnivariateObjectiveFunction(err_functor),
-                                          GoalType.MINIMIZE,
-                                          new SearchInterval(t_min, t_max)).getPoint();
+        err_functor.set(edge, s3);
+        err_functor.signed = true;
+        double err_min = err_functor.value(t_min);
+        double err_max = err_functor.value(t_max);
+        double t_sln;
+        if ( (err_min <= 0 && err_max >= 0) || (err_min >= 0 && err_max <= 0) ) {
+            t_sln = bracket_solver.find_root(err_functor, t_min, t_max, 1e-14, 1000);
+            desperate_root_count++;
+        } else {
+            err_functor.signed = false;
+            t_sln = bracket_solver.minimize(err_functor, t_min, t_max, 1e-10, 1e-14, 1000);
+        }
+        desperate_count++;
+        desperate_evaluations += bracket_solver.evaluations() + 2;
         Point p_sln = err_functor.edge_point(t_sln); //g[edge].point(t_sln);
         double desp_k3 = 0;
         if (s3.isPoint())
@@ -257,7 +350,7 @@ public class VertexPositioner {
 
     /// dispatch to the correct solver based on the sites
     int solver_dispatch(Site s1, double k1, Site s2, double k2, Site s3, double k3,
-                                          List<Solution> solns) {
+                                          SolutionBuffer solns) {
 
 
         if ( edge.type == EdgeType.SEPARATOR ) {
@@ -383,18 +476,26 @@ public class VertexPositioner {
 
     /// error from solution to corresponding point on the edge
     double edge_error(Solution sl) {
+        return edge_error(sl.p.x, sl.p.y, sl.t);
+    }
+
+    /// error from solution (\a x, \a y, \a t) to corresponding point on the edge
+    double edge_error(double x, double y, double t) {
         Point p;
         if (edge.type==EdgeType.PARA_LINELINE) {
-            p = projection_point( sl );
+            p = projection_point( x, y );
         } else {
-            p = edge.point( sl.t );
+            p = edge_pt;
+            edge.point( t, p );
         }
-        return p.sub(sl.p).norm();
+        double dx = p.x - x;
+        double dy = p.y - y;
+        return Math.sqrt(dx*dx + dy*dy);
     }
 
     /// when the edge is not parametrized by t-value as normal edges
-    /// so we need a projection of sl onto the edge instead
-    Point projection_point(Solution sl) {
+    /// so we need a projection of (\a x, \a y) onto the edge instead
+    Point projection_point(double x, double y) {
         assert( edge.type == EdgeType.PARA_LINELINE ) : " edge.type == EdgeType.PARA_LINELINE ";
         // edge given by
         // p = p0 + t * (p1-p0)   with t in [0,1]
@@ -402,7 +503,7 @@ public class VertexPositioner {
         Point p1 = new Point(edge.target.position);
         Point v = p1.sub(p0);
 
-        double t = sl.p.sub(p0).dot(v) / v.dot(v);
+        double t = new Point(x, y).sub(p0).dot(v) / v.dot(v);
         // clamp to [0,1]
         if ( t>1)
             t=1;
@@ -438,9 +539,9 @@ public class VertexPositioner {
         Site s1 = face.site;
         Site s2 = twin_face.site;
 
-        double d1 = sl.p.sub(s1.apex_point(sl.p)).norm();
-        double d2 = sl.p.sub(s2.apex_point(sl.p)).norm();
-        double d3 = sl.p.sub(s3.apex_point(sl.p)).norm();
+        double d1 = s1.apex_distance(sl.p);
+        double d2 = s2.apex_distance(sl.p);
+        double d3 = s3.apex_distance(sl.p);
 
         double maxd = Math.max( Math.max( Math.abs(sl.t-d1),Math.abs(sl.t-d2)) , Math.abs(sl.t-d3));
         errstat.add(maxd);
@@ -459,6 +560,11 @@ public class VertexPositioner {
     // this works as a sanity check for the solver.
     // a high error value here is also an indication of numerical instability in the solver
     double dist_error(Edge e, Solution sl, Site s3) {
+        return dist_error(e, sl.p.x, sl.p.y, sl.t, s3);
+    }
+
+    /// distance-error of the solution at (\a x, \a y) with offset-distance \a t, see dist_error(Edge, Solution, Site)
+    double dist_error(Edge e, double x, double y, double t, Site s3) {
         Face face = e.face;
         Edge tw_edge = e.twin;
         Face twin_face = tw_edge.face;
@@ -466,12 +572,12 @@ public class VertexPositioner {
         Site s1 = face.site;
         Site s2 = twin_face.site;
 
-        double d1 = sl.p.sub(s1.apex_point(sl.p) ).norm();
-        double d2 = sl.p.sub(s2.apex_point(sl.p) ).norm();
-        double d3 = sl.p.sub(s3.apex_point(sl.p) ).norm();
-
-        return Math.max( Math.max( Math.abs(sl.t-d1),Math.abs(sl.t-d2)) , Math.abs(sl.t-d3));
+        pt.set(x, y);
+        double d1 = s1.apex_distance(pt);
+        double d2 = s2.apex_distance(pt);
+        double d3 = s3.apex_distance(pt);
 
+        return Math.max( Math.max( Math.abs(t-d1),Math.abs(t-d2)) , Math.abs(t-d3));
     }
 
     /// are \a d1 and \a d2 roughly equal?
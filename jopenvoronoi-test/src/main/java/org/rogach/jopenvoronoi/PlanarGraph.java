@@ -3,6 +3,10 @@ package org.rogach.jopenvoronoi;
 import java.util.*;
 import java.awt.geom.Point2D;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -10,6 +14,9 @@ import org.w3c.dom.*;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -20,6 +27,11 @@ import org.xml.sax.SAXParseException;
 
 public class PlanarGraph {
 
+    /// "PSLG" as a little-endian int, first word of the binary format
+    private static final int BINARY_MAGIC = 0x474c5350;
+    private static final int BINARY_VERSION = 1;
+    private static final int BINARY_HEADER_SIZE = 16;
+
     public List<Point2D> points;
     public List<Segment> segments;
 
@@ -58,6 +70,27 @@ public class PlanarGraph {
         }
     }
 
+    /// \brief PslgSink that collects the points and segments into a PlanarGraph
+    public static class Collector implements PslgSink {
+        private final List<Point2D> points = new ArrayList<>();
+        private final List<Segment> segments = new ArrayList<>();
+        private final Map<Integer, Point2D> pointIndices = new HashMap<>();
+
+        public void point(int idx, double x, double y) {
+            Point2D p = new Point2D.Double(x, y);
+            pointIndices.put(idx, p);
+            points.add(p);
+        }
+
+        public void segment(int stt_idx, int end_idx) {
+            segments.add(new Segment(pointIndices.get(end_idx), pointIndices.get(stt_idx)));
+        }
+
+        public PlanarGraph graph() {
+            return new PlanarGraph(points, segments);
+        }
+    }
+
    public static PlanarGraph fromPolygon(List<Point2D> points) {
         List<Segment> segments = new ArrayList<>();
         for (int q = 0; q < points.size(); q++) {
@@ -71,10 +104,19 @@ public class PlanarGraph {
     }
 
     public VoronoiDiagram buildVoronoiDiagram() {
+        return buildVoronoiDiagram(new VoronoiDiagram());
+    }
+
+    /// insert the points and segments into \a vd, e.g. a diagram with non-default settings, and return it
+    public VoronoiDiagram buildVoronoiDiagram(VoronoiDiagram vd) {
         Map<Point2D, Vertex> vertices = new HashMap<>();
-        VoronoiDiagram vd = new VoronoiDiagram();
+        List<Point> sites = new ArrayList<>(points.size());
         for (Point2D p : points) {
-            vertices.put(p, vd.insert_point_site(new Point(p.getX(), p.getY())));
+            sites.add(new Point(p.getX(), p.getY()));
+        }
+        List<Vertex> site_vertices = vd.insert_point_sites(sites);
+        for (int i = 0; i < points.size(); i++) {
+            vertices.put(points.get(i), site_vertices.get(i));
         }
         for (Segment s : segments) {
             vd.insert_line_site(vertices.get(s.stt), vertices.get(s.end));
@@ -149,38 +191,115 @@ public class PlanarGraph {
     }
 
     public static PlanarGraph readFromFile(String fname) throws Exception {
+        Collector collector = new Collector();
+        readFromFile(fname, collector);
+        return collector.graph();
+    }
+
+    /// \brief read a .pslg.gz file, passing its points and segments to \a sink as they are parsed
+    ///
+    /// the XML is streamed with StAX, so memory use does not grow with the file beyond what the sink keeps.
+    /// Sites are passed in document order, i.e. the PointSites element must come before the LineSites element
+    /// (as written by writeToFile()).
+    public static void readFromFile(String fname, PslgSink sink) throws Exception {
         try (FileInputStream fis = new FileInputStream(fname);
              GZIPInputStream gzis = new GZIPInputStream(fis)
         ) {
-            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-
-            Document doc = documentBuilder.parse(gzis);
-
-            List<Point2D> points = new ArrayList<>();
-            List<Segment> segments = new ArrayList<>();
-            Map<Integer, Point2D> pointIndices = new HashMap<>();
-
-            NodeList pointSites = doc.getElementsByTagName("PointSite");
-            for (int q = 0; q < pointSites.getLength(); q++) {
-                Node ps = pointSites.item(q);
-                int idx = Integer.valueOf(ps.getAttributes().getNamedItem("idx").getTextContent());
-                Point2D p = new Point2D.Double(
-                        Double.valueOf(ps.getAttributes().getNamedItem("x").getTextContent()),
-                        Double.valueOf(ps.getAttributes().getNamedItem("y").getTextContent()));
-                pointIndices.put(idx, p);
-                points.add(p);
+            XMLStreamReader r = XMLInputFactory.newInstance().createXMLStreamReader(gzis);
+            try {
+                while (r.hasNext()) {
+                    if (r.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String name = r.getLocalName();
+                    if (name.equals("PointSite")) {
+                        sink.point(Integer.parseInt(r.getAttributeValue(null, "idx")),
+                                   Double.parseDouble(r.getAttributeValue(null, "x")),
+                                   Double.parseDouble(r.getAttributeValue(null, "y")));
+                    } else if (name.equals("LineSite")) {
+                        // a LineSite from source to target has always been read as Segment(source, target),
+                        // i.e. with stt at the target, keep that so diagrams of existing files do not change
+                        sink.segment(Integer.parseInt(r.getAttributeValue(null, "target_idx")),
+                                     Integer.parseInt(r.getAttributeValue(null, "source_idx")));
+                    }
+                }
+            } finally {
+                r.close();
             }
+        }
+    }
 
-            NodeList lineSites = doc.getElementsByTagName("LineSite");
-            for (int q = 0; q < lineSites.getLength(); q++) {
-                Node ls = lineSites.item(q);
-                segments.add(new Segment(
-                        pointIndices.get(Integer.valueOf(ls.getAttributes().getNamedItem("source_idx").getTextContent())),
-                        pointIndices.get(Integer.valueOf(ls.getAttributes().getNamedItem("target_idx").getTextContent()))));
+    /// \brief write the graph in the compact binary format
+    ///
+    /// little-endian: a 16-byte header (magic "PSLG", version, number of points, number of segments),
+    /// then x,y doubles of each point and then stt,end point indices of each segment as ints.
+    public void writeToBinaryFile(String fname) throws IOException {
+        File f = new File(fname);
+        f.getAbsoluteFile().getParentFile().mkdirs();
+        long size = BINARY_HEADER_SIZE + 16L*points.size() + 8L*segments.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("graph too large for the binary format: " + size + " bytes");
+        }
+        int i = 0;
+        Map<Point2D, Integer> pointIndices = new HashMap<>();
+        ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putInt(points.size()).putInt(segments.size());
+        for (Point2D p : points) {
+            pointIndices.put(p, i++);
+            buf.putDouble(p.getX()).putDouble(p.getY());
+        }
+        for (Segment s : segments) {
+            buf.putInt(pointIndices.get(s.stt)).putInt(pointIndices.get(s.end));
+        }
+        buf.flip();
+        try (FileOutputStream os = new FileOutputStream(f);
+             FileChannel ch = os.getChannel()
+        ) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
             }
+        }
+    }
 
-            return new PlanarGraph(points, segments);
+    public static PlanarGraph readFromBinaryFile(String fname) throws IOException {
+        Collector collector = new Collector();
+        readFromBinaryFile(fname, collector);
+        return collector.graph();
+    }
+
+    /// \brief read a file in the binary format of writeToBinaryFile(), passing its points and segments to \a sink
+    ///
+    /// the file is memory-mapped and read in place, nothing but the sink allocates per point or segment.
+    public static void readFromBinaryFile(String fname, PslgSink sink) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fname, "r");
+             FileChannel ch = raf.getChannel()
+        ) {
+            long size = ch.size();
+            if (size < BINARY_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(fname + ": not a binary PSLG file, size " + size);
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt(0) != BINARY_MAGIC || buf.getInt(4) != BINARY_VERSION) {
+                throw new IOException(fname + ": not a binary PSLG file, or unsupported version");
+            }
+            int n = buf.getInt(8);
+            int m = buf.getInt(12);
+            if (n < 0 || m < 0 || size != BINARY_HEADER_SIZE + 16L*n + 8L*m) {
+                throw new IOException(fname + ": truncated binary PSLG file, " + n + " points and " + m + " segments in " + size + " bytes");
+            }
+            int pos = BINARY_HEADER_SIZE;
+            for (int i = 0; i < n; i++, pos += 16) {
+                sink.point(i, buf.getDouble(pos), buf.getDouble(pos + 8));
+            }
+            for (int i = 0; i < m; i++, pos += 8) {
+                int stt = buf.getInt(pos);
+                int end = buf.getInt(pos + 4);
+                if (stt < 0 || stt >= n || end < 0 || end >= n) {
+                    throw new IOException(fname + ": segment " + i + " refers to a missing point");
+                }
+                sink.segment(stt, end);
+            }
         }
     }
 
@@ -0,0 +1,13 @@
+package org.rogach.jopenvoronoi;
+
+/// \brief receiver of the point- and line-sites of a planar straight-line graph, in the order they are read
+///
+/// all points are passed before the first segment.
+/// See PlanarGraph::readFromBinaryFile() and VoronoiDiagramSink.
+public interface PslgSink {
+    /// point number \a idx at (\a x, \a y)
+    void point(int idx, double x, double y);
+
+    /// segment from point \a stt_idx to point \a end_idx, indices as passed to point()
+    void segment(int stt_idx, int end_idx);
+}
@@ -5,6 +5,10 @@ import java.util.*;
 
 public class RandomLabyrinth {
     public static PlanarGraph generateLabyrinth(int size, double loadFactor) {
+        return generateLabyrinth(size, loadFactor, new Random());
+    }
+
+    public static PlanarGraph generateLabyrinth(int size, double loadFactor, Random rnd) {
         // stores bitwise fields to indicate connections between cells
         // 1 - up, 2 - right, 4 - down, 8 - left
         int[][] directions = new int[size][size];
@@ -13,12 +17,12 @@ public class RandomLabyrinth {
         for (int x = 0; x < size; x++) {
             for (int y = 0; y < size; y++) {
                 // horizontal connections
-                if (x < size - 1 && Math.random() < loadFactor) {
+                if (x < size - 1 && rnd.nextDouble() < loadFactor) {
                     directions[x][y] |= 2;
                     directions[x+1][y] |= 8;
                 }
                 // vertical connections
-                if (y < size - 1 && Math.random() < loadFactor) {
+                if (y < size - 1 && rnd.nextDouble() < loadFactor) {
                     directions[x][y] |= 4;
                     directions[x][y+1] |= 1;
                 }
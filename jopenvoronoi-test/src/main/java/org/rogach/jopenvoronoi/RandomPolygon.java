@@ -10,24 +10,33 @@ import java.awt.Color;
 public class RandomPolygon {
 
     public static List<Point2D> generate_points(int nPoints) {
+        return generate_points(nPoints, new Random());
+    }
+
+    public static List<Point2D> generate_points(int nPoints, Random rnd) {
         List<Point2D> points = new ArrayList<>();
         for (int i = 0; i < nPoints; i++) {
-            points.add(new Point2D.Double(Math.random() * 1.4 - 0.7, Math.random() * 1.4 - 0.7));
+            points.add(new Point2D.Double(rnd.nextDouble() * 1.4 - 0.7, rnd.nextDouble() * 1.4 - 0.7));
         }
         return points;
     }
 
     public static List<Point2D> generate_polygon(int nPoints) {
-        List<Point2D> points = generate_points(nPoints);
-        Point2D p1 = removeRandom(points);
-        Point2D p2 = removeRandom(points);
+        return generate_polygon(nPoints, new Random());
+    }
+
+    /** Same as generate_polygon(int), but reproducible for a given seeded Random */
+    public static List<Point2D> generate_polygon(int nPoints, Random rnd) {
+        List<Point2D> points = generate_points(nPoints, rnd);
+        Point2D p1 = removeRandom(points, rnd);
+        Point2D p2 = removeRandom(points, rnd);
 
         List<Point2D> group1 = new ArrayList<>();
         List<Point2D> group2 = new ArrayList<>();
         partition(points, p1, p2, group1, group2);
 
-        List<Point2D> path1 = buildPath(p1, p2, group1);
-        List<Point2D> path2 = buildPath(p2, p1, group2);
+        List<Point2D> path1 = buildPath(p1, p2, group1, rnd);
+        List<Point2D> path2 = buildPath(p2, p1, group2, rnd);
 
         List<Point2D> result = new ArrayList<>();
         result.add(p1);
@@ -38,11 +47,15 @@ public class RandomPolygon {
     }
 
     public static List<Point2D> buildPath(Point2D p1, Point2D p2, List<Point2D> points) {
+        return buildPath(p1, p2, points, new Random());
+    }
+
+    public static List<Point2D> buildPath(Point2D p1, Point2D p2, List<Point2D> points, Random rnd) {
         if (points.isEmpty()) {
             return new ArrayList<>();
         } else {
-            Point2D c = removeRandom(points);
-            Point2D c2 = randomBetween(p1, p2);
+            Point2D c = removeRandom(points, rnd);
+            Point2D c2 = randomBetween(p1, p2, rnd);
 
             List<Point2D> group1 = new ArrayList<>();
             List<Point2D> group2 = new ArrayList<>();
@@ -50,13 +63,13 @@ public class RandomPolygon {
 
             List<Point2D> result = new ArrayList<>();
             if (isLeft(c2, c, p1)) {
-                result.addAll(buildPath(p1, c, group1));
+                result.addAll(buildPath(p1, c, group1, rnd));
                 result.add(c);
-                result.addAll(buildPath(c, p2, group2));
+                result.addAll(buildPath(c, p2, group2, rnd));
             } else {
-                result.addAll(buildPath(p1, c, group2));
+                result.addAll(buildPath(p1, c, group2, rnd));
                 result.add(c);
-                result.addAll(buildPath(c, p2, group1));
+                result.addAll(buildPath(c, p2, group1, rnd));
             }
             return result;
         }
@@ -75,7 +88,11 @@ public class RandomPolygon {
     }
 
     public static Point2D randomBetween(Point2D p1, Point2D p2) {
-        double t = Math.random();
+        return randomBetween(p1, p2, new Random());
+    }
+
+    public static Point2D randomBetween(Point2D p1, Point2D p2, Random rnd) {
+        double t = rnd.nextDouble();
         return new Point2D.Double(p1.getX() * t + p2.getX() * (1 - t),
                                   p1.getY() * t + p2.getY() * (1 - t));
     }
@@ -87,6 +104,10 @@ public class RandomPolygon {
     }
 
     public static Point2D removeRandom(List<Point2D> pts) {
-        return pts.remove(new Random().nextInt(pts.size()));
+        return removeRandom(pts, new Random());
+    }
+
+    public static Point2D removeRandom(List<Point2D> pts, Random rnd) {
+        return pts.remove(rnd.nextInt(pts.size()));
     }
 }
@@ -0,0 +1,50 @@
+package org.rogach.jopenvoronoi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/// \brief PslgSink that builds a VoronoiDiagram, without an intermediate PlanarGraph
+///
+/// points and segments are kept as plain coordinates and index pairs until build(),
+/// which inserts all points with VoronoiDiagram::insert_point_sites() and then the segments in the order they were read.
+/// The result is the same diagram as PlanarGraph::buildVoronoiDiagram() for the same input.
+public class VoronoiDiagramSink implements PslgSink {
+    private final List<Point> points = new ArrayList<>();
+    private int[] position = new int[16]; ///< index into points of the point with a given idx, or -1
+    private int[] segments = new int[32]; ///< stt_idx, end_idx pairs
+    private int num_segments;
+
+    public VoronoiDiagramSink() {
+        Arrays.fill(position, -1);
+    }
+
+    public void point(int idx, double x, double y) {
+        if (idx >= position.length) {
+            int old = position.length;
+            position = Arrays.copyOf(position, Math.max(2*old, idx + 1));
+            Arrays.fill(position, old, position.length, -1);
+        }
+        position[idx] = points.size();
+        points.add(new Point(x, y));
+    }
+
+    public void segment(int stt_idx, int end_idx) {
+        if (2*num_segments == segments.length) {
+            segments = Arrays.copyOf(segments, 2*segments.length);
+        }
+        segments[2*num_segments] = stt_idx;
+        segments[2*num_segments + 1] = end_idx;
+        num_segments++;
+    }
+
+    /// insert all received sites into a new VoronoiDiagram
+    public VoronoiDiagram build() {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        List<Vertex> vertices = vd.insert_point_sites(points);
+        for (int i = 0; i < num_segments; i++) {
+            vd.insert_line_site(vertices.get(position[segments[2*i]]), vertices.get(position[segments[2*i + 1]]));
+        }
+        return vd;
+    }
+}
@@ -2,6 +2,15 @@ package org.rogach.jopenvoronoi;
 
 import org.junit.*;
 import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import org.apache.commons.math3.analysis.UnivariateFunction;
+import org.apache.commons.math3.analysis.solvers.BrentSolver;
+import org.apache.commons.math3.optim.MaxEval;
+import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
+import org.apache.commons.math3.optim.univariate.BrentOptimizer;
+import org.apache.commons.math3.optim.univariate.SearchInterval;
+import org.apache.commons.math3.optim.univariate.UnivariateObjectiveFunction;
 
 public class RunTest {
 
@@ -35,4 +44,814 @@ public class RunTest {
         if (hadFailures) throw new Exception("There were failures when running test graphs");
     }
 
+    @Test
+    public void compactTraversal() throws Exception {
+        PlanarGraph pg = PlanarGraph.readFromFile("src/test/resources/mooreCurve2.plsg.gz");
+        HalfEdgeDiagram hedi = pg.buildVoronoiDiagram().get_graph_reference();
+        CompactHalfEdgeDiagram g = CompactHalfEdgeDiagram.from(hedi);
+
+        int v = 0;
+        for (Vertex vertex : hedi.vertices) { // from() numbers vertices in iteration order
+            Assert.assertEquals(vertex.out_edges.size(), g.out_degree(v));
+            for (int e = g.vertex_edge(v), n = 0; e != CompactHalfEdgeDiagram.NONE && n < g.out_degree(v); n++) {
+                Assert.assertEquals(v, g.source(e));
+                int next = g.next_out_edge(e);
+                if (next != CompactHalfEdgeDiagram.NONE) {
+                    Assert.assertEquals(e, g.previous_out_edge(next));
+                }
+                e = next;
+            }
+            v++;
+        }
+        int f = 0;
+        for (Face face : hedi.faces) {
+            int n = 0;
+            Edge current = face.edge;
+            do {
+                n++;
+                current = current.next;
+            } while (current != face.edge);
+            Assert.assertEquals(n, g.num_edges(f));
+            Assert.assertEquals(g.face(g.face_edge(f)), f);
+            Assert.assertEquals(g.face_edge(f), g.next(g.previous_edge(g.face_edge(f))));
+            f++;
+        }
+        Assert.assertEquals(0, g.num_edges(g.add_face()));
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        File file = File.createTempFile("jopenvoronoi", ".vdg");
+        try {
+            VoronoiDiagram vd = PlanarGraph.readFromFile("src/test/resources/mooreCurve2.plsg.gz").buildVoronoiDiagram();
+            DiagramFile.save(vd, file.getPath());
+            VoronoiDiagram loaded = DiagramFile.load(file.getPath());
+            Assert.assertTrue(loaded.check());
+            Assert.assertEquals(sortedVertices(vd), sortedVertices(loaded));
+            Assert.assertEquals(vd.get_graph_reference().vertex_count(), loaded.get_graph_reference().vertex_count());
+
+            // a loaded diagram continues like the saved one
+            Random rnd = new Random(1);
+            VoronoiDiagram points = new VoronoiDiagram();
+            points.insert_point_sites(randomPoints(rnd, 200));
+            DiagramFile.save(points, file.getPath());
+            VoronoiDiagram more = DiagramFile.load(file.getPath());
+            for (Point p : randomPoints(rnd, 100)) {
+                points.insert_point_site(p);
+                more.insert_point_site(p);
+            }
+            Assert.assertTrue(more.check());
+            Assert.assertEquals(sortedVertices(points), sortedVertices(more));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void loadCorruptFile() throws Exception {
+        File file = File.createTempFile("jopenvoronoi", ".vdg");
+        try {
+            DiagramFile.save(PlanarGraph.readFromFile("src/test/resources/mooreCurve1.plsg.gz").buildVoronoiDiagram(), file.getPath());
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(28); // number of points, after magic, version, far radius and the three site counts
+                raf.writeInt(-7);
+            }
+            DiagramFile.load(file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void binarySaveAndLoad() throws Exception {
+        File file = File.createTempFile("jopenvoronoi", ".pslgb");
+        try {
+            for (File f : new File("src/test/resources/").listFiles()) {
+                PlanarGraph pg = PlanarGraph.readFromFile(f.getAbsolutePath());
+                pg.writeToBinaryFile(file.getPath());
+                Assert.assertEquals(16 + 16 * pg.points.size() + 8 * pg.segments.size(), file.length());
+                PlanarGraph loaded = PlanarGraph.readFromBinaryFile(file.getPath());
+                Assert.assertEquals(f.getName(), pg, loaded);
+            }
+            // an empty graph is just the header
+            PlanarGraph empty = new PlanarGraph(new ArrayList<java.awt.geom.Point2D>(), new ArrayList<PlanarGraph.Segment>());
+            empty.writeToBinaryFile(file.getPath());
+            Assert.assertEquals(empty, PlanarGraph.readFromBinaryFile(file.getPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void binaryLoadCorruptFile() throws Exception {
+        File file = File.createTempFile("jopenvoronoi", ".pslgb");
+        try {
+            PlanarGraph pg = PlanarGraph.readFromFile("src/test/resources/mooreCurve1.plsg.gz");
+            pg.writeToBinaryFile(file.getPath());
+            byte[] good = java.nio.file.Files.readAllBytes(file.toPath());
+            int n = pg.points.size();
+            int last_segment = good.length - 8;
+            // {position, little-endian int written there} of each corruption, or {length, -1} to cut the file
+            int[][] corruptions = {
+                { 0, 0x12345678 }, // magic
+                { 4, 2 }, // version
+                { 8, n + 1 }, // number of points does not match the size
+                { 12, -1 - pg.segments.size() }, // negative number of segments
+                { last_segment + 4, n }, // end-point of the last segment out of range
+                { good.length - 1, -1 }, // truncated
+                { 10, -1 }, // shorter than the header
+            };
+            for (int[] c : corruptions) {
+                byte[] bytes = Arrays.copyOf(good, c[1] == -1 ? c[0] : good.length);
+                if (c[1] != -1) {
+                    java.nio.ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt(c[0], c[1]);
+                }
+                java.nio.file.Files.write(file.toPath(), bytes);
+                try {
+                    PlanarGraph.readFromBinaryFile(file.getPath());
+                    Assert.fail("corruption at " + c[0] + " not detected");
+                } catch (IOException expected) {
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /// streaming a file into a VoronoiDiagramSink gives the same diagram as building it from a PlanarGraph
+    @Test
+    public void streamIntoDiagram() throws Exception {
+        File file = File.createTempFile("jopenvoronoi", ".pslgb");
+        try {
+            for (File f : new File("src/test/resources/").listFiles()) {
+                PlanarGraph pg = PlanarGraph.readFromFile(f.getAbsolutePath());
+                VoronoiDiagram expected = pg.buildVoronoiDiagram();
+                VoronoiDiagramSink sink = new VoronoiDiagramSink();
+                PlanarGraph.readFromFile(f.getAbsolutePath(), sink);
+                VoronoiDiagram vd = sink.build();
+                Assert.assertEquals(f.getName(), sortedVertices(expected), sortedVertices(vd));
+                Assert.assertEquals(f.getName(), expected.num_faces(), vd.num_faces());
+                Assert.assertEquals(f.getName(), expected.num_line_sites(), vd.num_line_sites());
+
+                pg.writeToBinaryFile(file.getPath());
+                sink = new VoronoiDiagramSink();
+                PlanarGraph.readFromBinaryFile(file.getPath(), sink);
+                Assert.assertEquals(f.getName(), sortedVertices(expected), sortedVertices(sink.build()));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /// VoronoiDiagram::find_face() against a scan of all faces, for query points inside and outside the bounding box of the sites
+    @Test
+    public void findFace() throws Exception {
+        Random rnd = new Random(13);
+        List<VoronoiDiagram> diagrams = new ArrayList<>();
+        VoronoiDiagram points = new VoronoiDiagram();
+        points.insert_point_sites(randomPoints(rnd, 2000));
+        diagrams.add(points);
+        diagrams.add(PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(200, rnd)).buildVoronoiDiagram());
+        diagrams.add(RandomLabyrinth.generateLabyrinth(20, 0.5, rnd).buildVoronoiDiagram()); // long segments, many horizontal
+        for (VoronoiDiagram vd : diagrams) {
+            for (int k = 0; k < 1000; k++) {
+                Point p = new Point(1.3 * (rnd.nextDouble() - 0.5), 1.3 * (rnd.nextDouble() - 0.5));
+                Face f = vd.find_face(p);
+                Assert.assertEquals(p.toString(), nearestSiteDistance(vd, p), f.site.apex_distance(p), 0);
+            }
+        }
+    }
+
+    /// \brief distance from \a p to the closest Site of \a vd whose face can contain \a p, by a scan of all faces
+    ///
+    /// a LineSite only counts for points on its side and in its region, as in SiteGrid
+    static double nearestSiteDistance(VoronoiDiagram vd, Point p) {
+        double best = Double.POSITIVE_INFINITY;
+        for (Face f : vd.get_graph_reference().faces) {
+            Site s = f.site;
+            if (f.is_null_face || s == null) {
+                continue;
+            }
+            if (s.isLine() && (s.a() * p.x + s.b() * p.y + s.c() > 0 || !s.in_region(p))) {
+                continue;
+            }
+            best = Math.min(best, s.apex_distance(p));
+        }
+        return best;
+    }
+
+    @Test
+    public void removeSites() throws Exception {
+        removeSites(new VoronoiDiagram());
+    }
+
+    @Test
+    public void walkingLocator() throws Exception {
+        Random rnd = new Random(11);
+        VoronoiDiagram vd = new VoronoiDiagram();
+        vd.set_point_locator(new WalkingLocator());
+        List<Point> points = randomPoints(rnd, 500);
+        List<Vertex> vertices = vd.insert_point_sites(points);
+        List<Point> kept = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (i % 3 == 0) {
+                vd.remove_point_site(vertices.get(i));
+            } else {
+                kept.add(points.get(i));
+            }
+        }
+        for (Point p : randomPoints(rnd, 100)) {
+            vd.insert_point_site(p);
+            kept.add(p);
+        }
+        Assert.assertTrue(vd.check());
+        VoronoiDiagram rebuilt = new VoronoiDiagram();
+        rebuilt.insert_point_sites(kept);
+        Assert.assertEquals(sortedVertices(rebuilt), sortedVertices(vd));
+
+        VoronoiDiagram lines = new VoronoiDiagram();
+        WalkingLocator locator = new WalkingLocator();
+        lines.set_point_locator(locator);
+        removeSites(lines);
+        try {
+            locator.nearest_face(new Point(0, 0));
+            Assert.fail("walked over LineSite faces");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /// remove LineSite:s and PointSite:s of a polygon in \a vd, and compare with a new diagram of the remaining sites
+    static void removeSites(VoronoiDiagram vd) throws Exception {
+        Random rnd = new Random(3);
+        PlanarGraph pg = PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(200, rnd));
+        Map<java.awt.geom.Point2D, Vertex> vertices = new HashMap<>();
+        for (java.awt.geom.Point2D p : pg.points) {
+            vertices.put(p, vd.insert_point_site(new Point(p.getX(), p.getY())));
+        }
+        for (PlanarGraph.Segment s : pg.segments) {
+            vd.insert_line_site(vertices.get(s.stt), vertices.get(s.end));
+        }
+
+        // every third segment, and then the points left without a segment
+        List<PlanarGraph.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < pg.segments.size(); i++) {
+            PlanarGraph.Segment s = pg.segments.get(i);
+            if (i % 3 == 0) {
+                vd.remove_line_site(vertices.get(s.end), vertices.get(s.stt));
+            } else {
+                segments.add(s);
+            }
+        }
+        List<java.awt.geom.Point2D> points = new ArrayList<>();
+        for (java.awt.geom.Point2D p : pg.points) {
+            boolean end_point = false;
+            for (PlanarGraph.Segment s : segments) {
+                end_point |= s.stt.equals(p) || s.end.equals(p);
+            }
+            if (end_point) {
+                points.add(p);
+            } else {
+                vd.remove_point_site(vertices.get(p));
+            }
+        }
+        Assert.assertTrue(vd.check());
+        Assert.assertEquals(points.size(), vd.num_point_sites());
+        Assert.assertEquals(segments.size(), vd.num_line_sites());
+
+        VoronoiDiagram rebuilt = new PlanarGraph(points, segments).buildVoronoiDiagram();
+        Assert.assertEquals(sortedVertices(rebuilt), sortedVertices(vd));
+        Assert.assertEquals(rebuilt.num_faces(), vd.num_faces());
+
+        try {
+            vd.remove_point_site(vertices.get(segments.get(0).stt));
+            Assert.fail("removed the end-point of a LineSite");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void moveSites() throws Exception {
+        moveSites(new VoronoiDiagram());
+    }
+
+    @Test
+    public void moveSitesWalkingLocator() throws Exception {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        vd.set_point_locator(new WalkingLocator());
+        moveSites(vd);
+    }
+
+    /// move random sites of a polygon with a few extra points in \a vd, and compare with a new diagram of the moved sites
+    static void moveSites(VoronoiDiagram vd) throws Exception {
+        Random rnd = new Random(5);
+        PlanarGraph pg = PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(100, rnd));
+        List<java.awt.geom.Point2D> points = new ArrayList<>(pg.points);
+        for (int i = 0; i < 10; i++) {
+            points.add(new java.awt.geom.Point2D.Double(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5));
+        }
+        List<Vertex> vertices = new ArrayList<>();
+        Map<java.awt.geom.Point2D, Integer> index = new HashMap<>();
+        for (java.awt.geom.Point2D p : points) {
+            index.put(p, vertices.size());
+            vertices.add(vd.insert_point_site(new Point(p.getX(), p.getY())));
+        }
+        List<int[]> segments = new ArrayList<>();
+        for (PlanarGraph.Segment s : pg.segments) {
+            segments.add(new int[] { index.get(s.stt), index.get(s.end) });
+            vd.insert_line_site(vertices.get(index.get(s.stt)), vertices.get(index.get(s.end)));
+        }
+
+        int moved = 0;
+        for (int k = 0; k < 40; k++) {
+            int i = rnd.nextInt(points.size());
+            java.awt.geom.Point2D p = new java.awt.geom.Point2D.Double(points.get(i).getX() + 0.02*(rnd.nextDouble() - 0.5),
+                                                                       points.get(i).getY() + 0.02*(rnd.nextDouble() - 0.5));
+            List<String> before = sortedVertices(vd);
+            try {
+                vertices.set(i, vd.move_point_site(vertices.get(i), new Point(p.getX(), p.getY())));
+                points.set(i, p);
+                moved++;
+            } catch (IllegalArgumentException e) {
+                // a moved LineSite would meet another site
+                Assert.assertEquals(before, sortedVertices(vd));
+            }
+        }
+        Assert.assertTrue(moved > 30);
+        Assert.assertTrue(vd.check());
+
+        List<PlanarGraph.Segment> moved_segments = new ArrayList<>();
+        for (int[] s : segments) {
+            moved_segments.add(new PlanarGraph.Segment(points.get(s[1]), points.get(s[0])));
+        }
+        VoronoiDiagram rebuilt = new PlanarGraph(points, moved_segments).buildVoronoiDiagram();
+        Assert.assertEquals(sortedVertices(rebuilt), sortedVertices(vd));
+        Assert.assertEquals(rebuilt.num_faces(), vd.num_faces());
+    }
+
+    @Test
+    public void moveSitesRejected() throws Exception {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        Vertex a = vd.insert_point_site(new Point(-0.3, 0));
+        Vertex b = vd.insert_point_site(new Point(0.3, 0));
+        Vertex c = vd.insert_point_site(new Point(0, -0.3));
+        Vertex d = vd.insert_point_site(new Point(0, -0.1));
+        Vertex e = vd.insert_point_site(new Point(0.2, 0.2));
+        vd.insert_line_site(a, b);
+        vd.insert_line_site(c, d);
+        List<String> before = sortedVertices(vd);
+        Point[] targets = { new Point(0, 0.1), b.position, new Point(0.1, 0) };
+        for (Point p : targets) {
+            try {
+                vd.move_point_site(d, p);
+                Assert.fail("moved to " + p);
+            } catch (IllegalArgumentException ex) {
+                Assert.assertEquals(before, sortedVertices(vd));
+            }
+        }
+        try {
+            vd.move_point_site(e, new Point(0.1, 0));
+            Assert.fail("moved onto a LineSite");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertEquals(before, sortedVertices(vd));
+        }
+
+        d = vd.move_point_site(d, new Point(0.05, -0.12));
+        e = vd.move_point_site(e, new Point(0.25, 0.15));
+        Assert.assertTrue(vd.check());
+        VoronoiDiagram rebuilt = new VoronoiDiagram();
+        List<Vertex> v = rebuilt.insert_point_sites(Arrays.asList(a.position, b.position, c.position, d.position, e.position));
+        rebuilt.insert_line_site(v.get(0), v.get(1));
+        rebuilt.insert_line_site(v.get(2), v.get(3));
+        Assert.assertEquals(sortedVertices(rebuilt), sortedVertices(vd));
+    }
+
+    @Test
+    public void buildTiled() throws Exception {
+        Random rnd = new Random(7);
+        ParallelBuilder.Input points = new ParallelBuilder.Input(randomPoints(rnd, 2000));
+        VoronoiDiagram tiled = ParallelBuilder.build_tiled(points, 4);
+        Assert.assertTrue(tiled.check());
+        Assert.assertEquals(sortedVertices(ParallelBuilder.build(points)), sortedVertices(tiled));
+
+        ParallelBuilder.Input in = input(PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(200, rnd)));
+        tiled = ParallelBuilder.build_tiled(in, 3);
+        Assert.assertTrue(tiled.check());
+        Assert.assertEquals(in.segments.size(), tiled.num_line_sites());
+        VoronoiDiagram serial = ParallelBuilder.build(in);
+        Assert.assertEquals(sortedVertices(serial), sortedVertices(tiled));
+        Assert.assertEquals(serial.num_faces(), tiled.num_faces());
+
+        // segments that run across several tiles, and many degenerate vertices of equidistant sites
+        in = input(RandomLabyrinth.generateLabyrinth(20, 0.5, rnd));
+        tiled = ParallelBuilder.build_tiled(in, 4);
+        Assert.assertTrue(tiled.check());
+        Assert.assertEquals(in.segments.size(), tiled.num_line_sites());
+        Assert.assertEquals(ParallelBuilder.build(in).num_faces(), tiled.num_faces());
+    }
+
+    /// the public status accessors of vertices and faces read the epoch of their graph, also after tiles are merged
+    @Test
+    public void statusAccessors() throws Exception {
+        Random rnd = new Random(17);
+        List<VoronoiDiagram> diagrams = new ArrayList<>();
+        diagrams.add(PlanarGraph.fromPolygon(RandomPolygon.generate_polygon(100, rnd)).buildVoronoiDiagram());
+        diagrams.add(ParallelBuilder.build_tiled(input(RandomLabyrinth.generateLabyrinth(10, 0.5, rnd)), 3));
+        for (VoronoiDiagram vd : diagrams) {
+            HalfEdgeDiagram g = vd.get_graph_reference();
+            for (Vertex v : g.vertices) {
+                Assert.assertSame(g, v.graph);
+                Assert.assertEquals(g.status(v), v.status());
+                Assert.assertEquals(g.in_queue(v), v.in_queue());
+            }
+            for (Face f : g.faces) {
+                Assert.assertSame(g, f.graph);
+                Assert.assertEquals(g.status(f), f.status());
+            }
+        }
+        Vertex v = new Vertex(new Point(0, 0), VertexStatus.IN, VertexType.NORMAL);
+        Assert.assertEquals(VertexStatus.IN, v.status()); // not in a graph
+    }
+
+    /// the points and segments of \a pg as a ParallelBuilder.Input
+    static ParallelBuilder.Input input(PlanarGraph pg) {
+        List<Point> points = new ArrayList<>();
+        Map<java.awt.geom.Point2D, Integer> index = new HashMap<>();
+        for (java.awt.geom.Point2D p : pg.points) {
+            index.put(p, points.size());
+            points.add(new Point(p.getX(), p.getY()));
+        }
+        List<int[]> segments = new ArrayList<>();
+        for (PlanarGraph.Segment s : pg.segments) {
+            segments.add(new int[] { index.get(s.stt), index.get(s.end) });
+        }
+        return new ParallelBuilder.Input(points, segments);
+    }
+
+    @Test
+    public void offsetParallel() throws Exception {
+        List<PlanarGraph> graphs = new ArrayList<>();
+        for (File f : new File("src/test/resources/").listFiles()) {
+            graphs.add(PlanarGraph.readFromFile(f.getAbsolutePath()));
+        }
+        graphs.add(RandomLabyrinth.generateLabyrinth(20, 0.5, new Random(11)));
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            for (PlanarGraph pg : graphs) {
+                VoronoiDiagram vd = pg.buildVoronoiDiagram();
+                Offset offset = new Offset(vd.get_graph_reference());
+                for (double t : offsetDistances(vd, 5)) {
+                    Assert.assertEquals(loops(offset.offset(t)), loops(offset.offset_parallel(t, pool)));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /// \brief \a n offset distances spread over the clearance-disk radii of the vertices of \a vd
+    ///
+    /// each distance is half-way between two radii that differ by more than rounding errors,
+    /// the offset walk can not decide the direction of an edge with a radius equal to the distance.
+    static double[] offsetDistances(VoronoiDiagram vd, int n) {
+        List<Double> radii = new ArrayList<>();
+        for (Vertex v : vd.get_graph_reference().vertices) {
+            if (v.type != VertexType.OUTER && v.dist() > 0) {
+                radii.add(v.dist());
+            }
+        }
+        Collections.sort(radii);
+        List<Double> ts = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int k = (int) ((radii.size() - 1) * (i + 0.5) / n);
+            int next = k + 1;
+            while (next < radii.size() && radii.get(next) - radii.get(k) < 1e-6 * radii.get(k)) {
+                next++;
+            }
+            if (next < radii.size()) {
+                ts.add((radii.get(k) + radii.get(next)) / 2);
+            }
+        }
+        double[] out = new double[ts.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ts.get(i);
+        }
+        return out;
+    }
+
+    /// the vertices of each offset loop, in order
+    static List<String> loops(List<OffsetLoop> loops) {
+        List<String> out = new ArrayList<>();
+        for (OffsetLoop loop : loops) {
+            StringBuilder sb = new StringBuilder();
+            for (OffsetVertex v : loop.vertices) {
+                sb.append(String.format("%.9f %.9f %.9f %s; ", v.p.x, v.p.y, v.r, v.cw));
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    @Test
+    public void filteredPredicates() throws Exception {
+        for (File f : new File("src/test/resources/").listFiles()) {
+            PlanarGraph pg = PlanarGraph.readFromFile(f.getAbsolutePath());
+            VoronoiDiagram filtered = new VoronoiDiagram();
+            filtered.set_filtered_predicates(true);
+            pg.buildVoronoiDiagram(filtered);
+            Assert.assertTrue(f.getName(), filtered.check());
+            VoronoiDiagram vd = pg.buildVoronoiDiagram();
+            Assert.assertEquals(f.getName(), vd.num_faces(), filtered.num_faces());
+            Assert.assertEquals(f.getName(), vd.num_line_sites(), filtered.num_line_sites());
+        }
+    }
+
+    /// short-circuiting may position vertices differently from the default, within VertexPositioner::ACCEPT_TOLERANCE
+    @Test
+    public void shortCircuit() throws Exception {
+        for (File f : new File("src/test/resources/").listFiles()) {
+            PlanarGraph pg = PlanarGraph.readFromFile(f.getAbsolutePath());
+            VoronoiDiagram short_circuit = new VoronoiDiagram();
+            short_circuit.set_short_circuit(true);
+            pg.buildVoronoiDiagram(short_circuit);
+            Assert.assertTrue(f.getName(), short_circuit.check());
+            VoronoiDiagram vd = pg.buildVoronoiDiagram();
+            Assert.assertEquals(f.getName(), vd.num_faces(), short_circuit.num_faces());
+            Assert.assertEquals(f.getName(), vd.num_line_sites(), short_circuit.num_line_sites());
+            assertSameVertices(f.getName(), vd, short_circuit, 1e-8);
+        }
+    }
+
+    /// a grid of 64x64 points, one ulp apart, near the line through (12, 12) and (24, 24) (Shewchuk's example)
+    @Test
+    public void orient2dNearDegenerate() {
+        int naive_wrong = 0;
+        for (int i = 0; i < 64; i++) {
+            for (int j = 0; j < 64; j++) {
+                double x = 0.5 + i * Math.ulp(0.5);
+                double y = 0.5 + j * Math.ulp(0.5);
+                double naive = (x - 24) * (12 - 24) - (y - 24) * (12 - 24);
+                int expected = exact(x).subtract(exact(24)).multiply(exact(-12))
+                    .subtract(exact(y).subtract(exact(24)).multiply(exact(-12))).signum();
+                Assert.assertEquals(expected, (int) Math.signum(Predicates.orient2d(x, y, 12, 12, 24, 24)));
+                if ((int) Math.signum(naive) != expected) {
+                    naive_wrong++;
+                }
+            }
+        }
+        Assert.assertTrue("the double filter is never needed", naive_wrong > 0);
+    }
+
+    /// points a few ulps around a circle, where the double distance can not decide the sign
+    @Test
+    public void pointInCircleNearDegenerate() {
+        double sx = 0.1, sy = 0.2, r = 0.5;
+        int naive_wrong = 0;
+        for (int i = -16; i < 16; i++) {
+            for (int j = -16; j < 16; j++) {
+                double px = 0.4 + sx + i * Math.ulp(0.5);
+                double py = 0.3 + sy + j * Math.ulp(0.5);
+                double naive = Math.sqrt((px - sx) * (px - sx) + (py - sy) * (py - sy)) - r;
+                BigDecimal dx = exact(px).subtract(exact(sx));
+                BigDecimal dy = exact(py).subtract(exact(sy));
+                int expected = dx.multiply(dx).add(dy.multiply(dy)).subtract(exact(r).multiply(exact(r))).signum();
+                Assert.assertEquals(expected, (int) Predicates.point_in_circle(px, py, sx, sy, r));
+                if ((int) Math.signum(naive) != expected) {
+                    naive_wrong++;
+                }
+            }
+        }
+        Assert.assertTrue("the double filter is never needed", naive_wrong > 0);
+    }
+
+    /// points a few ulps around the parallel at distance r of the line 0.6*x + 0.8*y - 1.3 = 0
+    @Test
+    public void lineInCircleNearDegenerate() {
+        double a = 0.6, b = 0.8, c = -1.3;
+        double r = Math.abs(a + b + c);
+        int naive_wrong = 0;
+        for (int i = -16; i < 16; i++) {
+            for (int j = -16; j < 16; j++) {
+                double px = 1 + i * Math.ulp(1.0);
+                double py = 1 + j * Math.ulp(1.0);
+                double naive = Math.abs(a * px + b * py + c) - r;
+                int expected = exact(a).multiply(exact(px)).add(exact(b).multiply(exact(py))).add(exact(c))
+                    .abs().subtract(exact(r)).signum();
+                Assert.assertEquals(expected, (int) Predicates.line_in_circle(a, b, c, px, py, r));
+                if ((int) Math.signum(naive) != expected) {
+                    naive_wrong++;
+                }
+            }
+        }
+        Assert.assertTrue("the double filter is never needed", naive_wrong > 0);
+    }
+
+    /// points a few ulps around the clearance-disk boundary of a segment: next to its interior,
+    /// and next to an end-point where the closest point of the segment is uncertain too
+    @Test
+    public void segmentInCircleNearDegenerate() {
+        double sx = 0.1, sy = 0.3, ex = 3.7, ey = 1.9;
+        double len = Math.hypot(ex - sx, ey - sy);
+        double nx = -(ey - sy) / len, ny = (ex - sx) / len; // unit normal
+        double r = 0.25;
+        double[][] centers = {
+            { (sx + ex) / 2 + r * nx, (sy + ey) / 2 + r * ny }, // beside the interior
+            { sx + r * nx, sy + r * ny }, // beside the start-point, (p-s).(e-s) is about zero
+        };
+        int naive_wrong = 0;
+        for (double[] center : centers) {
+            for (int i = -16; i < 16; i++) {
+                for (int j = -16; j < 16; j++) {
+                    double px = center[0] + i * Math.ulp(center[0]);
+                    double py = center[1] + j * Math.ulp(center[1]);
+                    double naive = Math.abs((ex - sx) * (py - sy) - (ey - sy) * (px - sx)) / len - r;
+                    int expected = segmentInCircleExact(px, py, sx, sy, ex, ey, r);
+                    Assert.assertEquals(expected, (int) Predicates.segment_in_circle(px, py, sx, sy, ex, ey, r));
+                    if ((int) Math.signum(naive) != expected) {
+                        naive_wrong++;
+                    }
+                }
+            }
+        }
+        Assert.assertTrue("the double filter is never needed", naive_wrong > 0);
+    }
+
+    /// exact sign of the distance from p to the segment s-e, minus r
+    static int segmentInCircleExact(double px, double py, double sx, double sy, double ex, double ey, double r) {
+        BigDecimal psx = exact(px).subtract(exact(sx)), psy = exact(py).subtract(exact(sy));
+        BigDecimal pex = exact(px).subtract(exact(ex)), pey = exact(py).subtract(exact(ey));
+        BigDecimal esx = exact(ex).subtract(exact(sx)), esy = exact(ey).subtract(exact(sy));
+        BigDecimal r2 = exact(r).multiply(exact(r));
+        if (psx.multiply(esx).add(psy.multiply(esy)).signum() < 0) {
+            return psx.multiply(psx).add(psy.multiply(psy)).subtract(r2).signum();
+        }
+        if (pex.multiply(esx).add(pey.multiply(esy)).signum() > 0) {
+            return pex.multiply(pex).add(pey.multiply(pey)).subtract(r2).signum();
+        }
+        BigDecimal cross = esx.multiply(psy).subtract(esy.multiply(psx));
+        return cross.multiply(cross).subtract(r2.multiply(esx.multiply(esx).add(esy.multiply(esy)))).signum();
+    }
+
+    /// quadratics with a double root, up to rounding of c, where b*b - 4*a*c cancels
+    @Test
+    public void discriminantNearDegenerate() {
+        Random rnd = new Random(5);
+        int naive_wrong = 0;
+        for (int k = 0; k < 1000; k++) {
+            double a = 0.5 + rnd.nextDouble();
+            double b = 1 + rnd.nextDouble();
+            double c = b * b / (4 * a);
+            double expected = exact(b).multiply(exact(b)).subtract(exact(4 * a).multiply(exact(c))).doubleValue();
+            double disc = Predicates.discriminant(a, b, c);
+            Assert.assertEquals(expected, disc, Math.ulp(expected));
+            if (Math.abs(b * b - 4 * a * c - expected) > Math.ulp(expected)) {
+                naive_wrong++;
+            }
+        }
+        Assert.assertTrue("the double filter is never needed", naive_wrong > 0);
+    }
+
+    /// BracketSolver against the Brent solver and optimizer of commons-math, on 1000 random functions with a known root or minimum
+    @Test
+    public void bracketSolverMatchesCommonsMath() {
+        Random rnd = new Random(3);
+        BracketSolver solver = new BracketSolver();
+        long evaluations = 0, commons_evaluations = 0;
+        for (int k = 0; k < 1000; k++) {
+            final double a = rnd.nextDouble() * 10;
+            final double b = a + 1e-3 + rnd.nextDouble() * 10;
+            final double x = a + rnd.nextDouble() * (b - a);
+            final double c0 = 0.01 + rnd.nextDouble();
+            final double c1 = rnd.nextDouble();
+            // increasing, with the only root at x
+            UnivariateFunction f = new UnivariateFunction() {
+                public double value(double t) {
+                    return (t - x) * (c0 + c1 * (t - a) * (t - a));
+                }
+            };
+            BrentSolver brent = new BrentSolver(1e-14);
+            double expected = brent.solve(1000, f, a, b);
+            double root = solver.find_root(f, a, b, 1e-14, 1000);
+            Assert.assertEquals(x, root, 1e-12 * b);
+            Assert.assertEquals(expected, root, 1e-12 * b);
+            evaluations += solver.evaluations();
+            commons_evaluations += brent.getEvaluations();
+
+            // convex, with the minimum at x
+            UnivariateFunction g = new UnivariateFunction() {
+                public double value(double t) {
+                    return Math.exp(c0 * (t - x)) - c0 * (t - x) + c1 * (t - x) * (t - x);
+                }
+            };
+            BrentOptimizer optimizer = new BrentOptimizer(1e-10, 1e-14);
+            double expected_min = optimizer.optimize(new MaxEval(1000), new UnivariateObjectiveFunction(g),
+                                                     GoalType.MINIMIZE, new SearchInterval(a, b)).getPoint();
+            double min = solver.minimize(g, a, b, 1e-10, 1e-14, 1000);
+            // the function is flat at the minimum, both are within about sqrt(ulp) of it
+            Assert.assertEquals(x, min, 1e-6 * b);
+            Assert.assertEquals(expected_min, min, 1e-6 * b);
+            Assert.assertTrue(g.value(min) <= g.value(expected_min) + 1e-14);
+            evaluations += solver.evaluations();
+            commons_evaluations += optimizer.getEvaluations();
+        }
+        System.out.printf("bracket solver: %d evaluations, commons-math: %d\n", evaluations, commons_evaluations);
+        // the same methods, with slightly different stopping tests
+        Assert.assertTrue(evaluations <= 1.1 * commons_evaluations);
+    }
+
+    /// counters of VertexPositioner::desperate_solution(), called directly on the bisector of two point sites
+    @Test
+    public void desperateCounters() {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        vd.insert_point_site(new Point(-0.1, 0));
+        vd.insert_point_site(new Point(0.1, 0));
+        Assert.assertEquals(0, vd.num_desperate_solutions());
+        Assert.assertEquals(0, vd.num_desperate_evaluations());
+        // the bisector x = 0 above its apex at (0, 0), where t = sqrt(0.01 + y*y)
+        Edge up = null;
+        for (Edge e : vd.get_graph_reference().edges) {
+            if (e.source.type == VertexType.APEX && e.source.position.norm() < 1e-12 && e.target.position.y > 0) {
+                up = e;
+            }
+        }
+        Assert.assertNotNull(up);
+        VertexPositioner vpos = vd.vpos;
+        vpos.edge = up;
+        vpos.t_min = up.source.dist();
+        vpos.t_max = up.target.dist();
+
+        // the vertex-error changes sign along the edge: the root at y = 0.24 is equidistant to the three sites
+        Solution root = vpos.desperate_solution(new PointSite(new Point(0, 0.5)));
+        Assert.assertEquals(0.24, root.p.y, 1e-9);
+        Assert.assertEquals(0.26, root.t, 1e-9);
+        Assert.assertEquals(1, vd.num_desperate_solutions());
+        Assert.assertEquals(1, vpos.desperate_root_count());
+        long evaluations = vd.num_desperate_evaluations();
+        Assert.assertTrue(evaluations > 2);
+
+        // the site is farther than t from every point of the edge: the error is minimized at the apex
+        Solution min = vpos.desperate_solution(new PointSite(new Point(0.05, -3)));
+        Assert.assertEquals(vpos.t_min, min.t, 1e-6);
+        Assert.assertEquals(2, vd.num_desperate_solutions());
+        Assert.assertEquals(1, vpos.desperate_root_count());
+        Assert.assertTrue(vd.num_desperate_evaluations() > evaluations + 2);
+    }
+
+    static BigDecimal exact(double d) {
+        return new BigDecimal(d);
+    }
+
+    static List<Point> randomPoints(Random rnd, int n) {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            points.add(new Point(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5));
+        }
+        return points;
+    }
+
+    /// vertex positions and types, sorted, for comparing two diagrams of the same sites
+    static List<String> sortedVertices(VoronoiDiagram vd) {
+        List<String> out = new ArrayList<>();
+        for (Vertex v : vd.get_graph_reference().vertices) {
+            out.add(String.format("%.9f %.9f %s", v.position.x, v.position.y, v.type));
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    /// assert that each vertex of \a a has a vertex of the same type in \a b, at most \a tol away in x and y, and vice versa
+    static void assertSameVertices(String message, VoronoiDiagram a, VoronoiDiagram b, double tol) {
+        List<Vertex> va = new ArrayList<>(a.get_graph_reference().vertices);
+        List<Vertex> vb = new ArrayList<>(b.get_graph_reference().vertices);
+        Assert.assertEquals(message, va.size(), vb.size());
+        Comparator<Vertex> by_x = new Comparator<Vertex>() {
+            public int compare(Vertex v, Vertex w) {
+                return Double.compare(v.position.x, w.position.x);
+            }
+        };
+        Collections.sort(vb, by_x);
+        boolean[] used = new boolean[vb.size()];
+        for (Vertex v : va) {
+            int lo = 0, hi = vb.size(); // first vertex of vb with x >= v.x - tol
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (vb.get(mid).position.x < v.position.x - tol) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int match = -1;
+            for (int i = lo; i < vb.size() && vb.get(i).position.x <= v.position.x + tol && match == -1; i++) {
+                Vertex w = vb.get(i);
+                if (!used[i] && w.type == v.type && Math.abs(w.position.y - v.position.y) <= tol) {
+                    match = i;
+                }
+            }
+            Assert.assertTrue(message + ": no match for " + v.type + " " + v.position, match != -1);
+            used[match] = true;
+        }
+    }
+
 }